@@ -0,0 +1,121 @@
+package com.upgrad.quora.api.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.metrics.IMetricsTracker;
+import com.zaxxer.hikari.metrics.MetricsTrackerFactory;
+import com.zaxxer.hikari.metrics.micrometer.MicrometerMetricsTrackerFactory;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+import org.springframework.web.servlet.HandlerMapping;
+
+import javax.servlet.http.HttpServletRequest;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Records how long pooled JDBC connections are held, per endpoint, as the timer "quora.db.connection.hold" tagged
+ * with the method and uri pattern of the request, like http.server.requests. Connections used outside of a request,
+ * for instance by SessionReaper, are tagged with uri "none".
+ * <p>
+ * Hikari reports the time from borrowing a connection to returning it in the thread which returns it, so the pool
+ * tracker is decorated to also record it against the current request. Spring Boot only installs its tracker for the
+ * hikaricp metrics on a pool without one, after this post processor has run, so the decorated tracker is Micrometer's
+ * own MicrometerMetricsTrackerFactory, created when the pool starts, unless the pool was configured with another one.
+ */
+@Component
+public class ConnectionHoldMetrics implements BeanPostProcessor {
+
+    private static final String METRIC = "quora.db.connection.hold";
+
+    private final ObjectProvider<MeterRegistry> meterRegistry;
+
+    public ConnectionHoldMetrics(final ObjectProvider<MeterRegistry> meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    public Object postProcessAfterInitialization(final Object bean, final String beanName) {
+        if (bean instanceof HikariDataSource) {
+            final HikariDataSource dataSource = (HikariDataSource) bean;
+            final MetricsTrackerFactory configuredTrackerFactory = dataSource.getMetricsTrackerFactory();
+            dataSource.setMetricsTrackerFactory((poolName, poolStats) -> {
+                final MetricsTrackerFactory poolTrackerFactory = configuredTrackerFactory != null
+                        ? configuredTrackerFactory : micrometerTrackerFactory();
+                return new EndpointTracker(poolTrackerFactory == null ? null : poolTrackerFactory.create(poolName, poolStats));
+            });
+        }
+        return bean;
+    }
+
+    private MetricsTrackerFactory micrometerTrackerFactory() {
+        final MeterRegistry registry = meterRegistry.getIfAvailable();
+        return registry == null ? null : new MicrometerMetricsTrackerFactory(registry);
+    }
+
+    private void recordHold(final long heldMillis) {
+        final MeterRegistry registry = meterRegistry.getIfAvailable();
+        if (registry == null)
+            return;
+
+        String method = "none";
+        String uri = "none";
+        final RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        if (attributes instanceof ServletRequestAttributes) {
+            final HttpServletRequest request = ((ServletRequestAttributes) attributes).getRequest();
+            final Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+            method = request.getMethod();
+            uri = pattern == null ? "UNKNOWN" : pattern.toString();
+        }
+
+        Timer.builder(METRIC)
+                .description("Time a pooled JDBC connection was held, per endpoint")
+                .tags("method", method, "uri", uri)
+                .register(registry)
+                .record(heldMillis, TimeUnit.MILLISECONDS);
+    }
+
+    private final class EndpointTracker implements IMetricsTracker {
+
+        private final IMetricsTracker poolTracker;
+
+        private EndpointTracker(final IMetricsTracker poolTracker) {
+            this.poolTracker = poolTracker;
+        }
+
+        @Override
+        public void recordConnectionCreatedMillis(final long connectionCreatedMillis) {
+            if (poolTracker != null)
+                poolTracker.recordConnectionCreatedMillis(connectionCreatedMillis);
+        }
+
+        @Override
+        public void recordConnectionAcquiredNanos(final long elapsedAcquiredNanos) {
+            if (poolTracker != null)
+                poolTracker.recordConnectionAcquiredNanos(elapsedAcquiredNanos);
+        }
+
+        @Override
+        public void recordConnectionUsageMillis(final long elapsedBorrowedMillis) {
+            if (poolTracker != null)
+                poolTracker.recordConnectionUsageMillis(elapsedBorrowedMillis);
+            recordHold(elapsedBorrowedMillis);
+        }
+
+        @Override
+        public void recordConnectionTimeout() {
+            if (poolTracker != null)
+                poolTracker.recordConnectionTimeout();
+        }
+
+        @Override
+        public void close() {
+            if (poolTracker != null)
+                poolTracker.close();
+        }
+    }
+}
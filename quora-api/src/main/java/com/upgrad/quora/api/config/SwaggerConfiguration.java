@@ -1,14 +1,24 @@
 package com.upgrad.quora.api.config;
 
 
+import com.upgrad.quora.api.security.AuthorizedUser;
+import com.upgrad.quora.api.security.AuthorizedUserArgumentResolver;
+import com.upgrad.quora.service.entity.UserAuthEntity;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import springfox.documentation.builders.ParameterBuilder;
 import springfox.documentation.builders.PathSelectors;
 import springfox.documentation.builders.RequestHandlerSelectors;
+import springfox.documentation.schema.ModelRef;
+import springfox.documentation.service.ResolvedMethodParameter;
 import springfox.documentation.spi.DocumentationType;
+import springfox.documentation.spi.service.OperationBuilderPlugin;
+import springfox.documentation.spi.service.contexts.OperationContext;
 import springfox.documentation.spring.web.plugins.Docket;
 import springfox.documentation.swagger2.annotations.EnableSwagger2;
 
+import java.util.Collections;
+
 /**
  * This Configuration integrates Swagger2 into the existing Spring Boot project.
  */
@@ -18,6 +28,36 @@ public class SwaggerConfiguration {
 
     @Bean
     public Docket swagger() {
-        return new Docket(DocumentationType.SWAGGER_2).select().apis(RequestHandlerSelectors.basePackage("com.upgrad.quora.api.controller")).paths(PathSelectors.any()).build();
+        return new Docket(DocumentationType.SWAGGER_2).ignoredParameterTypes(UserAuthEntity.class).select().apis(RequestHandlerSelectors.basePackage("com.upgrad.quora.api.controller")).paths(PathSelectors.any()).build();
+    }
+
+    /**
+     * Documents the "authorization" header for every endpoint taking an AuthorizedUser parameter, the parameter
+     * itself is resolved from that header and hidden from the docs.
+     */
+    @Bean
+    public OperationBuilderPlugin authorizationHeaderPlugin() {
+        return new OperationBuilderPlugin() {
+            @Override
+            public void apply(OperationContext context) {
+                for (ResolvedMethodParameter parameter : context.getParameters()) {
+                    if (parameter.hasParameterAnnotation(AuthorizedUser.class)) {
+                        context.operationBuilder().parameters(Collections.singletonList(new ParameterBuilder()
+                                .name(AuthorizedUserArgumentResolver.AUTHORIZATION_HEADER)
+                                .description("Access token of the signed in user")
+                                .parameterType("header")
+                                .modelRef(new ModelRef("string"))
+                                .required(true)
+                                .build()));
+                        return;
+                    }
+                }
+            }
+
+            @Override
+            public boolean supports(DocumentationType delimiter) {
+                return true;
+            }
+        };
     }
-}
\ No newline at end of file
+}
@@ -2,7 +2,10 @@ package com.upgrad.quora.api.controller;
 
 
 import com.upgrad.quora.api.model.UserDeleteResponse;
+import com.upgrad.quora.api.model.UserSignoutResponse;
+import com.upgrad.quora.api.security.AuthorizedUser;
 import com.upgrad.quora.service.business.AdminService;
+import com.upgrad.quora.service.entity.UserAuthEntity;
 import com.upgrad.quora.service.entity.UserEntity;
 import com.upgrad.quora.service.exception.AuthorizationFailedException;
 import com.upgrad.quora.service.exception.UserNotFoundException;
@@ -23,17 +26,17 @@ public class AdminController {
      * This controller method will delete user with userId if provided token in valid
      *
      * @param userId
-     * @param accessToken
+     * @param userAuth
      * @return UserDeleteResponse
      * @throws AuthorizationFailedException
      * @throws UserNotFoundException
      */
     @RequestMapping(method = RequestMethod.DELETE, path = "/admin/user/{userId}", produces = MediaType.APPLICATION_JSON_UTF8_VALUE)
     public ResponseEntity<UserDeleteResponse> deleteUser(@PathVariable("userId") String userId,
-                                                         @RequestHeader("authorization") final String accessToken) throws AuthorizationFailedException, UserNotFoundException {
+                                                         @AuthorizedUser(signedOut = "ATHR_002") final UserAuthEntity userAuth) throws AuthorizationFailedException, UserNotFoundException {
 
         //Validates request authorization/token is from valid admin user or not.
-        adminService.validateUserForDelete(accessToken);
+        adminService.validateUserForDelete(userAuth);
 
         UserEntity userEntity = adminService.deleteUser(userId);
 
@@ -43,4 +46,27 @@ public class AdminController {
         return new ResponseEntity<UserDeleteResponse>(userDeleteResponse, HttpStatus.OK);
     }
 
+    /**
+     * This controller method will sign out every session of user with userId if provided token is from an admin
+     *
+     * @param userId
+     * @param userAuth
+     * @return UserSignoutResponse
+     * @throws AuthorizationFailedException
+     * @throws UserNotFoundException
+     */
+    @RequestMapping(method = RequestMethod.POST, path = "/admin/user/{userId}/signout", produces = MediaType.APPLICATION_JSON_UTF8_VALUE)
+    public ResponseEntity<UserSignoutResponse> signoutUser(@PathVariable("userId") String userId,
+                                                           @AuthorizedUser(signedOut = "ATHR_002") final UserAuthEntity userAuth) throws AuthorizationFailedException, UserNotFoundException {
+
+        //Same admin check as for deleting a user.
+        adminService.validateUserForDelete(userAuth);
+
+        UserEntity userEntity = adminService.signOutUser(userId);
+
+        UserSignoutResponse userSignoutResponse =
+                new UserSignoutResponse().id(userEntity.getUuid()).status("ALL SESSIONS OF THE USER SIGNED OUT");
+
+        return new ResponseEntity<UserSignoutResponse>(userSignoutResponse, HttpStatus.OK);
+    }
 }
@@ -1,22 +1,28 @@
 package com.upgrad.quora.api.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.upgrad.quora.api.model.*;
+import com.upgrad.quora.api.security.AuthorizedUser;
 import com.upgrad.quora.service.business.AnswerService;
-import com.upgrad.quora.service.business.CommonService;
 import com.upgrad.quora.service.common.AnswerCreationErrorCode;
 import com.upgrad.quora.service.common.AnswerDeleteErrorCode;
 import com.upgrad.quora.service.common.AnswerEditErrorCode;
-import com.upgrad.quora.service.common.AuthErrorCode;
+import com.upgrad.quora.service.common.AnswerGetAllErrorCode;
+import com.upgrad.quora.service.common.BulkItemResult;
+import com.upgrad.quora.service.common.Page;
 import com.upgrad.quora.service.entity.AnswerEntity;
 import com.upgrad.quora.service.entity.QuestionEntity;
 import com.upgrad.quora.service.entity.UserAuthEntity;
 import com.upgrad.quora.service.exception.*;
+import com.upgrad.quora.service.projection.AnswerSummary;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -25,15 +31,15 @@ import java.util.List;
 public class AnswerController {
 
     @Autowired
-    CommonService commonService;
+    AnswerService answerService;
 
     @Autowired
-    AnswerService answerService;
+    ObjectMapper objectMapper;
 
     /**
      * Endpoint for create answer for particular question
      * @param questionId
-     * @param accessToken
+     * @param userAuth
      * @param answerRequest
      * @return AnswerResponse
      * @throws InvalidQuestionException
@@ -42,9 +48,8 @@ public class AnswerController {
      */
     @RequestMapping(method = RequestMethod.POST, path = "/question/{questionId}/answer/create", consumes = MediaType.APPLICATION_JSON_UTF8_VALUE, produces = MediaType.APPLICATION_JSON_UTF8_VALUE)
     public ResponseEntity<AnswerResponse> createAnswer(@PathVariable("questionId") final String questionId,
-                                                           @RequestHeader("authorization") final String accessToken, AnswerRequest answerRequest) throws InvalidQuestionException, AuthorizationFailedException, SignUpRestrictedException {
-
-        UserAuthEntity userAuth = checkForAuthorization(accessToken, AnswerCreationErrorCode.ATHR_002.getCode(), AnswerCreationErrorCode.ATHR_002.getDefaultMessage());
+                                                           @AuthorizedUser(errorCode = AnswerCreationErrorCode.class, signedOut = "ATHR_002") final UserAuthEntity userAuth,
+                                                           AnswerRequest answerRequest) throws InvalidQuestionException, AuthorizationFailedException, SignUpRestrictedException {
 
         AnswerEntity answerEntity = new AnswerEntity();
         answerEntity.setAnswer(answerRequest.getAnswer());
@@ -65,11 +70,49 @@ public class AnswerController {
         return new ResponseEntity<AnswerResponse>(answerResponse, HttpStatus.CREATED);
     }
 
+    /**
+     * Endpoint to create many answers, possibly to different questions, with one request. The result of each answer
+     * is reported separately
+     * @param userAuth
+     * @param answerBulkRequests
+     * @return list of AnswerBulkResponse, in request order
+     * @throws AuthorizationFailedException
+     * @throws InvalidBulkRequestException
+     */
+    @RequestMapping(method = RequestMethod.POST, path = "/answer/bulk/create", consumes = MediaType.APPLICATION_JSON_UTF8_VALUE, produces = MediaType.APPLICATION_JSON_UTF8_VALUE)
+    public ResponseEntity<List<AnswerBulkResponse>> createAnswers(@AuthorizedUser(errorCode = AnswerCreationErrorCode.class, signedOut = "ATHR_002") final UserAuthEntity userAuth,
+                                                                  @RequestBody final List<AnswerBulkRequest> answerBulkRequests) throws AuthorizationFailedException, InvalidBulkRequestException {
+
+        List<AnswerEntity> answerEntities = new ArrayList<>(answerBulkRequests.size());
+        for (AnswerBulkRequest answerBulkRequest : answerBulkRequests) {
+            AnswerEntity answerEntity = new AnswerEntity();
+            answerEntity.setAnswer(answerBulkRequest.getAnswer());
+            answerEntity.setUserEntity(userAuth.getUserEntity());
+
+            // Set UUID of question using input questionId
+            QuestionEntity questionEntity = new QuestionEntity();
+            questionEntity.setUuid(answerBulkRequest.getQuestionId());
+            answerEntity.setQuestionEntity(questionEntity);
+            answerEntities.add(answerEntity);
+        }
+
+        List<AnswerBulkResponse> answerBulkResponses = new ArrayList<>(answerBulkRequests.size());
+        for (BulkItemResult result : answerService.addAnswers(answerEntities)) {
+            answerBulkResponses.add(new AnswerBulkResponse()
+                    .index(result.getIndex())
+                    .id(result.getUuid())
+                    .status(result.isCreated() ? "ANSWER CREATED" : "ANSWER NOT CREATED")
+                    .code(result.getErrorCode())
+                    .message(result.getErrorMessage()));
+        }
+
+        return new ResponseEntity<List<AnswerBulkResponse>>(answerBulkResponses, HttpStatus.OK);
+    }
+
     @RequestMapping(method = RequestMethod.PUT, path = "/answer/edit/{answerId}", consumes = MediaType.APPLICATION_JSON_UTF8_VALUE, produces = MediaType.APPLICATION_JSON_UTF8_VALUE)
     public ResponseEntity<AnswerResponse> editAnswer(@PathVariable("answerId") final String answerId,
-                                                       @RequestHeader("authorization") final String accessToken, AnswerEditRequest answerEditRequest) throws AuthorizationFailedException, AnswerNotFoundException {
-
-        UserAuthEntity userAuth = checkForAuthorization(accessToken, AnswerEditErrorCode.ATHR_002.getCode(), AnswerEditErrorCode.ATHR_002.getDefaultMessage());
+                                                       @AuthorizedUser(errorCode = AnswerEditErrorCode.class, signedOut = "ATHR_002") final UserAuthEntity userAuth,
+                                                       AnswerEditRequest answerEditRequest) throws AuthorizationFailedException, AnswerNotFoundException {
 
         AnswerEntity answerEntity = new AnswerEntity();
         answerEntity.setAnswer(answerEditRequest.getContent());
@@ -87,9 +130,7 @@ public class AnswerController {
 
     @RequestMapping(method = RequestMethod.DELETE, path = "/answer/delete/{answerId}", produces = MediaType.APPLICATION_JSON_UTF8_VALUE)
     public ResponseEntity<AnswerDeleteResponse> deleteUser(@PathVariable("answerId") String answerId,
-                                                                              @RequestHeader("authorization") final String accessToken) throws AuthorizationFailedException, UserNotFoundException, AnswerNotFoundException {
-
-        UserAuthEntity userAuth = checkForAuthorization(accessToken, AnswerDeleteErrorCode.ATHR_002.getCode(), AnswerDeleteErrorCode.ATHR_002.getDefaultMessage());
+                                                           @AuthorizedUser(errorCode = AnswerDeleteErrorCode.class, signedOut = "ATHR_002") final UserAuthEntity userAuth) throws AuthorizationFailedException, UserNotFoundException, AnswerNotFoundException {
 
         AnswerEntity answerEntity = answerService.deleteAnswer(answerId, userAuth.getUserEntity());
 
@@ -100,50 +141,68 @@ public class AnswerController {
     }
 
     /**
-     *
+     * Endpoint to fetch all answers to a question, oldest first, one page at a time
      * @param questionId
-     * @param accessToken
-     * @return
+     * @param userAuth
+     * @param cursor next-cursor header of the previous page, absent for the first page
+     * @param limit page size
+     * @param includeTotal whether to return the total-count-estimate header
+     * @return List of AnswerDetailsResponse
      * @throws AuthorizationFailedException
-     * @throws UserNotFoundException
      * @throws InvalidQuestionException
+     * @throws InvalidPageRequestException
      */
     @RequestMapping(method = RequestMethod.GET, path = "/answer/all/{questionId}", produces = MediaType.APPLICATION_JSON_UTF8_VALUE)
     public ResponseEntity<List<AnswerDetailsResponse>> getAllAnswersToQuestion (@PathVariable("questionId") final String questionId,
-            @RequestHeader("authorization") final String accessToken) throws AuthorizationFailedException, UserNotFoundException, InvalidQuestionException {
-
-        UserAuthEntity userAuth = checkForAuthorization(accessToken, AnswerDeleteErrorCode.ATHR_002.getCode(), AnswerDeleteErrorCode.ATHR_002.getDefaultMessage());
+            @AuthorizedUser(errorCode = AnswerGetAllErrorCode.class, signedOut = "ATHR_002") final UserAuthEntity userAuth,
+            @RequestParam(value = "cursor", required = false) final String cursor,
+            @RequestParam(value = "limit", required = false) final Integer limit,
+            @RequestParam(value = "includeTotal", defaultValue = "false") final boolean includeTotal) throws AuthorizationFailedException, InvalidQuestionException, InvalidPageRequestException {
 
         // Set UUID of question using input questionId
         QuestionEntity questionEntity = new QuestionEntity();
         questionEntity.setUuid(questionId);
         questionEntity.setUserEntity(userAuth.getUserEntity());
 
-        List<AnswerEntity> allAnswerEntity = answerService.getAllAnswer(questionEntity);
+        Page<AnswerSummary> answerPage = answerService.getAllAnswer(questionEntity, cursor, limit, includeTotal);
 
-        List<AnswerDetailsResponse> allAnswers = new ArrayList<>();
-        for (AnswerEntity answerEntity: allAnswerEntity){
+        List<AnswerDetailsResponse> allAnswers = new ArrayList<>(answerPage.getItems().size());
+        for (AnswerSummary answerSummary: answerPage.getItems()){
             AnswerDetailsResponse answerResponse = new AnswerDetailsResponse();
-            answerResponse.setId(answerEntity.getUuid());
-            answerResponse.setAnswerContent(answerEntity.getAnswer());
-            answerResponse.setQuestionContent(answerEntity.getQuestionEntity().getContent());
+            answerResponse.setId(answerSummary.getUuid());
+            answerResponse.setAnswerContent(answerSummary.getAnswer());
+            answerResponse.setQuestionContent(answerSummary.getQuestionContent());
             allAnswers.add(answerResponse);
         }
 
 
-        return new ResponseEntity<>(allAnswers, HttpStatus.OK);
+        return new ResponseEntity<>(allAnswers, PageHeaders.of(answerPage), HttpStatus.OK);
     }
 
-    private UserAuthEntity checkForAuthorization(String accessToken, String errorCode, String defaultMessage) throws AuthorizationFailedException {
-        try {
-            // Verify 'authorization' in header is valid or not, if not valid it will throw exception
-            return commonService.validateUser(accessToken);
-        } catch (AuthorizationFailedException authorizationFailedException) {
-            // Use existing exception and modify the message as per the requirement
-            if ( authorizationFailedException.getCode().equals(AuthErrorCode.ATHR_002_RELOGIN_PROMPT.getCode())){
-                throw new AuthorizationFailedException(errorCode, defaultMessage);
-            }
-            throw authorizationFailedException;
-        }
+    /**
+     * Endpoint to export all answers to a question, oldest first, as newline delimited JSON. Unlike /answer/all the
+     * answers are written to the response while they are read from the database, so memory use does not depend on
+     * their number
+     * @param questionId
+     * @param userAuth
+     * @param response
+     * @throws AuthorizationFailedException
+     * @throws InvalidQuestionException
+     * @throws IOException
+     */
+    @RequestMapping(method = RequestMethod.GET, path = "/answer/export/{questionId}")
+    public void exportAllAnswersToQuestion(@PathVariable("questionId") final String questionId,
+            @AuthorizedUser(errorCode = AnswerGetAllErrorCode.class, signedOut = "ATHR_002") final UserAuthEntity userAuth,
+            final HttpServletResponse response) throws AuthorizationFailedException, InvalidQuestionException, IOException {
+
+        QuestionEntity questionEntity = new QuestionEntity();
+        questionEntity.setUuid(questionId);
+
+        NdjsonResponse ndjsonResponse = new NdjsonResponse(objectMapper, response);
+        answerService.exportAllAnswers(questionEntity, answer -> ndjsonResponse.writeLine(
+                "id", answer.getUuid(),
+                "questionContent", answer.getQuestionContent(),
+                "answerContent", answer.getAnswer()));
+        ndjsonResponse.finish();
     }
 }
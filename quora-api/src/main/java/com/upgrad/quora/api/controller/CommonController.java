@@ -1,6 +1,7 @@
 package com.upgrad.quora.api.controller;
 
 import com.upgrad.quora.api.model.UserDetailsResponse;
+import com.upgrad.quora.api.security.AuthorizedUser;
 import com.upgrad.quora.service.business.CommonService;
 import com.upgrad.quora.service.entity.UserAuthEntity;
 import com.upgrad.quora.service.entity.UserEntity;
@@ -23,17 +24,14 @@ public class CommonController {
      *
      *
      * @param userUuid
-     * @param authorization
+     * @param userAuth
      * @return UserDetailsResponse
      * @throws AuthorizationFailedException
      * @throws UserNotFoundException
      */
     @RequestMapping(method = RequestMethod.GET, path = "/userprofile/{userId}", produces = MediaType.APPLICATION_JSON_UTF8_VALUE)
     public ResponseEntity<UserDetailsResponse> getUserProfile(@PathVariable("userId") final String userUuid,
-            @RequestHeader("authorization") final String authorization) throws AuthorizationFailedException, UserNotFoundException {
-
-        // Verify 'authorization' in header is valid or not, if not valid it will throw exception
-        UserAuthEntity userAuth = commonService.validateUser(authorization);
+            @AuthorizedUser final UserAuthEntity userAuth) throws AuthorizationFailedException, UserNotFoundException {
 
         UserEntity user = commonService.getUserByUuid(userUuid);
 
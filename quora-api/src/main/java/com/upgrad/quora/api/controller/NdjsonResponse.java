@@ -0,0 +1,79 @@
+package com.upgrad.quora.api.controller;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Newline delimited JSON body of the export endpoints, one object per line written straight to the response stream.
+ * Nothing but the generator's buffer is held in memory, the response is sent chunked while rows are still being read.
+ * <p>
+ * The response stream is only opened by the first line, so an exception thrown before that is still rendered as a
+ * regular error response by RestExceptionHandler.
+ */
+final class NdjsonResponse {
+
+    static final String MEDIA_TYPE = "application/x-ndjson";
+
+    private static final String LINE_SEPARATOR = "\n";
+
+    private final ObjectMapper objectMapper;
+
+    private final HttpServletResponse response;
+
+    private JsonGenerator generator;
+
+    NdjsonResponse(final ObjectMapper objectMapper, final HttpServletResponse response) {
+        this.objectMapper = objectMapper;
+        this.response = response;
+    }
+
+    /**
+     * Writes one line with an object of the given string fields, given as name and value pairs. Used from row
+     * callbacks which cannot throw IOException, so a failed write, typically a client which went away, is rethrown
+     * as UncheckedIOException and ends the export.
+     *
+     * @param namesAndValues
+     */
+    void writeLine(final String... namesAndValues) {
+        try {
+            if (generator == null)
+                open();
+            generator.writeStartObject();
+            for (int i = 0; i < namesAndValues.length; i += 2) {
+                generator.writeStringField(namesAndValues[i], namesAndValues[i + 1]);
+            }
+            generator.writeEndObject();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void open() throws IOException {
+        response.setContentType(MEDIA_TYPE);
+        response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        generator = objectMapper.getFactory().createGenerator(response.getOutputStream(), JsonEncoding.UTF8);
+        generator.setRootValueSeparator(new SerializedString(LINE_SEPARATOR));
+    }
+
+    /**
+     * Ends the last line and flushes the response, an export without any line has an empty body. Not called when the
+     * export failed, the response is then either an error response or a truncated body.
+     *
+     * @throws IOException
+     */
+    void finish() throws IOException {
+        if (generator == null) {
+            response.setContentType(MEDIA_TYPE);
+            return;
+        }
+        generator.writeRaw(LINE_SEPARATOR);
+        generator.close();
+    }
+}
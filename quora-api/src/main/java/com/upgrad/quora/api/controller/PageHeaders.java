@@ -0,0 +1,32 @@
+package com.upgrad.quora.api.controller;
+
+import com.upgrad.quora.service.common.Page;
+import org.springframework.http.HttpHeaders;
+
+/**
+ * Response headers of a page of a list endpoint.
+ */
+final class PageHeaders {
+
+    /**
+     * Cursor to pass as "cursor" to get the next page, absent on the last page.
+     */
+    static final String NEXT_CURSOR = "next-cursor";
+
+    /**
+     * Approximate number of rows of the whole list, present if "includeTotal" was requested.
+     */
+    static final String TOTAL_COUNT_ESTIMATE = "total-count-estimate";
+
+    private PageHeaders() {
+    }
+
+    static HttpHeaders of(final Page<?> page) {
+        HttpHeaders headers = new HttpHeaders();
+        if (page.getNextCursor() != null)
+            headers.add(NEXT_CURSOR, page.getNextCursor());
+        if (page.getTotalEstimate() != null)
+            headers.add(TOTAL_COUNT_ESTIMATE, String.valueOf(page.getTotalEstimate()));
+        return headers;
+    }
+}
@@ -1,28 +1,34 @@
 package com.upgrad.quora.api.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.upgrad.quora.api.model.QuestionBulkResponse;
 import com.upgrad.quora.api.model.QuestionDetailsResponse;
 import com.upgrad.quora.api.model.QuestionEditRequest;
 import com.upgrad.quora.api.model.QuestionRequest;
 import com.upgrad.quora.api.model.QuestionResponse;
-import com.upgrad.quora.service.business.CommonService;
+import com.upgrad.quora.api.security.AuthorizedUser;
 import com.upgrad.quora.service.business.QuestionService;
 import com.upgrad.quora.service.common.*;
 import com.upgrad.quora.service.entity.QuestionEntity;
 import com.upgrad.quora.service.entity.UserAuthEntity;
 import com.upgrad.quora.service.exception.AuthenticationFailedException;
 import com.upgrad.quora.service.exception.AuthorizationFailedException;
+import com.upgrad.quora.service.exception.InvalidBulkRequestException;
+import com.upgrad.quora.service.exception.InvalidPageRequestException;
 import com.upgrad.quora.service.exception.InvalidQuestionException;
 import com.upgrad.quora.service.exception.UserNotFoundException;
+import com.upgrad.quora.service.projection.QuestionSummary;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
 import java.time.ZonedDateTime;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.UUID;
 
 @RestController
 //@RequestMapping("/")
@@ -33,37 +39,25 @@ public class QuestionController {
     QuestionService questionService;
 
     @Autowired
-    CommonService commonService;
+    ObjectMapper objectMapper;
+
     /**
      * Endpoint to create question
-     * @param authorization
+     * @param userAuth
      * @param questionRequest
      * @return QuestionResponse
      * @throws AuthenticationFailedException
      */
 
     @RequestMapping(method = RequestMethod.POST, path = "/question/create", consumes = MediaType.APPLICATION_JSON_UTF8_VALUE, produces = MediaType.APPLICATION_JSON_UTF8_VALUE)
-    public ResponseEntity<QuestionResponse> createQuestion(@RequestHeader("authorization") final String authorization, QuestionRequest questionRequest) throws AuthorizationFailedException {
-        UserAuthEntity userAuth = null;
-        try {
-            // Verify 'authorization' in header, if not valid it will throw exception
-            userAuth = commonService.validateUser(authorization);
-        } catch (AuthorizationFailedException authorizationFailedException) {
-            // Use existing exception and modify the message as per the requirement
-            if ( authorizationFailedException.getCode().equals(QuestionCreationErrorCode.ATHR_002_CREATEQUESTION_PROMPT.getCode())){
-                throw new AuthorizationFailedException(QuestionCreationErrorCode.ATHR_002_CREATEQUESTION_PROMPT.getCode(), QuestionCreationErrorCode.ATHR_002_CREATEQUESTION_PROMPT.getDefaultMessage());
-            }
-            else if ( authorizationFailedException.getCode().equals(AuthErrorCode.USR_001.getCode())){
-                throw new AuthorizationFailedException(AuthErrorCode.USR_001.getCode(), AuthErrorCode.USR_001.getDefaultMessage());
-            }
-            throw authorizationFailedException;
-        }
+    public ResponseEntity<QuestionResponse> createQuestion(@AuthorizedUser(errorCode = QuestionCreationErrorCode.class, signedOut = "ATHR_002_CREATEQUESTION_PROMPT") final UserAuthEntity userAuth,
+                                                           QuestionRequest questionRequest) throws AuthorizationFailedException {
 
         QuestionEntity questionEntity = new QuestionEntity();
         questionEntity.setContent(questionRequest.getContent());
         questionEntity.setUserEntity(userAuth.getUserEntity());
         questionEntity.setDate(ZonedDateTime.now());
-        questionEntity.setUuid(UUID.randomUUID().toString());
+        questionEntity.setUuid(TimeOrderedUuidGenerator.next().toString());
 
 
         QuestionEntity respQuestionEntity = questionService.createQuestion(questionEntity);
@@ -75,29 +69,55 @@ public class QuestionController {
         return new ResponseEntity<QuestionResponse>(questionResponse, HttpStatus.CREATED);
     }
 
+    /**
+     * Endpoint to create many questions with one request, the result of each question is reported separately
+     * @param userAuth
+     * @param questionRequests
+     * @return list of QuestionBulkResponse, in request order
+     * @throws AuthorizationFailedException
+     * @throws InvalidBulkRequestException
+     */
+    @RequestMapping(method = RequestMethod.POST, path = "/question/bulk/create", consumes = MediaType.APPLICATION_JSON_UTF8_VALUE, produces = MediaType.APPLICATION_JSON_UTF8_VALUE)
+    public ResponseEntity<List<QuestionBulkResponse>> createQuestions(@AuthorizedUser(errorCode = QuestionCreationErrorCode.class, signedOut = "ATHR_002_CREATEQUESTION_PROMPT") final UserAuthEntity userAuth,
+                                                                      @RequestBody final List<QuestionRequest> questionRequests) throws AuthorizationFailedException, InvalidBulkRequestException {
+
+        final ZonedDateTime now = ZonedDateTime.now();
+        List<QuestionEntity> questionEntities = new ArrayList<>(questionRequests.size());
+        for (QuestionRequest questionRequest : questionRequests) {
+            QuestionEntity questionEntity = new QuestionEntity();
+            questionEntity.setContent(questionRequest.getContent());
+            questionEntity.setUserEntity(userAuth.getUserEntity());
+            questionEntity.setDate(now);
+            questionEntity.setUuid(TimeOrderedUuidGenerator.next().toString());
+            questionEntities.add(questionEntity);
+        }
+
+        List<QuestionBulkResponse> questionBulkResponses = new ArrayList<>(questionRequests.size());
+        for (BulkItemResult result : questionService.createQuestions(questionEntities)) {
+            questionBulkResponses.add(new QuestionBulkResponse()
+                    .index(result.getIndex())
+                    .id(result.getUuid())
+                    .status(result.isCreated() ? "QUESTION CREATED" : "QUESTION NOT CREATED")
+                    .code(result.getErrorCode())
+                    .message(result.getErrorMessage()));
+        }
+
+        return new ResponseEntity<List<QuestionBulkResponse>>(questionBulkResponses, HttpStatus.OK);
+    }
+
     /**
      * Endpoint to delete question
-     * @param authorization
+     * @param userAuth
      * * @param Question ID
      * @return QuestionResponse
      * @throws AuthenticationFailedException
      * @throws InvalidQuestionException
      */
     @RequestMapping(method = RequestMethod.DELETE, path = "/question/delete/{questionId}",produces = MediaType.APPLICATION_JSON_UTF8_VALUE)
-    public ResponseEntity<QuestionResponse> deleteQuestion(@PathVariable("questionId") String questionId,@RequestHeader("authorization") final String authorization) throws AuthorizationFailedException,InvalidQuestionException  {
-        UserAuthEntity userAuth = null;
-        try {
-            // Verify 'authorization' in header, if not valid it will throw exception
-            userAuth = commonService.validateUser(authorization);
-        } catch (AuthorizationFailedException authorizationFailedException) {
-            // Use existing exception and modify the message as per the requirement
-            if ( authorizationFailedException.getCode().equals(QuestionDeleteErrorCode.ATHR_002_DELETEQUESTION_PROMPT.getCode())){
-                throw new AuthorizationFailedException(QuestionDeleteErrorCode.ATHR_002_DELETEQUESTION_PROMPT.getCode(), QuestionDeleteErrorCode.ATHR_002_DELETEQUESTION_PROMPT.getDefaultMessage());
-            }
-            throw authorizationFailedException;
-        }
+    public ResponseEntity<QuestionResponse> deleteQuestion(@PathVariable("questionId") String questionId,
+                                                           @AuthorizedUser(errorCode = QuestionDeleteErrorCode.class, signedOut = "ATHR_002_DELETEQUESTION_PROMPT") final UserAuthEntity userAuth) throws AuthorizationFailedException,InvalidQuestionException  {
 
-        QuestionEntity respQuestionEntity = questionService.deleteQuestion(questionId, authorization);
+        QuestionEntity respQuestionEntity = questionService.deleteQuestion(questionId, userAuth);
 
         QuestionResponse questionResponse = new QuestionResponse();
         questionResponse.id(respQuestionEntity.getUuid());
@@ -108,7 +128,7 @@ public class QuestionController {
 
     /**
      * Endpoint to edit question
-     * @param authorization
+     * @param userAuth
      * @param questionEditRequest
      * @param questionId
      * @return QuestionResponse
@@ -116,21 +136,12 @@ public class QuestionController {
      * @throws InvalidQuestionException
      */
     @RequestMapping(method = RequestMethod.PUT, path = "/question/edit/{questionId}",consumes = MediaType.APPLICATION_JSON_UTF8_VALUE,produces = MediaType.APPLICATION_JSON_UTF8_VALUE)
-    public ResponseEntity<QuestionResponse> editQuestionContent(@PathVariable("questionId") String questionId, @RequestHeader("authorization") final String authorization, QuestionEditRequest questionEditRequest) throws AuthorizationFailedException,InvalidQuestionException  {
-        UserAuthEntity userAuth = null;
-        try {
-            // Verify 'authorization' in header, if not valid it will throw exception
-            userAuth = commonService.validateUser(authorization);
-        } catch (AuthorizationFailedException authorizationFailedException) {
-            // Use existing exception and modify the message as per the requirement
-            if ( authorizationFailedException.getCode().equals(QuestionEditErrorCode.ATHR_002_EDITQUESTION_PROMPT.getCode())){
-                throw new AuthorizationFailedException(QuestionEditErrorCode.ATHR_002_EDITQUESTION_PROMPT.getCode(), QuestionEditErrorCode.ATHR_002_EDITQUESTION_PROMPT.getDefaultMessage());
-            }
-            throw authorizationFailedException;
-        }
+    public ResponseEntity<QuestionResponse> editQuestionContent(@PathVariable("questionId") String questionId,
+                                                                @AuthorizedUser(errorCode = QuestionEditErrorCode.class, signedOut = "ATHR_002_EDITQUESTION_PROMPT") final UserAuthEntity userAuth,
+                                                                QuestionEditRequest questionEditRequest) throws AuthorizationFailedException,InvalidQuestionException  {
 
         QuestionEntity respQuestionEntity = questionService.editQuestion(questionId, questionEditRequest.getContent(),
-                authorization);
+                userAuth);
 
         QuestionResponse questionResponse = new QuestionResponse();
         questionResponse.id(respQuestionEntity.getUuid());
@@ -141,83 +152,87 @@ public class QuestionController {
     }
 
     /**
-     * Endpoint to fetch all questions
-     * @param authorization
+     * Endpoint to fetch all questions, newest first, one page at a time
+     * @param userAuth
+     * @param cursor next-cursor header of the previous page, absent for the first page
+     * @param limit page size
+     * @param includeTotal whether to return the total-count-estimate header
      * @return QuestionResponse
      * @throws AuthenticationFailedException
-     * @throws InvalidQuestionException
+     * @throws InvalidPageRequestException
      */
     @RequestMapping(method = RequestMethod.GET, path = "/question/all",produces = MediaType.APPLICATION_JSON_UTF8_VALUE)
-    public ResponseEntity<List<QuestionDetailsResponse>> getAllQuestions(@RequestHeader("authorization") final String authorization) throws AuthorizationFailedException,InvalidQuestionException  {
-        UserAuthEntity userAuth = null;
-        try {
-            // Verify 'authorization' in header, if not valid it will throw exception
-            userAuth = commonService.validateUser(authorization);
-        } catch (AuthorizationFailedException authorizationFailedException) {
-            // Use existing exception and modify the message as per the requirement
-            if ( authorizationFailedException.getCode().equals(GetAllQuestionErrorCode.ATHR_002_GETALLQUESTION_PROMPT.getCode())){
-                throw new AuthorizationFailedException(GetAllQuestionErrorCode.ATHR_002_GETALLQUESTION_PROMPT.getCode(), GetAllQuestionErrorCode.ATHR_002_GETALLQUESTION_PROMPT.getDefaultMessage());
-            }
-            else if ( authorizationFailedException.getCode().equals(AuthErrorCode.USR_001.getCode())){
-                throw new AuthorizationFailedException(AuthErrorCode.USR_001.getCode(), AuthErrorCode.USR_001.getDefaultMessage());
-            }
-            throw authorizationFailedException;
-        }
+    public ResponseEntity<List<QuestionDetailsResponse>> getAllQuestions(@AuthorizedUser(errorCode = GetAllQuestionErrorCode.class, signedOut = "ATHR_002_GETALLQUESTION_PROMPT") final UserAuthEntity userAuth,
+                                                                         @RequestParam(value = "cursor", required = false) final String cursor,
+                                                                         @RequestParam(value = "limit", required = false) final Integer limit,
+                                                                         @RequestParam(value = "includeTotal", defaultValue = "false") final boolean includeTotal) throws AuthorizationFailedException,InvalidPageRequestException  {
 
-        List<QuestionEntity> respQuestionEntity = questionService.getAllQuestions();
-        final List<QuestionDetailsResponse> questionResponseList = new ArrayList<>();
+        Page<QuestionSummary> respQuestionPage = questionService.getAllQuestions(cursor, limit, includeTotal);
+        final List<QuestionDetailsResponse> questionResponseList = new ArrayList<>(respQuestionPage.getItems().size());
 
-        for (QuestionEntity question : respQuestionEntity) {
+        for (QuestionSummary question : respQuestionPage.getItems()) {
             String uuid = question.getUuid();
             String content = question.getContent();
             questionResponseList.add(new QuestionDetailsResponse().id(uuid).content(content));
         }
-        return new ResponseEntity<List<QuestionDetailsResponse>>(questionResponseList, HttpStatus.OK);
+        return new ResponseEntity<List<QuestionDetailsResponse>>(questionResponseList, PageHeaders.of(respQuestionPage), HttpStatus.OK);
 
     }
 
     /**
-     * Endpoint to fetch all questions created by user
+     * Endpoint to fetch all questions created by user, newest first, one page at a time
      *
      * @param userId
-     * @param authorization
+     * @param userAuth
+     * @param cursor next-cursor header of the previous page, absent for the first page
+     * @param limit page size
+     * @param includeTotal whether to return the total-count-estimate header
      * @return QuestionDetailsResponse
      * @throws AuthorizationFailedException
-     * @throws InvalidQuestionException
      * @throws UserNotFoundException
+     * @throws InvalidPageRequestException
      */
     @RequestMapping(method = RequestMethod.GET, path = "/question/all/{userId}",produces = MediaType.APPLICATION_JSON_UTF8_VALUE)
-    public ResponseEntity<List<QuestionDetailsResponse>> getAllQuestionsByUser(@PathVariable("userId") String userId, @RequestHeader("authorization") final String authorization)
-            throws AuthorizationFailedException, InvalidQuestionException, UserNotFoundException {
-        UserAuthEntity userAuth = null;
-        System.out.println(userId);
-        try {
-            // Verify 'authorization' in header, if not valid it will throw exception
-            userAuth = commonService.validateUser(authorization);
-        } catch (AuthorizationFailedException authorizationFailedException) {
-            // Use existing exception and modify the message as per the requirement
-            if ( authorizationFailedException.getCode().equals(GellAllQuestionByUserErrorCode.ATHR_002_GETALLQUESTIONBYUSER_PROMPT.getCode())){
-                throw new AuthorizationFailedException(GellAllQuestionByUserErrorCode.ATHR_002_GETALLQUESTIONBYUSER_PROMPT.getCode(), GellAllQuestionByUserErrorCode.ATHR_002_GETALLQUESTIONBYUSER_PROMPT.getDefaultMessage());
-            }
-
-            throw authorizationFailedException;
-        }
+    public ResponseEntity<List<QuestionDetailsResponse>> getAllQuestionsByUser(@PathVariable("userId") String userId,
+                                                                               @AuthorizedUser(errorCode = GellAllQuestionByUserErrorCode.class, signedOut = "ATHR_002_GETALLQUESTIONBYUSER_PROMPT") final UserAuthEntity userAuth,
+                                                                               @RequestParam(value = "cursor", required = false) final String cursor,
+                                                                               @RequestParam(value = "limit", required = false) final Integer limit,
+                                                                               @RequestParam(value = "includeTotal", defaultValue = "false") final boolean includeTotal)
+            throws AuthorizationFailedException, UserNotFoundException, InvalidPageRequestException {
 
-        List<QuestionEntity> respQuestionEntity = questionService.getAllQuestionsByUser(userId);
+        Page<QuestionSummary> respQuestionPage = questionService.getAllQuestionsByUser(userId, cursor, limit, includeTotal);
 
-        List<QuestionDetailsResponse> questionDetailResponses = new ArrayList<>();
-        for (QuestionEntity questionEntity : respQuestionEntity) {
+        List<QuestionDetailsResponse> questionDetailResponses = new ArrayList<>(respQuestionPage.getItems().size());
+        for (QuestionSummary questionSummary : respQuestionPage.getItems()) {
             QuestionDetailsResponse questionDetailResponse = new QuestionDetailsResponse();
-            questionDetailResponse.setId(questionEntity.getUuid());
-            questionDetailResponse.setContent(questionEntity.getContent());
+            questionDetailResponse.setId(questionSummary.getUuid());
+            questionDetailResponse.setContent(questionSummary.getContent());
             questionDetailResponses.add(questionDetailResponse);
         }
 
         return new ResponseEntity<List<QuestionDetailsResponse>>(
-                questionDetailResponses, HttpStatus.OK);
+                questionDetailResponses, PageHeaders.of(respQuestionPage), HttpStatus.OK);
 
     }
 
+    /**
+     * Endpoint to export all questions, newest first, as newline delimited JSON. Unlike /question/all the questions
+     * are written to the response while they are read from the database, so memory use does not depend on their number
+     * @param userAuth
+     * @param response
+     * @throws AuthorizationFailedException
+     * @throws IOException
+     */
+    @RequestMapping(method = RequestMethod.GET, path = "/question/export")
+    public void exportAllQuestions(@AuthorizedUser(errorCode = GetAllQuestionErrorCode.class, signedOut = "ATHR_002_GETALLQUESTION_PROMPT") final UserAuthEntity userAuth,
+                                   final HttpServletResponse response) throws AuthorizationFailedException, IOException {
+
+        NdjsonResponse ndjsonResponse = new NdjsonResponse(objectMapper, response);
+        questionService.exportAllQuestions(question -> ndjsonResponse.writeLine(
+                "id", question.getUuid(),
+                "content", question.getContent()));
+        ndjsonResponse.finish();
+    }
 
-}
 
+}
@@ -4,11 +4,15 @@ import com.upgrad.quora.api.model.SigninResponse;
 import com.upgrad.quora.api.model.SignoutResponse;
 import com.upgrad.quora.api.model.SignupUserRequest;
 import com.upgrad.quora.api.model.SignupUserResponse;
+import com.upgrad.quora.api.model.UserAvailabilityResponse;
+import com.upgrad.quora.api.security.AuthorizedUser;
 import com.upgrad.quora.service.business.UserService;
 import com.upgrad.quora.service.common.UserRole;
 import com.upgrad.quora.service.entity.UserAuthEntity;
 import com.upgrad.quora.service.entity.UserEntity;
 import com.upgrad.quora.service.exception.AuthenticationFailedException;
+import com.upgrad.quora.service.exception.AuthorizationFailedException;
+import com.upgrad.quora.service.exception.ServiceUnavailableException;
 import com.upgrad.quora.service.exception.SignOutRestrictedException;
 import com.upgrad.quora.service.exception.SignUpRestrictedException;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -19,6 +23,7 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
 import java.util.Base64;
@@ -38,9 +43,10 @@ public class UserController {
      * @param signupUserRequest
      * @return SignupUserResponse
      * @throws SignUpRestrictedException
+     * @throws ServiceUnavailableException
      */
     @RequestMapping(method = RequestMethod.POST, path = "/user/signup", consumes = MediaType.APPLICATION_JSON_UTF8_VALUE, produces = MediaType.APPLICATION_JSON_UTF8_VALUE)
-    public ResponseEntity<SignupUserResponse> signup(SignupUserRequest signupUserRequest) throws SignUpRestrictedException {
+    public ResponseEntity<SignupUserResponse> signup(SignupUserRequest signupUserRequest) throws SignUpRestrictedException, ServiceUnavailableException {
 
         UserEntity reqUserEntity = new UserEntity();
         reqUserEntity.setFirstName(signupUserRequest.getFirstName());
@@ -73,10 +79,11 @@ public class UserController {
      * @param authorization
      * @return SigninResponse
      * @throws AuthenticationFailedException
+     * @throws ServiceUnavailableException
      */
     @RequestMapping(method = RequestMethod.POST, path = "/user/signin", consumes = MediaType.APPLICATION_JSON_UTF8_VALUE, produces = MediaType.APPLICATION_JSON_UTF8_VALUE)
     public ResponseEntity<SigninResponse> signin(@RequestHeader("authorization") final String authorization)
-            throws AuthenticationFailedException {
+            throws AuthenticationFailedException, ServiceUnavailableException {
 
         byte[] decode = Base64.getDecoder().decode(authorization.split("Basic ")[1]);
         String decodedText = new String(decode);
@@ -107,4 +114,37 @@ public class UserController {
         SignoutResponse signoutResponse = new SignoutResponse().id(userEntity.getUuid()).message("SIGNED OUT SUCCESSFULLY");
         return new ResponseEntity<SignoutResponse>(signoutResponse, HttpStatus.OK);
     }
+
+    /**
+     * This method signs out every session of the signed in user, on every device, at once.
+     *
+     * @param userAuth
+     * @return SignoutResponse
+     * @throws AuthorizationFailedException
+     */
+    @RequestMapping(method = RequestMethod.POST, path = "/user/signout/all", produces = MediaType.APPLICATION_JSON_UTF8_VALUE)
+    public ResponseEntity<SignoutResponse> signoutAll(@AuthorizedUser final UserAuthEntity userAuth) throws AuthorizationFailedException {
+        userService.signOutAllSessions(userAuth.getUserEntity());
+        SignoutResponse signoutResponse = new SignoutResponse().id(userAuth.getUserEntity().getUuid()).message("SIGNED OUT OF ALL SESSIONS SUCCESSFULLY");
+        return new ResponseEntity<SignoutResponse>(signoutResponse, HttpStatus.OK);
+    }
+
+    /**
+     * This method tells whether the given username and/or email address can still be used to signup, so the signup
+     * form can warn the user before submitting. Either parameter may be left out.
+     *
+     * @param userName
+     * @param emailAddress
+     * @return UserAvailabilityResponse
+     */
+    @RequestMapping(method = RequestMethod.GET, path = "/user/availability", produces = MediaType.APPLICATION_JSON_UTF8_VALUE)
+    public ResponseEntity<UserAvailabilityResponse> availability(@RequestParam(value = "userName", required = false) final String userName,
+                                                                 @RequestParam(value = "emailAddress", required = false) final String emailAddress) {
+        UserAvailabilityResponse availabilityResponse = new UserAvailabilityResponse();
+        if (userName != null)
+            availabilityResponse.userName(userName).userNameAvailable(userService.isUserNameAvailable(userName));
+        if (emailAddress != null)
+            availabilityResponse.emailAddress(emailAddress).emailAddressAvailable(userService.isEmailAvailable(emailAddress));
+        return new ResponseEntity<UserAvailabilityResponse>(availabilityResponse, HttpStatus.OK);
+    }
 }
@@ -114,6 +114,48 @@ public class RestExceptionHandler {
                 HttpStatus.NOT_FOUND);
     }
 
+    /**
+     * This method is invoked when ServiceUnavailableException thrown and relevant error code and error message
+     *
+     * @param exception
+     * @param request
+     * @return ErrorResponse
+     */
+    @ExceptionHandler(ServiceUnavailableException.class)
+    public ResponseEntity<ErrorResponse> serviceUnavailableException(
+            ServiceUnavailableException exception, WebRequest request) {
+        return new ResponseEntity<ErrorResponse>(new ErrorResponse().code(exception.getCode()).message(exception.getErrorMessage()).rootCause(getClassName(exception.toString())),
+                HttpStatus.SERVICE_UNAVAILABLE);
+    }
+
+    /**
+     * This method is invoked when InvalidPageRequestException thrown and relevant error code and error message
+     *
+     * @param exception
+     * @param request
+     * @return ErrorResponse
+     */
+    @ExceptionHandler(InvalidPageRequestException.class)
+    public ResponseEntity<ErrorResponse> invalidPageRequestException(
+            InvalidPageRequestException exception, WebRequest request) {
+        return new ResponseEntity<ErrorResponse>(new ErrorResponse().code(exception.getCode()).message(exception.getErrorMessage()).rootCause(getClassName(exception.toString())),
+                HttpStatus.BAD_REQUEST);
+    }
+
+    /**
+     * This method is invoked when InvalidBulkRequestException thrown and relevant error code and error message
+     *
+     * @param exception
+     * @param request
+     * @return ErrorResponse
+     */
+    @ExceptionHandler(InvalidBulkRequestException.class)
+    public ResponseEntity<ErrorResponse> invalidBulkRequestException(
+            InvalidBulkRequestException exception, WebRequest request) {
+        return new ResponseEntity<ErrorResponse>(new ErrorResponse().code(exception.getCode()).message(exception.getErrorMessage()).rootCause(getClassName(exception.toString())),
+                HttpStatus.BAD_REQUEST);
+    }
+
     /**
      * This method handles database constraint exceptions
      *
@@ -0,0 +1,32 @@
+package com.upgrad.quora.api.security;
+
+import com.upgrad.quora.service.common.AuthErrorCode;
+import com.upgrad.quora.service.common.ErrorCode;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a UserAuthEntity controller parameter which is resolved from the "authorization" header by
+ * AuthorizedUserArgumentResolver. The session is validated once per request and reused by every parameter and
+ * service call of that request.
+ * <p>
+ * When the session is signed out the ATHR-002 error is reported with the message of the given error code
+ * constant, so each endpoint can keep its own wording.
+ */
+@Target(ElementType.PARAMETER)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface AuthorizedUser {
+
+    /**
+     * Error code enum which holds the signed out error of the endpoint.
+     */
+    Class<? extends ErrorCode> errorCode() default AuthErrorCode.class;
+
+    /**
+     * Name of the constant in errorCode() reported when the user is signed out.
+     */
+    String signedOut() default "ATHR_002_RELOGIN_PROMPT";
+}
@@ -0,0 +1,81 @@
+package com.upgrad.quora.api.security;
+
+import com.upgrad.quora.service.business.CommonService;
+import com.upgrad.quora.service.common.AuthErrorCode;
+import com.upgrad.quora.service.common.ErrorCode;
+import com.upgrad.quora.service.entity.UserAuthEntity;
+import com.upgrad.quora.service.exception.AuthorizationFailedException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.MethodParameter;
+import org.springframework.stereotype.Component;
+import org.springframework.web.bind.ServletRequestBindingException;
+import org.springframework.web.bind.support.WebDataBinderFactory;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.method.support.HandlerMethodArgumentResolver;
+import org.springframework.web.method.support.ModelAndViewContainer;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Resolves parameters annotated with AuthorizedUser. The "authorization" header is validated through
+ * CommonService.validateUser only once per request, the resulting UserAuthEntity is kept as a request attribute
+ * and handed to the services, so they no longer need to look the token up again.
+ */
+@Component
+public class AuthorizedUserArgumentResolver implements HandlerMethodArgumentResolver {
+
+    public static final String AUTHORIZATION_HEADER = "authorization";
+
+    private static final String USER_AUTH_ATTRIBUTE = AuthorizedUserArgumentResolver.class.getName() + ".USER_AUTH";
+
+    @Autowired
+    private CommonService commonService;
+
+    private final Map<MethodParameter, ErrorCode> signedOutErrorCodes = new ConcurrentHashMap<>();
+
+    @Override
+    public boolean supportsParameter(MethodParameter parameter) {
+        return parameter.hasParameterAnnotation(AuthorizedUser.class)
+                && UserAuthEntity.class.isAssignableFrom(parameter.getParameterType());
+    }
+
+    @Override
+    public Object resolveArgument(MethodParameter parameter, ModelAndViewContainer mavContainer,
+                                  NativeWebRequest webRequest, WebDataBinderFactory binderFactory) throws Exception {
+
+        UserAuthEntity userAuthEntity = (UserAuthEntity) webRequest.getAttribute(USER_AUTH_ATTRIBUTE, RequestAttributes.SCOPE_REQUEST);
+        if (userAuthEntity != null)
+            return userAuthEntity;
+
+        String authorization = webRequest.getHeader(AUTHORIZATION_HEADER);
+        if (authorization == null)
+            throw new ServletRequestBindingException("Missing request header '" + AUTHORIZATION_HEADER + "' for method parameter of type UserAuthEntity");
+
+        try {
+            userAuthEntity = commonService.validateUser(authorization);
+        } catch (AuthorizationFailedException authorizationFailedException) {
+            // Use existing exception and modify the message as per the endpoint
+            if (authorizationFailedException.getCode().equals(AuthErrorCode.ATHR_002_RELOGIN_PROMPT.getCode())) {
+                ErrorCode errorCode = getSignedOutErrorCode(parameter);
+                throw new AuthorizationFailedException(errorCode.getCode(), errorCode.getDefaultMessage());
+            }
+            throw authorizationFailedException;
+        }
+
+        webRequest.setAttribute(USER_AUTH_ATTRIBUTE, userAuthEntity, RequestAttributes.SCOPE_REQUEST);
+        return userAuthEntity;
+    }
+
+    private ErrorCode getSignedOutErrorCode(MethodParameter parameter) {
+        return signedOutErrorCodes.computeIfAbsent(parameter, methodParameter -> {
+            AuthorizedUser authorizedUser = methodParameter.getParameterAnnotation(AuthorizedUser.class);
+            for (ErrorCode errorCode : authorizedUser.errorCode().getEnumConstants()) {
+                if (((Enum<?>) errorCode).name().equals(authorizedUser.signedOut()))
+                    return errorCode;
+            }
+            throw new IllegalStateException("No error code " + authorizedUser.signedOut() + " in " + authorizedUser.errorCode().getName());
+        });
+    }
+}
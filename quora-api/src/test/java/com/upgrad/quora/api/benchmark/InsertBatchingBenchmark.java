@@ -0,0 +1,122 @@
+package com.upgrad.quora.api.benchmark;
+
+import com.upgrad.quora.service.ServiceConfiguration;
+import com.upgrad.quora.service.business.AdminService;
+import com.upgrad.quora.service.business.UserService;
+import com.upgrad.quora.service.common.TimeOrderedUuidGenerator;
+import com.upgrad.quora.service.common.UserRole;
+import com.upgrad.quora.service.dao.AnswerDao;
+import com.upgrad.quora.service.dao.QuestionDao;
+import com.upgrad.quora.service.entity.AnswerEntity;
+import com.upgrad.quora.service.entity.QuestionEntity;
+import com.upgrad.quora.service.entity.UserEntity;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.ZonedDateTime;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Inserts ROWS questions, each with one answer, in a single transaction through QuestionDao.createQuestion and
+ * AnswerDao.createAnswer. batchSize 1 sends one INSERT round trip per row, as the IDENTITY ids did, larger sizes let
+ * Hibernate send JDBC batches and reWriteBatchedInserts lets the driver turn each batch into multi row inserts.
+ * Questions and answers are persisted alternately, so the batches only fill up because of hibernate.order_inserts.
+ * <p>
+ * Needs the database configured in application.yaml, run it with:
+ * <pre>
+ * mvn -pl quora-api test-compile exec:exec -Dexec.executable=java -Dexec.classpathScope=test \
+ *     -Dexec.args="-cp %classpath org.openjdk.jmh.Main InsertBatchingBenchmark"
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class InsertBatchingBenchmark {
+
+    private static final int ROWS = 500;
+
+    @Param({"1", "50"})
+    private int batchSize;
+
+    @Param({"false", "true"})
+    private boolean reWriteBatchedInserts;
+
+    private ConfigurableApplicationContext context;
+
+    private QuestionDao questionDao;
+
+    private AnswerDao answerDao;
+
+    private TransactionTemplate transactionTemplate;
+
+    private UserEntity userEntity;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        context = new SpringApplicationBuilder(BenchmarkConfiguration.class)
+                .web(WebApplicationType.NONE)
+                .run("--quora.auth.reaper.enabled=false",
+                        "--spring.jpa.properties.hibernate.jdbc.batch_size=" + batchSize,
+                        "--spring.datasource.hikari.data-source-properties.reWriteBatchedInserts=" + reWriteBatchedInserts);
+        questionDao = context.getBean(QuestionDao.class);
+        answerDao = context.getBean(AnswerDao.class);
+        transactionTemplate = new TransactionTemplate(context.getBean(PlatformTransactionManager.class));
+
+        String userName = "bench_" + Long.toHexString(System.nanoTime());
+        UserEntity newUser = new UserEntity();
+        newUser.setFirstName("benchmark");
+        newUser.setLastName("benchmark");
+        newUser.setUserName(userName);
+        newUser.setEmail(userName + "@quora.io");
+        newUser.setPassword("benchmark");
+        newUser.setRole(UserRole.NON_ADMIN.getName());
+        userEntity = context.getBean(UserService.class).signUp(newUser);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        // The questions and answers are removed by the cascade of the user
+        context.getBean(AdminService.class).deleteUser(userEntity.getUuid());
+        context.close();
+    }
+
+    @Benchmark
+    public int insertQuestionsWithAnswers() {
+        return transactionTemplate.execute(status -> {
+            final ZonedDateTime now = ZonedDateTime.now();
+            for (int i = 0; i < ROWS; i++) {
+                QuestionEntity questionEntity = new QuestionEntity();
+                questionEntity.setUuid(TimeOrderedUuidGenerator.next().toString());
+                questionEntity.setContent("benchmark question " + i);
+                questionEntity.setDate(now);
+                questionEntity.setUserEntity(userEntity);
+                questionDao.createQuestion(questionEntity);
+
+                AnswerEntity answerEntity = new AnswerEntity();
+                answerEntity.setUuid(TimeOrderedUuidGenerator.next().toString());
+                answerEntity.setAnswer("benchmark answer " + i);
+                answerEntity.setDate(now);
+                answerEntity.setUserEntity(userEntity);
+                answerEntity.setQuestionEntity(questionEntity);
+                answerDao.createAnswer(answerEntity);
+            }
+            return ROWS;
+        });
+    }
+
+    @Configuration
+    @EnableAutoConfiguration
+    @Import(ServiceConfiguration.class)
+    static class BenchmarkConfiguration {
+    }
+}
@@ -0,0 +1,74 @@
+package com.upgrad.quora.api.benchmark;
+
+import com.upgrad.quora.service.business.PasswordCryptographyProvider;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.security.SecureRandom;
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the cost of one PBKDF2 password hash at several iteration counts and recommends the value of
+ * "quora.auth.hashing.iterations" for a target latency per hash on the machine it runs on. Run it on the
+ * deployment hardware, the target defaults to 100 ms and can be changed with -Dtarget.ms:
+ * <pre>
+ * mvn -pl quora-api test-compile exec:exec -Dexec.executable=java -Dexec.classpathScope=test \
+ *     -Dexec.args="-Dtarget.ms=100 -cp %classpath com.upgrad.quora.api.benchmark.PasswordHashCalibrationBenchmark"
+ * </pre>
+ * No database is needed.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PasswordHashCalibrationBenchmark {
+
+    private static final int KEY_LENGTH = 512;
+
+    @Param({"10000", "50000", "100000", "200000"})
+    private int iterations;
+
+    private char[] password;
+
+    private byte[] salt;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        password = "calibration-password".toCharArray();
+        salt = new byte[32];
+        new SecureRandom().nextBytes(salt);
+    }
+
+    @Benchmark
+    public byte[] hashPassword() {
+        return PasswordCryptographyProvider.hashPassword(password, salt, iterations, KEY_LENGTH);
+    }
+
+    public static void main(String[] args) throws Exception {
+        final double targetMillis = Double.parseDouble(System.getProperty("target.ms", "100"));
+
+        Options options = new OptionsBuilder().include(PasswordHashCalibrationBenchmark.class.getSimpleName()).build();
+        Collection<RunResult> results = new Runner(options).run();
+
+        // The cost grows linearly with the iteration count, the highest count gives the most stable estimate
+        double millisPerIteration = 0;
+        int measuredIterations = 0;
+        for (RunResult result : results) {
+            int resultIterations = Integer.parseInt(result.getParams().getParam("iterations"));
+            if (resultIterations > measuredIterations) {
+                measuredIterations = resultIterations;
+                millisPerIteration = result.getPrimaryResult().getScore() / resultIterations;
+            }
+        }
+
+        long recommended = Math.max(1000L, Math.round(targetMillis / millisPerIteration / 1000) * 1000);
+        System.out.printf("%nOne hash takes %.3f ms per 1000 iterations on this machine.%n", millisPerIteration * 1000);
+        System.out.printf("For a target of %.0f ms per hash set quora.auth.hashing.iterations: %d%n", targetMillis, recommended);
+    }
+}
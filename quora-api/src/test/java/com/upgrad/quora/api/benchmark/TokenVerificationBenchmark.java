@@ -0,0 +1,100 @@
+package com.upgrad.quora.api.benchmark;
+
+import com.upgrad.quora.service.ServiceConfiguration;
+import com.upgrad.quora.service.business.AdminService;
+import com.upgrad.quora.service.business.CommonService;
+import com.upgrad.quora.service.business.StatelessTokenService;
+import com.upgrad.quora.service.business.UserService;
+import com.upgrad.quora.service.common.UserRole;
+import com.upgrad.quora.service.entity.UserAuthEntity;
+import com.upgrad.quora.service.entity.UserEntity;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the two ways CommonService can authorize a request: looking the token up in user_auth and
+ * verifying a key ring signed token in memory. The token cache is switched off so every database call really
+ * reaches Postgres.
+ * <p>
+ * Needs the database configured in application.yaml, run it with:
+ * <pre>
+ * mvn -pl quora-api test-compile exec:exec -Dexec.executable=java -Dexec.classpathScope=test \
+ *     -Dexec.args="-cp %classpath org.openjdk.jmh.Main TokenVerificationBenchmark"
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class TokenVerificationBenchmark {
+
+    private ConfigurableApplicationContext context;
+
+    private CommonService commonService;
+
+    private StatelessTokenService statelessTokenService;
+
+    private String userUuid;
+
+    private String databaseToken;
+
+    private String statelessToken;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        context = new SpringApplicationBuilder(BenchmarkConfiguration.class)
+                .web(WebApplicationType.NONE)
+                .run("--quora.auth.token-cache.max-size=0",
+                        "--quora.auth.stateless.active-key-id=benchmark",
+                        "--quora.auth.stateless.keys.benchmark=" + UUID.randomUUID() + UUID.randomUUID());
+        commonService = context.getBean(CommonService.class);
+        statelessTokenService = context.getBean(StatelessTokenService.class);
+
+        UserService userService = context.getBean(UserService.class);
+        String userName = "bench_" + Long.toHexString(System.nanoTime());
+        UserEntity userEntity = new UserEntity();
+        userEntity.setFirstName("benchmark");
+        userEntity.setLastName("benchmark");
+        userEntity.setUserName(userName);
+        userEntity.setEmail(userName + "@quora.io");
+        userEntity.setPassword("benchmark");
+        userEntity.setRole(UserRole.NON_ADMIN.getName());
+        userUuid = userService.signUp(userEntity).getUuid();
+
+        UserAuthEntity userAuthEntity = userService.signIn(userName, "benchmark");
+        databaseToken = userAuthEntity.getAccessToken();
+        statelessToken = statelessTokenService.generateToken(userAuthEntity);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        context.getBean(AdminService.class).deleteUser(userUuid);
+        context.close();
+    }
+
+    @Benchmark
+    public UserAuthEntity databaseLookup() throws Exception {
+        return commonService.validateUser(databaseToken);
+    }
+
+    @Benchmark
+    public UserAuthEntity inMemoryVerification() throws Exception {
+        return statelessTokenService.verify(statelessToken);
+    }
+
+    @Configuration
+    @EnableAutoConfiguration
+    @Import(ServiceConfiguration.class)
+    static class BenchmarkConfiguration {
+    }
+}
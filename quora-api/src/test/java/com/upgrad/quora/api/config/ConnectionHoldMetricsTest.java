@@ -0,0 +1,42 @@
+package com.upgrad.quora.api.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
+
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest
+@AutoConfigureMockMvc
+public class ConnectionHoldMetricsTest {
+
+    @Autowired
+    private MockMvc mvc;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    //This test case passes when the connections used by a request are recorded against its endpoint, next to the pool metrics of Hikari.
+    @Test
+    public void connectionHoldTimeShouldBeRecordedPerEndpoint() throws Exception {
+        mvc.perform(MockMvcRequestBuilders.get("/question/all/database_uuid1").header("authorization", "database_accesstoken1"))
+                .andExpect(status().isOk());
+
+        Timer timer = meterRegistry.find("quora.db.connection.hold").tags("method", "GET", "uri", "/question/all/{userId}").timer();
+        assertNotNull(timer);
+        assertTrue(timer.count() > 0);
+        Timer poolTimer = meterRegistry.find("hikaricp.connections.usage").timer();
+        assertNotNull(poolTimer);
+        assertTrue(poolTimer.count() > 0);
+    }
+}
@@ -0,0 +1,150 @@
+package com.upgrad.quora.api.controller;
+
+import com.upgrad.quora.service.business.UserService;
+import com.upgrad.quora.service.cache.AccessTokenCache;
+import com.upgrad.quora.service.dao.UserDao;
+import com.upgrad.quora.service.entity.UserAuthEntity;
+import com.upgrad.quora.service.entity.UserEntity;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.ZonedDateTime;
+import java.util.Base64;
+import java.util.UUID;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest
+@AutoConfigureMockMvc
+public class AccessTokenCacheTest {
+
+    @Autowired
+    private MockMvc mvc;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private AccessTokenCache accessTokenCache;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private UserDao userDao;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    //This test case passes when a token validated once is served from the cache on the next request, without a user_auth lookup.
+    @Test
+    public void repeatedValidationShouldBeServedFromTheCache() throws Exception {
+        String accessToken = signin();
+        try {
+            mvc.perform(MockMvcRequestBuilders.get("/userprofile/database_uuid5").header("authorization", accessToken))
+                    .andExpect(status().isOk());
+            double hits = count("quora.auth.token.cache.hits");
+            double misses = count("quora.auth.token.cache.misses");
+
+            mvc.perform(MockMvcRequestBuilders.get("/userprofile/database_uuid5").header("authorization", accessToken))
+                    .andExpect(status().isOk());
+
+            assertEquals(hits + 1, count("quora.auth.token.cache.hits"), 0);
+            assertEquals(misses, count("quora.auth.token.cache.misses"), 0);
+        } finally {
+            signout(accessToken);
+        }
+    }
+
+    //This test case passes when signing out evicts the cached token, so the next request with it is refused.
+    @Test
+    public void signoutShouldEvictTheToken() throws Exception {
+        String accessToken = signin();
+        mvc.perform(MockMvcRequestBuilders.get("/userprofile/database_uuid5").header("authorization", accessToken))
+                .andExpect(status().isOk());
+        assertNotNull(accessTokenCache.get(accessToken));
+
+        signout(accessToken);
+
+        assertNull(accessTokenCache.get(accessToken));
+        mvc.perform(MockMvcRequestBuilders.get("/userprofile/database_uuid5").header("authorization", accessToken))
+                .andExpect(status().isForbidden())
+                .andExpect(jsonPath("code").value("ATHR-002"));
+    }
+
+    //This test case passes when a cached session is dropped once it expires, even though the ttl of the cache is longer.
+    @Test
+    public void expiredSessionShouldNotBeServed() throws Exception {
+        UserEntity userEntity = new UserEntity();
+        userEntity.setId(1030);
+        UserAuthEntity userAuthEntity = new UserAuthEntity();
+        userAuthEntity.setUuid(UUID.randomUUID().toString());
+        userAuthEntity.setUserEntity(userEntity);
+        userAuthEntity.setAccessToken("expiring_access_token_" + userAuthEntity.getUuid());
+        userAuthEntity.setLoginAt(ZonedDateTime.now());
+        userAuthEntity.setExpiresAt(ZonedDateTime.now().plusNanos(500_000_000L));
+
+        accessTokenCache.put(userAuthEntity);
+        assertSame(userAuthEntity, accessTokenCache.get(userAuthEntity.getAccessToken()));
+        double evictions = count("quora.auth.token.cache.evictions");
+
+        Thread.sleep(1000);
+
+        assertNull(accessTokenCache.get(userAuthEntity.getAccessToken()));
+        assertEquals(evictions + 1, count("quora.auth.token.cache.evictions"), 0);
+    }
+
+    //This test case passes when a sign out of all sessions which is rolled back leaves the cached session valid.
+    @Test
+    public void rolledBackSignoutAllShouldNotRevokeCachedSessions() throws Exception {
+        String accessToken = signin();
+        try {
+            mvc.perform(MockMvcRequestBuilders.get("/userprofile/database_uuid5").header("authorization", accessToken))
+                    .andExpect(status().isOk());
+
+            new TransactionTemplate(transactionManager).execute(status -> {
+                userService.signOutAllSessions(userDao.getUserByUserName("database_username5"));
+                status.setRollbackOnly();
+                return null;
+            });
+
+            assertNotNull(accessTokenCache.get(accessToken));
+            mvc.perform(MockMvcRequestBuilders.get("/userprofile/database_uuid5").header("authorization", accessToken))
+                    .andExpect(status().isOk());
+        } finally {
+            signout(accessToken);
+        }
+    }
+
+    private String signin() throws Exception {
+        String authorization = "Basic " + Base64.getEncoder().encodeToString("database_username5:database_password5".getBytes());
+        return mvc.perform(MockMvcRequestBuilders.post("/user/signin").header("authorization", authorization).contentType(MediaType.APPLICATION_JSON_UTF8))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader("access-token");
+    }
+
+    private void signout(final String accessToken) throws Exception {
+        mvc.perform(MockMvcRequestBuilders.post("/user/signout").header("authorization", accessToken))
+                .andExpect(status().isOk());
+    }
+
+    private double count(final String name) {
+        return meterRegistry.find(name).functionCounter().count();
+    }
+}
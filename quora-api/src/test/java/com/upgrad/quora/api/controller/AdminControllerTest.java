@@ -48,5 +48,27 @@ public class AdminControllerTest {
                 .andExpect(MockMvcResultMatchers.jsonPath("code").value("USR-001"));
     }
 
+    //This test case passes when you try to sign out all sessions of a user but the role of the user corresponding to the JWT token entered is nonadmin.
+    @Test
+    public void signoutUserWithnonadminAsRole() throws Exception {
+        mvc.perform(MockMvcRequestBuilders.post("/admin/user/database_uuid4/signout").header("authorization", "database_accesstoken1"))
+                .andExpect(status().isForbidden())
+                .andExpect(MockMvcResultMatchers.jsonPath("code").value("ATHR-003"));
+    }
 
+    //This test case passes when you try to sign out all sessions of a user which does not exist in the database.
+    @Test
+    public void signoutUserWithNonExistingUser() throws Exception {
+        mvc.perform(MockMvcRequestBuilders.post("/admin/user/non_existing_user_uuid/signout").header("authorization", "database_accesstoken"))
+                .andExpect(status().isNotFound())
+                .andExpect(MockMvcResultMatchers.jsonPath("code").value("USR-001"));
+    }
+
+    //This test case passes when an admin signs out all sessions of an existing user.
+    @Test
+    public void signoutUser() throws Exception {
+        mvc.perform(MockMvcRequestBuilders.post("/admin/user/database_uuid4/signout").header("authorization", "database_accesstoken"))
+                .andExpect(status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("id").value("database_uuid4"));
+    }
 }
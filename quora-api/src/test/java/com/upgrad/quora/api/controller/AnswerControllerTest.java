@@ -1,6 +1,8 @@
 package com.upgrad.quora.api.controller;
 
 
+import com.jayway.jsonpath.JsonPath;
+import com.upgrad.quora.service.cache.PublicIdIndex;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -12,6 +14,8 @@ import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
 import org.springframework.test.web.servlet.result.MockMvcResultMatchers;
 
+import java.util.Collections;
+
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @RunWith(SpringRunner.class)
@@ -23,6 +27,9 @@ public class AnswerControllerTest {
     @Autowired
     private MockMvc mvc;
 
+    @Autowired
+    private PublicIdIndex publicIdIndex;
+
 
     //This test case passes when you try to create the answer but the JWT token entered does not exist in the database.
     @Test
@@ -48,6 +55,44 @@ public class AnswerControllerTest {
                 .andExpect(MockMvcResultMatchers.jsonPath("code").value("QUES-001"));
     }
 
+    //This test case passes when you try to create answers in bulk and the user corresponding to the JWT token entered is signed out.
+    @Test
+    public void createAnswersWithSignedOutUser() throws Exception {
+        mvc.perform(MockMvcRequestBuilders.post("/answer/bulk/create").contentType(MediaType.APPLICATION_JSON_UTF8_VALUE).header("authorization", "database_accesstoken3")
+                .content("[{\"question_id\":\"database_question_uuid\",\"answer\":\"my_answer\"}]"))
+                .andExpect(status().isForbidden())
+                .andExpect(MockMvcResultMatchers.jsonPath("code").value("ATHR-002"));
+    }
+
+    //This test case passes when you create answers in bulk and an answer to a question which does not exist and an empty answer are each reported on their own.
+    @Test
+    public void createAnswersReportsEachAnswer() throws Exception {
+        mvc.perform(MockMvcRequestBuilders.post("/answer/bulk/create").contentType(MediaType.APPLICATION_JSON_UTF8_VALUE).header("authorization", "database_accesstoken")
+                .content("[{\"question_id\":\"non_existing_question_uuid\",\"answer\":\"my_answer\"},{\"question_id\":\"database_question_uuid\",\"answer\":\"\"}]"))
+                .andExpect(status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("$.length()").value(2))
+                .andExpect(MockMvcResultMatchers.jsonPath("$[0].status").value("ANSWER NOT CREATED"))
+                .andExpect(MockMvcResultMatchers.jsonPath("$[0].code").value("QUES-001"))
+                .andExpect(MockMvcResultMatchers.jsonPath("$[1].index").value(1))
+                .andExpect(MockMvcResultMatchers.jsonPath("$[1].code").value("ANS-002"));
+    }
+
+    //This test case passes when you create answers in bulk and an answer longer than the ans column is reported on its own while the others are created.
+    @Test
+    public void createAnswersWithTooLongAnswer() throws Exception {
+        String createdId = JsonPath.read(mvc.perform(MockMvcRequestBuilders.post("/answer/bulk/create").contentType(MediaType.APPLICATION_JSON_UTF8_VALUE).header("authorization", "database_accesstoken")
+                .content("[{\"question_id\":\"database_question_uuid\",\"answer\":\"" + String.join("", Collections.nCopies(256, "a")) + "\"},{\"question_id\":\"database_question_uuid\",\"answer\":\"my_answer\"}]"))
+                .andExpect(status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("$.length()").value(2))
+                .andExpect(MockMvcResultMatchers.jsonPath("$[0].status").value("ANSWER NOT CREATED"))
+                .andExpect(MockMvcResultMatchers.jsonPath("$[0].code").value("ANS-003"))
+                .andExpect(MockMvcResultMatchers.jsonPath("$[1].status").value("ANSWER CREATED"))
+                .andReturn().getResponse().getContentAsString(), "$[1].id");
+
+        mvc.perform(MockMvcRequestBuilders.delete("/answer/delete/" + createdId).header("authorization", "database_accesstoken"))
+                .andExpect(status().isOk());
+    }
+
     //This test case passes when you try to edit the answer but the JWT token entered does not exist in the database.
     @Test
     public void editAnswerWithNonExistingAccessToken() throws Exception {
@@ -80,6 +125,51 @@ public class AnswerControllerTest {
                 .andExpect(MockMvcResultMatchers.jsonPath("code").value("ATHR-003"));
     }
 
+    //This test case passes when you try to edit your answer with an answer longer than the column allows.
+    @Test
+    public void editAnswerWithTooLongAnswer() throws Exception {
+        String answerId = createAnswer("database_accesstoken1");
+        try {
+            mvc.perform(MockMvcRequestBuilders.put("/answer/edit/" + answerId + "?content=" + String.join("", Collections.nCopies(256, "a"))).contentType(MediaType.APPLICATION_JSON_UTF8_VALUE).header("authorization", "database_accesstoken1"))
+                    .andExpect(status().isConflict())
+                    .andExpect(MockMvcResultMatchers.jsonPath("code").value("DB-001"));
+        } finally {
+            mvc.perform(MockMvcRequestBuilders.delete("/answer/delete/" + answerId).header("authorization", "database_accesstoken1"))
+                    .andExpect(status().isOk());
+        }
+    }
+
+    //This test case passes when you try to edit the answer of another user, whether its owner is found in the index or only by the update statement.
+    @Test
+    public void editIndexedAnswerWithoutOwnership() throws Exception {
+        String answerId = createAnswer("database_accesstoken1");
+        try {
+            mvc.perform(MockMvcRequestBuilders.put("/answer/edit/" + answerId + "?content=edited_answer").contentType(MediaType.APPLICATION_JSON_UTF8_VALUE).header("authorization", "database_accesstoken2"))
+                    .andExpect(status().isForbidden())
+                    .andExpect(MockMvcResultMatchers.jsonPath("code").value("ATHR-003"));
+
+            publicIdIndex.evict(PublicIdIndex.Kind.ANSWER, answerId);
+            mvc.perform(MockMvcRequestBuilders.put("/answer/edit/" + answerId + "?content=edited_answer").contentType(MediaType.APPLICATION_JSON_UTF8_VALUE).header("authorization", "database_accesstoken2"))
+                    .andExpect(status().isForbidden())
+                    .andExpect(MockMvcResultMatchers.jsonPath("code").value("ATHR-003"));
+        } finally {
+            mvc.perform(MockMvcRequestBuilders.delete("/answer/delete/" + answerId).header("authorization", "database_accesstoken1"))
+                    .andExpect(status().isOk());
+        }
+    }
+
+    //This test case passes when you try to edit your answer after it was deleted.
+    @Test
+    public void editDeletedAnswer() throws Exception {
+        String answerId = createAnswer("database_accesstoken1");
+        mvc.perform(MockMvcRequestBuilders.delete("/answer/delete/" + answerId).header("authorization", "database_accesstoken1"))
+                .andExpect(status().isOk());
+
+        mvc.perform(MockMvcRequestBuilders.put("/answer/edit/" + answerId + "?content=edited_answer").contentType(MediaType.APPLICATION_JSON_UTF8_VALUE).header("authorization", "database_accesstoken1"))
+                .andExpect(status().isNotFound())
+                .andExpect(MockMvcResultMatchers.jsonPath("code").value("ANS-001"));
+    }
+
     //This test case passes when you try to delete the answer but the JWT token entered does not exist in the database.
     @Test
     public void deleteAnswerWithNonExistingAccessToken() throws Exception {
@@ -136,5 +226,46 @@ public class AnswerControllerTest {
                 .andExpect(MockMvcResultMatchers.jsonPath("code").value("QUES-001"));
     }
 
+    //This test case passes when you page through the answers to a question, oldest first, answers posted at the same time are ordered by id.
+    @Test
+    public void getAllAnswersToQuestionPageByPage() throws Exception {
+        final String nextCursor = mvc.perform(MockMvcRequestBuilders.get("/answer/all/database_question_uuid?limit=2").header("authorization", "database_accesstoken"))
+                .andExpect(status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("$.length()").value(2))
+                .andExpect(MockMvcResultMatchers.jsonPath("$[0].id").value("database_answer_uuid"))
+                .andExpect(MockMvcResultMatchers.jsonPath("$[1].id").value("database_answer_uuid2"))
+                .andReturn().getResponse().getHeader("next-cursor");
+
+        mvc.perform(MockMvcRequestBuilders.get("/answer/all/database_question_uuid?limit=2&cursor=" + nextCursor).header("authorization", "database_accesstoken"))
+                .andExpect(status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("$.length()").value(1))
+                .andExpect(MockMvcResultMatchers.jsonPath("$[0].id").value("database_answer_uuid3"))
+                .andExpect(MockMvcResultMatchers.header().doesNotExist("next-cursor"));
+    }
+
+    //This test case passes when you export all the answers to a question, oldest first, one JSON object per line.
+    @Test
+    public void exportAllAnswersToQuestion() throws Exception {
+        mvc.perform(MockMvcRequestBuilders.get("/answer/export/database_question_uuid").header("authorization", "database_accesstoken"))
+                .andExpect(status().isOk())
+                .andExpect(MockMvcResultMatchers.content().contentTypeCompatibleWith("application/x-ndjson"))
+                .andExpect(MockMvcResultMatchers.content().string(
+                        "{\"id\":\"database_answer_uuid\",\"questionContent\":\"database_question_content\",\"answerContent\":\"my_answer\"}\n" +
+                        "{\"id\":\"database_answer_uuid2\",\"questionContent\":\"database_question_content\",\"answerContent\":\"my_answer2\"}\n" +
+                        "{\"id\":\"database_answer_uuid3\",\"questionContent\":\"database_question_content\",\"answerContent\":\"my_answer3\"}\n"));
+    }
+
+    //This test case passes when you try to export all the answers to a question which does not exist in the database.
+    @Test
+    public void exportAllAnswersToNonExistingQuestion() throws Exception {
+        mvc.perform(MockMvcRequestBuilders.get("/answer/export/non_existing_question_uuid").header("authorization", "database_accesstoken"))
+                .andExpect(status().isNotFound())
+                .andExpect(MockMvcResultMatchers.jsonPath("code").value("QUES-001"));
+    }
 
-}
\ No newline at end of file
+    private String createAnswer(final String accessToken) throws Exception {
+        return JsonPath.read(mvc.perform(MockMvcRequestBuilders.post("/question/database_question_uuid/answer/create?answer=edited_answer_fixture").contentType(MediaType.APPLICATION_JSON_UTF8_VALUE).header("authorization", accessToken))
+                .andExpect(status().isCreated())
+                .andReturn().getResponse().getContentAsString(), "$.id");
+    }
+}
@@ -0,0 +1,155 @@
+package com.upgrad.quora.api.controller;
+
+import com.upgrad.quora.service.business.AnswerService;
+import com.upgrad.quora.service.cache.AnswerListCache;
+import com.upgrad.quora.service.dao.UserDao;
+import com.upgrad.quora.service.entity.AnswerEntity;
+import com.upgrad.quora.service.projection.AnswerSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest
+@AutoConfigureMockMvc
+public class AnswerListCacheTest {
+
+    @Autowired
+    private MockMvc mvc;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private AnswerListCache answerListCache;
+
+    @Autowired
+    private AnswerService answerService;
+
+    @Autowired
+    private UserDao userDao;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    //This test case passes when the first page of answers is served from the cache on the second request, also with a smaller limit.
+    @Test
+    public void repeatedFirstPageShouldBeServedFromTheCache() throws Exception {
+        mvc.perform(MockMvcRequestBuilders.get("/answer/all/database_question_uuid").header("authorization", "database_accesstoken1"))
+                .andExpect(status().isOk());
+        double hits = count("quora.answer.list.cache.hits");
+        double misses = count("quora.answer.list.cache.misses");
+
+        mvc.perform(MockMvcRequestBuilders.get("/answer/all/database_question_uuid?limit=2").header("authorization", "database_accesstoken1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(2))
+                .andExpect(jsonPath("$[0].id").value("database_answer_uuid"));
+
+        assertEquals(hits + 1, count("quora.answer.list.cache.hits"), 0);
+        assertEquals(misses, count("quora.answer.list.cache.misses"), 0);
+    }
+
+    //This test case passes when editing an answer of a cached list invalidates it, even if the edit is rolled back.
+    @Test
+    public void editAnswerShouldInvalidateTheList() throws Exception {
+        mvc.perform(MockMvcRequestBuilders.get("/answer/all/database_question_uuid").header("authorization", "database_accesstoken1"))
+                .andExpect(status().isOk());
+
+        new TransactionTemplate(transactionManager).execute(status -> {
+            AnswerEntity answerEntity = new AnswerEntity();
+            answerEntity.setUuid("database_answer_uuid");
+            answerEntity.setAnswer("edited_answer");
+            answerEntity.setUserEntity(userDao.getUserById("database_uuid1"));
+            try {
+                answerService.editAnswer(answerEntity);
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+            status.setRollbackOnly();
+            return null;
+        });
+        double misses = count("quora.answer.list.cache.misses");
+
+        mvc.perform(MockMvcRequestBuilders.get("/answer/all/database_question_uuid").header("authorization", "database_accesstoken1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].answerContent").value("my_answer"));
+
+        assertEquals(misses + 1, count("quora.answer.list.cache.misses"), 0);
+    }
+
+    //This test case passes when concurrent misses of the same question share a single load.
+    @Test
+    public void concurrentMissesShouldShareOneLoad() throws Exception {
+        final String questionId = "coalesced_question_uuid";
+        answerListCache.invalidate(questionId);
+        final List<AnswerSummary> loaded = Collections.emptyList();
+        final AtomicInteger loads = new AtomicInteger();
+        final CountDownLatch loading = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<List<AnswerSummary>>> results = new ArrayList<>();
+            results.add(executor.submit(() -> answerListCache.get(questionId, () -> {
+                loads.incrementAndGet();
+                loading.countDown();
+                await(release);
+                return loaded;
+            })));
+            assertTrue(loading.await(10, TimeUnit.SECONDS));
+            double coalesced = count("quora.answer.list.cache.coalesced");
+            for (int i = 0; i < 7; i++) {
+                results.add(executor.submit(() -> answerListCache.get(questionId, () -> {
+                    loads.incrementAndGet();
+                    return loaded;
+                })));
+            }
+            while (count("quora.answer.list.cache.coalesced") < coalesced + 7)
+                Thread.sleep(10);
+            release.countDown();
+
+            for (Future<List<AnswerSummary>> result : results)
+                assertSame(loaded, result.get(10, TimeUnit.SECONDS));
+            assertEquals(1, loads.get());
+        } finally {
+            executor.shutdownNow();
+            answerListCache.invalidate(questionId);
+        }
+    }
+
+    private double count(final String name) {
+        return meterRegistry.find(name).functionCounter().count();
+    }
+
+    private static void await(final CountDownLatch latch) {
+        try {
+            latch.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
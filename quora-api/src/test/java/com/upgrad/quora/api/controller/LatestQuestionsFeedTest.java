@@ -0,0 +1,147 @@
+package com.upgrad.quora.api.controller;
+
+import com.jayway.jsonpath.JsonPath;
+import com.upgrad.quora.service.business.QuestionService;
+import com.upgrad.quora.service.cache.LatestQuestionsFeed;
+import com.upgrad.quora.service.common.Page;
+import com.upgrad.quora.service.common.PageCursor;
+import com.upgrad.quora.service.dao.QuestionDao;
+import com.upgrad.quora.service.dao.UserDao;
+import com.upgrad.quora.service.entity.QuestionEntity;
+import com.upgrad.quora.service.projection.QuestionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.ZonedDateTime;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest
+@AutoConfigureMockMvc
+public class LatestQuestionsFeedTest {
+
+    @Autowired
+    private MockMvc mvc;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private LatestQuestionsFeed latestQuestionsFeed;
+
+    @Autowired
+    private QuestionService questionService;
+
+    @Autowired
+    private QuestionDao questionDao;
+
+    @Autowired
+    private UserDao userDao;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    //This test case passes when created and edited questions are listed first from memory, without a query, and deleted ones are not listed any more.
+    @Test
+    public void changedQuestionsShouldBeListedFromMemory() throws Exception {
+        String olderId = createQuestion("older_latest_question");
+        String newerId = createQuestion("newer_latest_question");
+        try {
+            double misses = count("quora.latest.questions.misses");
+            mvc.perform(MockMvcRequestBuilders.get("/question/all?limit=2").header("authorization", "database_accesstoken1"))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$[0].id").value(newerId))
+                    .andExpect(jsonPath("$[1].id").value(olderId));
+
+            mvc.perform(MockMvcRequestBuilders.put("/question/edit/" + olderId + "?content=edited_latest_question").contentType(MediaType.APPLICATION_JSON_UTF8_VALUE).header("authorization", "database_accesstoken1"))
+                    .andExpect(status().isOk());
+            mvc.perform(MockMvcRequestBuilders.get("/question/all?limit=2").header("authorization", "database_accesstoken1"))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$[0].id").value(olderId))
+                    .andExpect(jsonPath("$[0].content").value("edited_latest_question"))
+                    .andExpect(jsonPath("$[1].id").value(newerId));
+
+            mvc.perform(MockMvcRequestBuilders.delete("/question/delete/" + olderId).header("authorization", "database_accesstoken1"))
+                    .andExpect(status().isOk());
+            mvc.perform(MockMvcRequestBuilders.get("/question/all?limit=1").header("authorization", "database_accesstoken1"))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$[0].id").value(newerId));
+            assertEquals(misses, count("quora.latest.questions.misses"), 0);
+        } finally {
+            new TransactionTemplate(transactionManager).execute(status -> {
+                questionDao.deleteQuestion(olderId, null, true);
+                return questionDao.deleteQuestion(newerId, null, true);
+            });
+        }
+    }
+
+    //This test case passes when the pages served from memory are the pages read from the database, cursor by cursor.
+    @Test
+    public void pagesFromMemoryShouldMatchTheDatabase() throws Exception {
+        latestQuestionsFeed.reload(capacity -> new TransactionTemplate(transactionManager).execute(status -> questionDao.getQuestionSummariesPage(null, capacity)));
+
+        String cursor = null;
+        PageCursor after = null;
+        for (int i = 0; i < 5; i++) {
+            final PageCursor pageAfter = after;
+            Page<QuestionSummary> page = questionService.getAllQuestions(cursor, 2, false);
+            List<QuestionSummary> expected = new TransactionTemplate(transactionManager).execute(status -> questionDao.getQuestionSummariesPage(pageAfter, 2));
+            assertEquals(uuids(expected), uuids(page.getItems()));
+
+            cursor = page.getNextCursor();
+            if (cursor == null)
+                break;
+            after = PageCursor.decode(cursor);
+        }
+    }
+
+    //This test case passes when a question created in a transaction which is rolled back is not listed.
+    @Test
+    public void rolledBackQuestionShouldNotBeListed() {
+        String questionId = UUID.randomUUID().toString();
+        new TransactionTemplate(transactionManager).execute(status -> {
+            QuestionEntity questionEntity = new QuestionEntity();
+            questionEntity.setUuid(questionId);
+            questionEntity.setContent("rolled_back_latest_question");
+            questionEntity.setDate(ZonedDateTime.now());
+            questionEntity.setUserEntity(userDao.getUserById("database_uuid1"));
+            questionDao.createQuestion(questionEntity);
+            status.setRollbackOnly();
+            return null;
+        });
+
+        List<QuestionSummary> newest = latestQuestionsFeed.page(null, 1);
+        assertNotEquals(questionId, newest.get(0).getUuid());
+    }
+
+    private String createQuestion(final String content) throws Exception {
+        return JsonPath.read(mvc.perform(MockMvcRequestBuilders.post("/question/create?content=" + content).contentType(MediaType.APPLICATION_JSON_UTF8_VALUE).header("authorization", "database_accesstoken1"))
+                .andExpect(status().isCreated())
+                .andReturn().getResponse().getContentAsString(), "$.id");
+    }
+
+    private static List<String> uuids(final List<QuestionSummary> questions) {
+        return questions.stream().map(QuestionSummary::getUuid).collect(Collectors.toList());
+    }
+
+    private double count(final String name) {
+        return meterRegistry.find(name).functionCounter().count();
+    }
+}
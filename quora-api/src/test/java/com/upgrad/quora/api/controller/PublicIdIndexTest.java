@@ -0,0 +1,200 @@
+package com.upgrad.quora.api.controller;
+
+import com.jayway.jsonpath.JsonPath;
+import com.upgrad.quora.service.cache.PublicIdIndex;
+import com.upgrad.quora.service.cache.UuidIdTable;
+import com.upgrad.quora.service.common.TimeOrderedUuidGenerator;
+import com.upgrad.quora.service.dao.QuestionDao;
+import com.upgrad.quora.service.dao.UserDao;
+import com.upgrad.quora.service.entity.QuestionEntity;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.EntityStatistics;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManagerFactory;
+import java.time.ZonedDateTime;
+import java.util.UUID;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest
+@AutoConfigureMockMvc
+public class PublicIdIndexTest {
+
+    @Autowired
+    private MockMvc mvc;
+
+    @Autowired
+    private PublicIdIndex publicIdIndex;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private QuestionDao questionDao;
+
+    @Autowired
+    private UserDao userDao;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    //This test case passes when created questions and answers are indexed with their owners, an answer is added to an indexed question without loading it, and deleting the question removes both again.
+    @Test
+    public void createdRowsShouldBeIndexedUntilDeleted() throws Exception {
+        String questionId = JsonPath.read(mvc.perform(MockMvcRequestBuilders.post("/question/create?content=indexed_question").contentType(MediaType.APPLICATION_JSON_UTF8_VALUE).header("authorization", "database_accesstoken1"))
+                .andExpect(status().isCreated())
+                .andReturn().getResponse().getContentAsString(), "$.id");
+        try {
+            long question = publicIdIndex.get(PublicIdIndex.Kind.QUESTION, questionId);
+            assertNotEquals(PublicIdIndex.ABSENT, question);
+            assertEquals(1026, PublicIdIndex.ownerId(question));
+
+            EntityStatistics questionStatistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics().getEntityStatistics(QuestionEntity.class.getName());
+            long questionLoads = questionStatistics.getLoadCount();
+            String answerId = JsonPath.read(mvc.perform(MockMvcRequestBuilders.post("/question/" + questionId + "/answer/create?answer=indexed_answer").contentType(MediaType.APPLICATION_JSON_UTF8_VALUE).header("authorization", "database_accesstoken2"))
+                    .andExpect(status().isCreated())
+                    .andReturn().getResponse().getContentAsString(), "$.id");
+            assertEquals(questionLoads, questionStatistics.getLoadCount());
+            assertEquals(1027, PublicIdIndex.ownerId(publicIdIndex.get(PublicIdIndex.Kind.ANSWER, answerId)));
+
+            mvc.perform(MockMvcRequestBuilders.put("/answer/edit/" + answerId + "?content=edited_answer").contentType(MediaType.APPLICATION_JSON_UTF8_VALUE).header("authorization", "database_accesstoken1"))
+                    .andExpect(status().isForbidden())
+                    .andExpect(jsonPath("code").value("ATHR-003"));
+            mvc.perform(MockMvcRequestBuilders.get("/answer/all/" + questionId).header("authorization", "database_accesstoken1"))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$[0].id").value(answerId));
+
+            mvc.perform(MockMvcRequestBuilders.delete("/question/delete/" + questionId).header("authorization", "database_accesstoken1"))
+                    .andExpect(status().isOk());
+            assertEquals(PublicIdIndex.ABSENT, publicIdIndex.get(PublicIdIndex.Kind.QUESTION, questionId));
+            assertEquals(PublicIdIndex.ABSENT, publicIdIndex.get(PublicIdIndex.Kind.ANSWER, answerId));
+        } finally {
+            new TransactionTemplate(transactionManager).execute(status ->
+                    questionDao.deleteQuestion(questionId, null, true));
+        }
+    }
+
+    //This test case passes when a question created in a transaction which is rolled back is not indexed.
+    @Test
+    public void rolledBackQuestionShouldNotBeIndexed() {
+        String questionId = TimeOrderedUuidGenerator.next().toString();
+        new TransactionTemplate(transactionManager).execute(status -> {
+            QuestionEntity questionEntity = new QuestionEntity();
+            questionEntity.setUuid(questionId);
+            questionEntity.setContent("rolled_back_question");
+            questionEntity.setDate(ZonedDateTime.now());
+            questionEntity.setUserEntity(userDao.getUserById("database_uuid1"));
+            questionDao.createQuestion(questionEntity);
+            status.setRollbackOnly();
+            return null;
+        });
+
+        assertEquals(PublicIdIndex.ABSENT, publicIdIndex.get(PublicIdIndex.Kind.QUESTION, questionId));
+    }
+
+    //This test case passes when uuids which are not in the canonical lowercase form are never indexed, they are always looked up in the database.
+    @Test
+    public void nonCanonicalUuidsShouldNotBeIndexed() {
+        new TransactionTemplate(transactionManager).execute(status -> questionDao.getQuestionById("database_question_uuid"));
+
+        assertEquals(PublicIdIndex.ABSENT, publicIdIndex.get(PublicIdIndex.Kind.QUESTION, "database_question_uuid"));
+    }
+
+    //This test case passes when the answers to a deleted question and the answers of a deleted user are no longer found, although only the entries of the question and the user were removed.
+    @Test
+    public void answersOfDeletedRowsShouldNotBeFound() {
+        String questionId = TimeOrderedUuidGenerator.next().toString();
+        String userId = TimeOrderedUuidGenerator.next().toString();
+        String answerToQuestion = TimeOrderedUuidGenerator.next().toString();
+        String answerOfUser = TimeOrderedUuidGenerator.next().toString();
+        // Outside of a transaction the entries are added and removed right away
+        publicIdIndex.put(PublicIdIndex.Kind.QUESTION, questionId, 2000000001, 1026, 0, publicIdIndex.removals());
+        publicIdIndex.put(PublicIdIndex.Kind.USER, userId, 2000000002, 2000000002, 0, publicIdIndex.removals());
+        publicIdIndex.put(PublicIdIndex.Kind.ANSWER, answerToQuestion, 2000000003, 1026, 2000000001, publicIdIndex.removals());
+        publicIdIndex.put(PublicIdIndex.Kind.ANSWER, answerOfUser, 2000000004, 2000000002, 1024, publicIdIndex.removals());
+        assertNotEquals(PublicIdIndex.ABSENT, publicIdIndex.get(PublicIdIndex.Kind.ANSWER, answerToQuestion));
+        assertNotEquals(PublicIdIndex.ABSENT, publicIdIndex.get(PublicIdIndex.Kind.ANSWER, answerOfUser));
+
+        publicIdIndex.removeQuestion(questionId, 2000000001);
+        publicIdIndex.removeUser(userId, 2000000002);
+
+        assertEquals(PublicIdIndex.ABSENT, publicIdIndex.get(PublicIdIndex.Kind.QUESTION, questionId));
+        assertEquals(PublicIdIndex.ABSENT, publicIdIndex.get(PublicIdIndex.Kind.USER, userId));
+        assertEquals(PublicIdIndex.ABSENT, publicIdIndex.get(PublicIdIndex.Kind.ANSWER, answerToQuestion));
+        assertEquals(PublicIdIndex.ABSENT, publicIdIndex.get(PublicIdIndex.Kind.ANSWER, answerOfUser));
+    }
+
+    //This test case passes when a question deleted by another instance, and so still in the index, is reported as not existing and evicted once the database shows it is gone.
+    @Test
+    public void questionDeletedElsewhereShouldBeEvicted() throws Exception {
+        String questionId = TimeOrderedUuidGenerator.next().toString();
+        publicIdIndex.put(PublicIdIndex.Kind.QUESTION, questionId, 2000000011, 1026, 0, publicIdIndex.removals());
+
+        mvc.perform(MockMvcRequestBuilders.post("/question/" + questionId + "/answer/create?answer=my_answer").contentType(MediaType.APPLICATION_JSON_UTF8_VALUE).header("authorization", "database_accesstoken"))
+                .andExpect(status().isNotFound())
+                .andExpect(jsonPath("code").value("QUES-001"));
+        assertEquals(PublicIdIndex.ABSENT, publicIdIndex.get(PublicIdIndex.Kind.QUESTION, questionId));
+
+        publicIdIndex.put(PublicIdIndex.Kind.QUESTION, questionId, 2000000011, 1026, 0, publicIdIndex.removals());
+        mvc.perform(MockMvcRequestBuilders.get("/answer/all/" + questionId).header("authorization", "database_accesstoken"))
+                .andExpect(status().isNotFound())
+                .andExpect(jsonPath("code").value("QUES-001"));
+        assertEquals(PublicIdIndex.ABSENT, publicIdIndex.get(PublicIdIndex.Kind.QUESTION, questionId));
+    }
+
+    //This test case passes when a user deleted by another instance, and so still in the index, is reported as not existing when its questions are listed.
+    @Test
+    public void userDeletedElsewhereShouldBeEvicted() throws Exception {
+        String userId = TimeOrderedUuidGenerator.next().toString();
+        publicIdIndex.put(PublicIdIndex.Kind.USER, userId, 2000000012, 2000000012, 0, publicIdIndex.removals());
+
+        mvc.perform(MockMvcRequestBuilders.get("/question/all/" + userId).header("authorization", "database_accesstoken"))
+                .andExpect(status().isNotFound())
+                .andExpect(jsonPath("code").value("USR-001"));
+        assertEquals(PublicIdIndex.ABSENT, publicIdIndex.get(PublicIdIndex.Kind.USER, userId));
+    }
+
+    //This test case passes when the table finds every entry through growth and removals, which shift the following entries back.
+    @Test
+    public void tableShouldKeepEntriesThroughGrowthAndRemoval() {
+        UuidIdTable table = new UuidIdTable(5000, true);
+        UUID[] uuids = new UUID[5000];
+        for (int i = 0; i < uuids.length; i++) {
+            uuids[i] = TimeOrderedUuidGenerator.next();
+            assertTrue(table.put(uuids[i].getMostSignificantBits(), uuids[i].getLeastSignificantBits(), i + 1, i % 7, i % 3));
+        }
+        assertFalse(table.put(1, 2, 1, 1, 1));
+        assertTrue(table.memoryBytes() / table.size() < 50);
+
+        for (int i = 0; i < uuids.length; i += 2)
+            assertTrue(table.remove(uuids[i].getMostSignificantBits(), uuids[i].getLeastSignificantBits()));
+        assertEquals(833, table.removeIf((id, ownerId, parentId) -> parentId == 0 && id % 2 == 0));
+
+        for (int i = 0; i < uuids.length; i++) {
+            long entry = table.get(uuids[i].getMostSignificantBits(), uuids[i].getLeastSignificantBits());
+            if (i % 2 == 0 || i % 3 == 0) {
+                assertEquals(UuidIdTable.ABSENT, entry);
+            } else {
+                assertEquals(i + 1, PublicIdIndex.id(entry));
+                assertEquals(i % 7, PublicIdIndex.ownerId(entry));
+            }
+        }
+    }
+}
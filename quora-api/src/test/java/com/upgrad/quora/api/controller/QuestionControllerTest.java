@@ -1,6 +1,8 @@
 package com.upgrad.quora.api.controller;
 
 
+import com.jayway.jsonpath.JsonPath;
+import com.upgrad.quora.service.cache.PublicIdIndex;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -12,6 +14,9 @@ import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
 import org.springframework.test.web.servlet.result.MockMvcResultMatchers;
 
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @RunWith(SpringRunner.class)
@@ -22,6 +27,9 @@ public class QuestionControllerTest {
     @Autowired
     private MockMvc mvc;
 
+    @Autowired
+    private PublicIdIndex publicIdIndex;
+
 
     //This test case passes when you try to create the question but the JWT token entered does not exist in the database.
     @Test
@@ -39,6 +47,52 @@ public class QuestionControllerTest {
                 .andExpect(MockMvcResultMatchers.jsonPath("code").value("ATHR-002"));
     }
 
+    //This test case passes when you try to create questions in bulk but the JWT token entered does not exist in the database.
+    @Test
+    public void createQuestionsWithNonExistingAccessToken() throws Exception {
+        mvc.perform(MockMvcRequestBuilders.post("/question/bulk/create").contentType(MediaType.APPLICATION_JSON_UTF8_VALUE).header("authorization", "non_existing_access_token")
+                .content("[{\"content\":\"my_question\"}]"))
+                .andExpect(status().isForbidden())
+                .andExpect(MockMvcResultMatchers.jsonPath("code").value("ATHR-001"));
+    }
+
+    //This test case passes when you create questions in bulk and a question without content is reported on its own.
+    @Test
+    public void createQuestionsWithEmptyContent() throws Exception {
+        mvc.perform(MockMvcRequestBuilders.post("/question/bulk/create").contentType(MediaType.APPLICATION_JSON_UTF8_VALUE).header("authorization", "database_accesstoken1")
+                .content("[{\"content\":\" \"}]"))
+                .andExpect(status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("$.length()").value(1))
+                .andExpect(MockMvcResultMatchers.jsonPath("$[0].index").value(0))
+                .andExpect(MockMvcResultMatchers.jsonPath("$[0].status").value("QUESTION NOT CREATED"))
+                .andExpect(MockMvcResultMatchers.jsonPath("$[0].code").value("QUES-002"));
+    }
+
+    //This test case passes when you create questions in bulk and a question longer than the content column is reported on its own while the others are created.
+    @Test
+    public void createQuestionsWithTooLongContent() throws Exception {
+        String createdId = JsonPath.read(mvc.perform(MockMvcRequestBuilders.post("/question/bulk/create").contentType(MediaType.APPLICATION_JSON_UTF8_VALUE).header("authorization", "database_accesstoken1")
+                .content("[{\"content\":\"" + String.join("", Collections.nCopies(501, "q")) + "\"},{\"content\":\"my_question\"}]"))
+                .andExpect(status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("$.length()").value(2))
+                .andExpect(MockMvcResultMatchers.jsonPath("$[0].status").value("QUESTION NOT CREATED"))
+                .andExpect(MockMvcResultMatchers.jsonPath("$[0].code").value("QUES-003"))
+                .andExpect(MockMvcResultMatchers.jsonPath("$[1].status").value("QUESTION CREATED"))
+                .andReturn().getResponse().getContentAsString(), "$[1].id");
+
+        mvc.perform(MockMvcRequestBuilders.delete("/question/delete/" + createdId).header("authorization", "database_accesstoken1"))
+                .andExpect(status().isOk());
+    }
+
+    //This test case passes when you try to create more questions in bulk than allowed in one request.
+    @Test
+    public void createQuestionsWithTooManyItems() throws Exception {
+        mvc.perform(MockMvcRequestBuilders.post("/question/bulk/create").contentType(MediaType.APPLICATION_JSON_UTF8_VALUE).header("authorization", "database_accesstoken1")
+                .content("[" + String.join(",", Collections.nCopies(5001, "{}")) + "]"))
+                .andExpect(status().isBadRequest())
+                .andExpect(MockMvcResultMatchers.jsonPath("code").value("GEN-005"));
+    }
+
     //This test case passes when you try to get the detail of all the questions and the JWT token entered exists in the database and the user corresponding to that JWT token is signed in.
     @Test
     public void getAllQuestions() throws Exception {
@@ -94,6 +148,51 @@ public class QuestionControllerTest {
                 .andExpect(MockMvcResultMatchers.jsonPath("code").value("QUES-001"));
     }
 
+    //This test case passes when you try to edit your question with content longer than the column allows.
+    @Test
+    public void editQuestionWithTooLongContent() throws Exception {
+        String questionId = createQuestion("database_accesstoken1");
+        try {
+            mvc.perform(MockMvcRequestBuilders.put("/question/edit/" + questionId + "?content=" + String.join("", Collections.nCopies(501, "q"))).contentType(MediaType.APPLICATION_JSON_UTF8_VALUE).header("authorization", "database_accesstoken1"))
+                    .andExpect(status().isConflict())
+                    .andExpect(MockMvcResultMatchers.jsonPath("code").value("DB-001"));
+        } finally {
+            mvc.perform(MockMvcRequestBuilders.delete("/question/delete/" + questionId).header("authorization", "database_accesstoken1"))
+                    .andExpect(status().isOk());
+        }
+    }
+
+    //This test case passes when you try to edit the question of another user, whether its owner is found in the index or only by the update statement.
+    @Test
+    public void editIndexedQuestionWithoutOwnership() throws Exception {
+        String questionId = createQuestion("database_accesstoken1");
+        try {
+            mvc.perform(MockMvcRequestBuilders.put("/question/edit/" + questionId + "?content=edited_question").contentType(MediaType.APPLICATION_JSON_UTF8_VALUE).header("authorization", "database_accesstoken2"))
+                    .andExpect(status().isForbidden())
+                    .andExpect(MockMvcResultMatchers.jsonPath("code").value("ATHR-003"));
+
+            publicIdIndex.evict(PublicIdIndex.Kind.QUESTION, questionId);
+            mvc.perform(MockMvcRequestBuilders.put("/question/edit/" + questionId + "?content=edited_question").contentType(MediaType.APPLICATION_JSON_UTF8_VALUE).header("authorization", "database_accesstoken2"))
+                    .andExpect(status().isForbidden())
+                    .andExpect(MockMvcResultMatchers.jsonPath("code").value("ATHR-003"));
+        } finally {
+            mvc.perform(MockMvcRequestBuilders.delete("/question/delete/" + questionId).header("authorization", "database_accesstoken1"))
+                    .andExpect(status().isOk());
+        }
+    }
+
+    //This test case passes when you try to edit your question after it was deleted.
+    @Test
+    public void editDeletedQuestion() throws Exception {
+        String questionId = createQuestion("database_accesstoken1");
+        mvc.perform(MockMvcRequestBuilders.delete("/question/delete/" + questionId).header("authorization", "database_accesstoken1"))
+                .andExpect(status().isOk());
+
+        mvc.perform(MockMvcRequestBuilders.put("/question/edit/" + questionId + "?content=edited_question").contentType(MediaType.APPLICATION_JSON_UTF8_VALUE).header("authorization", "database_accesstoken1"))
+                .andExpect(status().isNotFound())
+                .andExpect(MockMvcResultMatchers.jsonPath("code").value("QUES-001"));
+    }
+
     //This test case passes when you try to delete the question but the JWT token entered does not exist in the database.
     @Test
     public void deleteQuestionWithNonExistingAccessToken() throws Exception {
@@ -151,5 +250,71 @@ public class QuestionControllerTest {
                 .andExpect(MockMvcResultMatchers.jsonPath("code").value("USR-001"));
     }
 
+    //This test case passes when you page through the questions of a user one at a time, questions posted at the same time are ordered by id.
+    @Test
+    public void getAllQuestionsByUserPageByPage() throws Exception {
+        final String nextCursor = mvc.perform(MockMvcRequestBuilders.get("/question/all/database_uuid2?limit=1").header("authorization", "database_accesstoken1"))
+                .andExpect(status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("$.length()").value(1))
+                .andExpect(MockMvcResultMatchers.jsonPath("$[0].id").value("database_question_uuid3"))
+                .andExpect(MockMvcResultMatchers.header().exists("next-cursor"))
+                .andReturn().getResponse().getHeader("next-cursor");
+
+        mvc.perform(MockMvcRequestBuilders.get("/question/all/database_uuid2?limit=1&cursor=" + nextCursor).header("authorization", "database_accesstoken1"))
+                .andExpect(status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("$.length()").value(1))
+                .andExpect(MockMvcResultMatchers.jsonPath("$[0].id").value("database_question_uuid2"))
+                .andExpect(MockMvcResultMatchers.header().doesNotExist("next-cursor"));
+    }
+
+    //This test case passes when you ask for the approximate number of all the questions.
+    @Test
+    public void getAllQuestionsWithTotalEstimate() throws Exception {
+        mvc.perform(MockMvcRequestBuilders.get("/question/all?includeTotal=true").header("authorization", "database_accesstoken1"))
+                .andExpect(status().isOk())
+                .andExpect(MockMvcResultMatchers.header().exists("total-count-estimate"));
+    }
+
+    //This test case passes when you try to get the questions following a cursor which was not returned by the application.
+    @Test
+    public void getAllQuestionsWithInvalidCursor() throws Exception {
+        mvc.perform(MockMvcRequestBuilders.get("/question/all?cursor=not_a_cursor").header("authorization", "database_accesstoken1"))
+                .andExpect(status().isBadRequest())
+                .andExpect(MockMvcResultMatchers.jsonPath("code").value("GEN-003"));
+    }
 
+    //This test case passes when you try to get the questions with a page size of zero.
+    @Test
+    public void getAllQuestionsWithZeroLimit() throws Exception {
+        mvc.perform(MockMvcRequestBuilders.get("/question/all?limit=0").header("authorization", "database_accesstoken1"))
+                .andExpect(status().isBadRequest())
+                .andExpect(MockMvcResultMatchers.jsonPath("code").value("GEN-004"));
+    }
+
+    //This test case passes when you export all the questions, newest first, one JSON object per line.
+    @Test
+    public void exportAllQuestions() throws Exception {
+        final String body = mvc.perform(MockMvcRequestBuilders.get("/question/export").header("authorization", "database_accesstoken1"))
+                .andExpect(status().isOk())
+                .andExpect(MockMvcResultMatchers.content().contentTypeCompatibleWith("application/x-ndjson"))
+                .andReturn().getResponse().getContentAsString();
+
+        final String[] lines = body.split("\n");
+        assertEquals("{\"id\":\"database_question_uuid3\",\"content\":\"database_question_content3\"}", lines[0]);
+        assertEquals("{\"id\":\"database_question_uuid2\",\"content\":\"database_question_content2\"}", lines[1]);
+    }
+
+    //This test case passes when you try to export all the questions but the JWT token entered does not exist in the database.
+    @Test
+    public void exportAllQuestionsWithNonExistingAccessToken() throws Exception {
+        mvc.perform(MockMvcRequestBuilders.get("/question/export").header("authorization", "non_existing_access_token"))
+                .andExpect(status().isForbidden())
+                .andExpect(MockMvcResultMatchers.jsonPath("code").value("ATHR-001"));
+    }
+
+    private String createQuestion(final String accessToken) throws Exception {
+        return JsonPath.read(mvc.perform(MockMvcRequestBuilders.post("/question/create?content=edited_question_fixture").contentType(MediaType.APPLICATION_JSON_UTF8_VALUE).header("authorization", accessToken))
+                .andExpect(status().isCreated())
+                .andReturn().getResponse().getContentAsString(), "$.id");
+    }
 }
@@ -0,0 +1,116 @@
+package com.upgrad.quora.api.controller;
+
+import com.upgrad.quora.service.dao.QuestionDao;
+import com.upgrad.quora.service.entity.QuestionEntity;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManagerFactory;
+import java.time.ZonedDateTime;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest
+@AutoConfigureMockMvc
+public class SecondLevelCacheTest {
+
+    @Autowired
+    private MockMvc mvc;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private QuestionDao questionDao;
+
+    //This test case passes when a repeated user profile lookup is served from the userByUuid and user regions.
+    @Test
+    public void repeatedUserLookupShouldHitTheCache() throws Exception {
+        mvc.perform(MockMvcRequestBuilders.get("/userprofile/database_uuid1").header("authorization", "database_accesstoken"))
+                .andExpect(status().isOk());
+        double queryHits = hits("userByUuid");
+        double entityHits = hits("user");
+
+        mvc.perform(MockMvcRequestBuilders.get("/userprofile/database_uuid1").header("authorization", "database_accesstoken"))
+                .andExpect(status().isOk());
+
+        assertEquals(queryHits + 1, hits("userByUuid"), 0);
+        assertEquals(entityHits + 1, hits("user"), 0);
+        assertTrue(meterRegistry.find("quora.hibernate.cache.hit.ratio").tag("region", "user").gauge().value() > 0);
+    }
+
+    //This test case passes when the edit statement of a question evicts the cached question, even if it is rolled back.
+    @Test
+    public void editQuestionShouldEvictTheCachedQuestion() {
+        QuestionEntity questionEntity = readOnly().execute(status -> questionDao.getQuestionById("database_question_uuid"));
+        assertNotNull(questionEntity);
+        assertTrue(entityManagerFactory.getCache().contains(QuestionEntity.class, questionEntity.getId()));
+
+        rollback(() -> questionDao.editQuestion("database_question_uuid", "evicted", ZonedDateTime.now(), questionEntity.getUserEntity()));
+
+        assertFalse(entityManagerFactory.getCache().contains(QuestionEntity.class, questionEntity.getId()));
+    }
+
+    //This test case passes when the edit statement of a question leaves the other cached questions in the cache.
+    @Test
+    public void editQuestionShouldKeepOtherCachedQuestions() {
+        QuestionEntity questionEntity = readOnly().execute(status -> questionDao.getQuestionById("database_question_uuid"));
+        QuestionEntity otherQuestionEntity = readOnly().execute(status -> questionDao.getQuestionById("database_question_uuid2"));
+        assertTrue(entityManagerFactory.getCache().contains(QuestionEntity.class, otherQuestionEntity.getId()));
+
+        rollback(() -> questionDao.editQuestion("database_question_uuid", "evicted", ZonedDateTime.now(), questionEntity.getUserEntity()));
+
+        assertFalse(entityManagerFactory.getCache().contains(QuestionEntity.class, questionEntity.getId()));
+        assertTrue(entityManagerFactory.getCache().contains(QuestionEntity.class, otherQuestionEntity.getId()));
+    }
+
+    //This test case passes when deleting the questions of a deleted user evicts them, unlike the foreign key cascade.
+    @Test
+    public void deleteQuestionsOfUserShouldEvictTheCachedQuestions() {
+        QuestionEntity questionEntity = readOnly().execute(status -> questionDao.getQuestionById("database_question_uuid"));
+        assertNotNull(questionEntity);
+        assertTrue(entityManagerFactory.getCache().contains(QuestionEntity.class, questionEntity.getId()));
+
+        rollback(() -> questionDao.deleteQuestionsOfUser(questionEntity.getUserEntity()));
+
+        assertFalse(entityManagerFactory.getCache().contains(QuestionEntity.class, questionEntity.getId()));
+    }
+
+    private double hits(final String region) {
+        return meterRegistry.find("quora.hibernate.cache.hits").tag("region", region).functionCounter().count();
+    }
+
+    private TransactionTemplate readOnly() {
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        transactionTemplate.setReadOnly(true);
+        return transactionTemplate;
+    }
+
+    private void rollback(final Runnable statements) {
+        new TransactionTemplate(transactionManager).execute(status -> {
+            statements.run();
+            status.setRollbackOnly();
+            return null;
+        });
+    }
+}
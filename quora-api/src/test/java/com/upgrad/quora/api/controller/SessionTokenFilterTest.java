@@ -0,0 +1,81 @@
+package com.upgrad.quora.api.controller;
+
+import com.upgrad.quora.service.cache.UnknownTokenCache;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
+
+import java.util.Base64;
+import java.util.UUID;
+
+import static org.junit.Assert.assertEquals;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest(properties = "quora.auth.token-filter.miss-lookups-per-second=0")
+@AutoConfigureMockMvc
+public class SessionTokenFilterTest {
+
+    @Autowired
+    private MockMvc mvc;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private UnknownTokenCache unknownTokenCache;
+
+    //This test case passes when a token matching no session is rejected by the filter, without a user_auth lookup
+    //that would have remembered it in the unknown token cache.
+    @Test
+    public void unknownTokenShouldBeRejectedWithoutLookup() throws Exception {
+        double rejected = count("quora.auth.token.filter.rejected");
+        int unknownTokens = unknownTokenCache.size();
+
+        mvc.perform(MockMvcRequestBuilders.get("/userprofile/database_uuid1").header("authorization", "unknown_access_token_" + UUID.randomUUID()))
+                .andExpect(status().isForbidden())
+                .andExpect(jsonPath("code").value("ATHR-001"));
+
+        assertEquals(rejected + 1, count("quora.auth.token.filter.rejected"), 0);
+        assertEquals(unknownTokens, unknownTokenCache.size());
+    }
+
+    //This test case passes when the sessions present at startup pass the filter, signed out ones included so they are
+    //still refused with ATHR-002.
+    @Test
+    public void existingSessionsShouldPassTheFilter() throws Exception {
+        mvc.perform(MockMvcRequestBuilders.get("/userprofile/database_uuid1").header("authorization", "database_accesstoken4"))
+                .andExpect(status().isOk());
+        mvc.perform(MockMvcRequestBuilders.get("/userprofile/database_uuid1").header("authorization", "database_accesstoken3"))
+                .andExpect(status().isForbidden())
+                .andExpect(jsonPath("code").value("ATHR-002"));
+    }
+
+    //This test case passes when a token issued by sign in is accepted right away, before the next rebuild of the filter.
+    @Test
+    public void signedInTokenShouldPassTheFilter() throws Exception {
+        String authorization = "Basic " + Base64.getEncoder().encodeToString("database_username5:database_password5".getBytes());
+        String accessToken = mvc.perform(MockMvcRequestBuilders.post("/user/signin").header("authorization", authorization).contentType(MediaType.APPLICATION_JSON_UTF8))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader("access-token");
+        try {
+            mvc.perform(MockMvcRequestBuilders.get("/userprofile/database_uuid5").header("authorization", accessToken))
+                    .andExpect(status().isOk());
+        } finally {
+            mvc.perform(MockMvcRequestBuilders.post("/user/signout").header("authorization", accessToken))
+                    .andExpect(status().isOk());
+        }
+    }
+
+    private double count(final String name) {
+        return meterRegistry.find(name).functionCounter().count();
+    }
+}
@@ -0,0 +1,147 @@
+package com.upgrad.quora.api.controller;
+
+import com.auth0.jwt.JWT;
+import com.upgrad.quora.service.business.StatelessTokenService;
+import com.upgrad.quora.service.cache.UserSessionRevocations;
+import com.upgrad.quora.service.dao.TokenRevocationDao;
+import com.upgrad.quora.service.dao.UserDao;
+import com.upgrad.quora.service.entity.TokenRevocationEntity;
+import com.upgrad.quora.service.entity.UserAuthEntity;
+import com.upgrad.quora.service.entity.UserEntity;
+import com.upgrad.quora.service.exception.AuthorizationFailedException;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
+import org.springframework.test.web.servlet.result.MockMvcResultMatchers;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.ZonedDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.Base64;
+import java.util.UUID;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest(properties = {
+        "quora.auth.stateless.enabled=true",
+        "quora.auth.stateless.active-key-id=test",
+        "quora.auth.stateless.keys.test=stateless_token_test_secret"})
+@AutoConfigureMockMvc
+public class StatelessTokenTest {
+
+    @Autowired
+    private MockMvc mvc;
+
+    @Autowired
+    private StatelessTokenService statelessTokenService;
+
+    @Autowired
+    private UserSessionRevocations userSessionRevocations;
+
+    @Autowired
+    private UserDao userDao;
+
+    @Autowired
+    private TokenRevocationDao tokenRevocationDao;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    //This test case passes when a user signs out of all sessions and signs in again right away, the new token is accepted and the old one is not.
+    @Test
+    public void signinRightAfterSignoutAllShouldBeAccepted() throws Exception {
+        String authorization = "Basic " + Base64.getEncoder().encodeToString("database_username5:database_password5".getBytes());
+        String oldAccessToken = signin(authorization);
+
+        mvc.perform(MockMvcRequestBuilders.post("/user/signout/all").header("authorization", oldAccessToken))
+                .andExpect(status().isOk());
+        String newAccessToken = signin(authorization);
+
+        mvc.perform(MockMvcRequestBuilders.get("/userprofile/database_uuid5").header("authorization", newAccessToken))
+                .andExpect(status().isOk());
+        mvc.perform(MockMvcRequestBuilders.get("/userprofile/database_uuid5").header("authorization", oldAccessToken))
+                .andExpect(status().isForbidden())
+                .andExpect(MockMvcResultMatchers.jsonPath("code").value("ATHR-002"));
+    }
+
+    //This test case passes when a token is compared against a sign out of all sessions in milliseconds, a login later in the same second is not revoked.
+    @Test
+    public void signoutAllShouldBeComparedInMilliseconds() throws Exception {
+        UserEntity userEntity = userDao.getUserByUserName("database_username5");
+        ZonedDateTime revokedAt = ZonedDateTime.now().minusSeconds(1).truncatedTo(ChronoUnit.SECONDS).plusNanos(500_000_000L);
+        userSessionRevocations.revokeAll(userEntity.getId(), revokedAt);
+
+        UserAuthEntity later = statelessTokenService.verify(statelessTokenService.generateToken(session(userEntity, revokedAt.plusNanos(1_000_000L))));
+        assertEquals(revokedAt.plusNanos(1_000_000L).toInstant(), later.getLoginAt().toInstant());
+
+        try {
+            statelessTokenService.verify(statelessTokenService.generateToken(session(userEntity, revokedAt)));
+            fail();
+        } catch (AuthorizationFailedException e) {
+            assertEquals("ATHR-002", e.getCode());
+        }
+    }
+
+    //This test case passes when a sign out is recorded in token_revocation, where the other instances and a restarted one load it from.
+    @Test
+    public void signoutShouldBeRecordedForOtherInstances() throws Exception {
+        String authorization = "Basic " + Base64.getEncoder().encodeToString("database_username5:database_password5".getBytes());
+        String accessToken = signin(authorization);
+
+        mvc.perform(MockMvcRequestBuilders.post("/user/signout").header("authorization", accessToken))
+                .andExpect(status().isOk());
+
+        String sessionUuid = JWT.decode(accessToken).getId();
+        assertTrue(tokenRevocationDao.getLiveTokenRevocations(ZonedDateTime.now()).stream()
+                .anyMatch(tokenRevocation -> sessionUuid.equals(tokenRevocation.getSessionUuid())));
+    }
+
+    //This test case passes when a sign out recorded in token_revocation by another instance is applied by the next refresh.
+    @Test
+    public void signoutOfAnotherInstanceShouldBeApplied() throws Exception {
+        UserEntity userEntity = userDao.getUserByUserName("database_username5");
+        UserAuthEntity userAuthEntity = session(userEntity, ZonedDateTime.now());
+        String accessToken = statelessTokenService.generateToken(userAuthEntity);
+        statelessTokenService.verify(accessToken);
+
+        TokenRevocationEntity tokenRevocationEntity = new TokenRevocationEntity();
+        tokenRevocationEntity.setSessionUuid(userAuthEntity.getUuid());
+        tokenRevocationEntity.setRevokedAt(ZonedDateTime.now());
+        tokenRevocationEntity.setExpiresAt(userAuthEntity.getExpiresAt());
+        new TransactionTemplate(transactionManager).execute(status -> tokenRevocationDao.createTokenRevocation(tokenRevocationEntity));
+        statelessTokenService.refreshRevokedTokens();
+
+        try {
+            statelessTokenService.verify(accessToken);
+            fail();
+        } catch (AuthorizationFailedException e) {
+            assertEquals("ATHR-002", e.getCode());
+        }
+    }
+
+    private String signin(final String authorization) throws Exception {
+        return mvc.perform(MockMvcRequestBuilders.post("/user/signin").header("authorization", authorization).contentType(MediaType.APPLICATION_JSON_UTF8))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader("access-token");
+    }
+
+    private static UserAuthEntity session(final UserEntity userEntity, final ZonedDateTime loginAt) {
+        UserAuthEntity userAuthEntity = new UserAuthEntity();
+        userAuthEntity.setUuid(UUID.randomUUID().toString());
+        userAuthEntity.setUserEntity(userEntity);
+        userAuthEntity.setLoginAt(loginAt);
+        userAuthEntity.setExpiresAt(loginAt.plusHours(8));
+        return userAuthEntity;
+    }
+}
@@ -0,0 +1,98 @@
+package com.upgrad.quora.api.controller;
+
+import com.upgrad.quora.service.common.TimeOrderedUuidGenerator;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class TimeOrderedUuidGeneratorTest {
+
+    private static final int THREADS = 8;
+
+    private static final int UUIDS_PER_THREAD = 10000;
+
+    //This test case passes when generated uuids carry version 7, the RFC variant and the current unix time in milliseconds.
+    @Test
+    public void uuidShouldHaveTheVersion7Layout() {
+        final long before = System.currentTimeMillis();
+        final UUID uuid = TimeOrderedUuidGenerator.next();
+        final long after = System.currentTimeMillis();
+
+        assertEquals(7, uuid.version());
+        assertEquals(2, uuid.variant());
+        final long timestamp = uuid.getMostSignificantBits() >>> 16;
+        assertTrue(timestamp >= before);
+        // a counter overflow borrows the next millisecond, the clock may lag behind by a few of them
+        assertTrue(timestamp <= after + 100);
+    }
+
+    //This test case passes when uuids generated within the same millisecond differ by their counter and keep increasing, as UUID and as string.
+    @Test
+    public void uuidsShouldIncreaseWithinOneMillisecond() {
+        final List<UUID> uuids = new ArrayList<>();
+        for (int i = 0; i < UUIDS_PER_THREAD; i++)
+            uuids.add(TimeOrderedUuidGenerator.next());
+
+        int sameMillisecond = 0;
+        for (int i = 1; i < uuids.size(); i++) {
+            final UUID previous = uuids.get(i - 1);
+            final UUID current = uuids.get(i);
+            assertTrue(previous.compareTo(current) < 0);
+            assertTrue(previous.toString().compareTo(current.toString()) < 0);
+            if (previous.getMostSignificantBits() >>> 16 == current.getMostSignificantBits() >>> 16) {
+                assertEquals(counter(previous) + 1, counter(current));
+                sameMillisecond++;
+            }
+        }
+        assertTrue(sameMillisecond > 0);
+    }
+
+    //This test case passes when threads generating uuids at the same time never get the same timestamp and counter, and each sees its own uuids increase.
+    @Test
+    public void concurrentUuidsShouldBeUniqueAndIncreasing() throws Exception {
+        final ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            final CountDownLatch start = new CountDownLatch(1);
+            final List<Future<List<UUID>>> futures = new ArrayList<>();
+            for (int thread = 0; thread < THREADS; thread++) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    final List<UUID> uuids = new ArrayList<>(UUIDS_PER_THREAD);
+                    for (int i = 0; i < UUIDS_PER_THREAD; i++)
+                        uuids.add(TimeOrderedUuidGenerator.next());
+                    return uuids;
+                }));
+            }
+            start.countDown();
+
+            final Set<Long> timestampsAndCounters = new HashSet<>();
+            for (Future<List<UUID>> future : futures) {
+                final List<UUID> uuids = future.get(30, TimeUnit.SECONDS);
+                for (int i = 0; i < uuids.size(); i++) {
+                    if (i > 0)
+                        assertTrue(uuids.get(i - 1).compareTo(uuids.get(i)) < 0);
+                    assertTrue(timestampsAndCounters.add(uuids.get(i).getMostSignificantBits()));
+                }
+            }
+            assertEquals(THREADS * UUIDS_PER_THREAD, timestampsAndCounters.size());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static long counter(final UUID uuid) {
+        return uuid.getMostSignificantBits() & 0xFFFL;
+    }
+}
@@ -1,16 +1,24 @@
 package com.upgrad.quora.api.controller;
 
+import com.upgrad.quora.service.dao.UserDao;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.SpyBean;
 import org.springframework.http.MediaType;
 import org.springframework.test.context.junit4.SpringRunner;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
 import org.springframework.test.web.servlet.result.MockMvcResultMatchers;
 
+import java.util.Base64;
+import java.util.Collections;
+
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doReturn;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @RunWith(SpringRunner.class)
@@ -21,6 +29,9 @@ public class UserControllerTest {
     @Autowired
     private MockMvc mvc;
 
+    @SpyBean
+    private UserDao userDao;
+
     //This test case passes when you signup with a username that already exists in the database.
     @Test
     public void signupWithRepeatedUserName() throws Exception {
@@ -37,6 +48,25 @@ public class UserControllerTest {
                 .andExpect(MockMvcResultMatchers.jsonPath("code").value("SGR-002"));
     }
 
+    //This test case passes when you signup with a username that already exists in the database but was not found by
+    //the check before the insert, as with a concurrent signup, and the unique constraint reports it.
+    @Test
+    public void signupWithRepeatedUserNameMissedByTheCheck() throws Exception {
+        doReturn(Collections.emptyList()).when(userDao).getUsersByUserNameOrEmail(any(), any());
+        mvc.perform(MockMvcRequestBuilders.post("/user/signup?firstName=a&lastName=a&userName=database_username&emailAddress=non_existing_email&password=a&country=a&aboutMe=a&dob=a&contactNumber=a").contentType(MediaType.APPLICATION_JSON_UTF8))
+                .andExpect(status().isConflict())
+                .andExpect(MockMvcResultMatchers.jsonPath("code").value("SGR-001"));
+    }
+
+    //This test case passes when you signup with an email that already exists in the database but was not found by
+    //the check before the insert, as with a concurrent signup, and the unique constraint reports it.
+    @Test
+    public void signupWithRepeatedEmailMissedByTheCheck() throws Exception {
+        doReturn(Collections.emptyList()).when(userDao).getUsersByUserNameOrEmail(any(), any());
+        mvc.perform(MockMvcRequestBuilders.post("/user/signup?firstName=a&lastName=a&userName=non_existing_username&emailAddress=database_email&password=a&country=a&aboutMe=a&dob=a&contactNumber=a").contentType(MediaType.APPLICATION_JSON_UTF8))
+                .andExpect(status().isConflict())
+                .andExpect(MockMvcResultMatchers.jsonPath("code").value("SGR-002"));
+    }
 
     //This test case passes when you try to signout but the JWT token entered does not exist in the database.
     @Test
@@ -45,4 +75,58 @@ public class UserControllerTest {
                 .andExpect(status().isUnauthorized())
                 .andExpect(MockMvcResultMatchers.jsonPath("code").value("SGR-001"));
     }
-}
\ No newline at end of file
+
+    //This test case passes when a user whose password was hashed in the legacy format signs in, the password is
+    //hashed again in the current format and the user can still sign in with it.
+    @Test
+    public void signinWithLegacyPasswordHashRehashesPassword() throws Exception {
+        String authorization = "Basic " + Base64.getEncoder().encodeToString("database_username5:database_password5".getBytes());
+        mvc.perform(MockMvcRequestBuilders.post("/user/signin").header("authorization", authorization).contentType(MediaType.APPLICATION_JSON_UTF8))
+                .andExpect(status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("id").value("database_uuid5"));
+
+        assertTrue(userDao.getUserByUserName("database_username5").getPassword().startsWith("$pbkdf2-sha512$"));
+
+        mvc.perform(MockMvcRequestBuilders.post("/user/signin").header("authorization", authorization).contentType(MediaType.APPLICATION_JSON_UTF8))
+                .andExpect(status().isOk());
+    }
+
+    //This test case passes when you check the availability of a username and email which already exist in the database.
+    @Test
+    public void availabilityWithExistingUserNameAndEmail() throws Exception {
+        mvc.perform(MockMvcRequestBuilders.get("/user/availability?userName=database_username&emailAddress=database_email1"))
+                .andExpect(status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("userNameAvailable").value(false))
+                .andExpect(MockMvcResultMatchers.jsonPath("emailAddressAvailable").value(false));
+    }
+
+    //This test case passes when you check the availability of a username and email which do not exist in the database.
+    @Test
+    public void availabilityWithNonExistingUserNameAndEmail() throws Exception {
+        mvc.perform(MockMvcRequestBuilders.get("/user/availability?userName=non_existing_username&emailAddress=non_existing_email"))
+                .andExpect(status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("userNameAvailable").value(true))
+                .andExpect(MockMvcResultMatchers.jsonPath("emailAddressAvailable").value(true));
+    }
+
+    //This test case passes when a user signs out of all sessions and the access token of one of them, already used
+    //once, is rejected afterwards.
+    @Test
+    public void signoutAllRevokesEverySession() throws Exception {
+        String authorization = "Basic " + Base64.getEncoder().encodeToString("database_username5:database_password5".getBytes());
+        String accessToken = mvc.perform(MockMvcRequestBuilders.post("/user/signin").header("authorization", authorization).contentType(MediaType.APPLICATION_JSON_UTF8))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader("access-token");
+
+        mvc.perform(MockMvcRequestBuilders.get("/userprofile/database_uuid5").header("authorization", accessToken))
+                .andExpect(status().isOk());
+
+        mvc.perform(MockMvcRequestBuilders.post("/user/signout/all").header("authorization", accessToken))
+                .andExpect(status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("id").value("database_uuid5"));
+
+        mvc.perform(MockMvcRequestBuilders.get("/userprofile/database_uuid5").header("authorization", accessToken))
+                .andExpect(status().isForbidden())
+                .andExpect(MockMvcResultMatchers.jsonPath("code").value("ATHR-002"));
+    }
+}
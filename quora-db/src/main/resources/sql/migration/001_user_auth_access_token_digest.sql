@@ -0,0 +1,10 @@
+--Moves session lookup from the VARCHAR(500) access token to its SHA-256 hex digest.
+--Every statement can be re-run, the unique index is built without blocking sign ins (requires autocommit).
+ALTER TABLE USER_AUTH ADD COLUMN IF NOT EXISTS ACCESS_TOKEN_DIGEST CHAR(64);
+
+--Backfill sessions created before the digest column existed
+UPDATE USER_AUTH SET ACCESS_TOKEN_DIGEST = encode(sha256(ACCESS_TOKEN::bytea), 'hex') WHERE ACCESS_TOKEN_DIGEST IS NULL;
+
+CREATE UNIQUE INDEX CONCURRENTLY IF NOT EXISTS UX_USER_AUTH_ACCESS_TOKEN_DIGEST ON USER_AUTH(ACCESS_TOKEN_DIGEST);
+
+ALTER TABLE USER_AUTH ALTER COLUMN ACCESS_TOKEN_DIGEST SET NOT NULL;
@@ -0,0 +1,4 @@
+--Indexes used by the session reaper to find expired and signed out sessions (requires autocommit).
+CREATE INDEX CONCURRENTLY IF NOT EXISTS IX_USER_AUTH_EXPIRES_AT ON USER_AUTH(EXPIRES_AT);
+
+CREATE INDEX CONCURRENTLY IF NOT EXISTS IX_USER_AUTH_LOGOUT_AT ON USER_AUTH(LOGOUT_AT) WHERE LOGOUT_AT IS NOT NULL;
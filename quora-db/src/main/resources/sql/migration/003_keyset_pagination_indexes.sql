@@ -0,0 +1,6 @@
+--Indexes used by the keyset pagination of the question and answer lists (requires autocommit).
+CREATE INDEX CONCURRENTLY IF NOT EXISTS IX_QUESTION_DATE_ID ON QUESTION(date, id);
+
+CREATE INDEX CONCURRENTLY IF NOT EXISTS IX_QUESTION_USER_ID_DATE_ID ON QUESTION(user_id, date, id);
+
+CREATE INDEX CONCURRENTLY IF NOT EXISTS IX_ANSWER_QUESTION_ID_DATE_ID ON ANSWER(question_id, date, id);
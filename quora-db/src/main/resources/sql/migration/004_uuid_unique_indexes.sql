@@ -0,0 +1,7 @@
+--Unique indexes for the public lookups by uuid (requires autocommit).
+--Building a unique index fails on duplicate uuids, an invalid index left behind by a failed build must be dropped before re-running.
+CREATE UNIQUE INDEX CONCURRENTLY IF NOT EXISTS UX_USERS_UUID ON USERS(uuid);
+
+CREATE UNIQUE INDEX CONCURRENTLY IF NOT EXISTS UX_QUESTION_UUID ON QUESTION(uuid);
+
+CREATE UNIQUE INDEX CONCURRENTLY IF NOT EXISTS UX_ANSWER_UUID ON ANSWER(uuid);
@@ -0,0 +1,5 @@
+--Indexes of the foreign keys which are not yet the leading column of another index (requires autocommit).
+--question.user_id and answer.question_id are covered by IX_QUESTION_USER_ID_DATE_ID and IX_ANSWER_QUESTION_ID_DATE_ID from 003.
+CREATE INDEX CONCURRENTLY IF NOT EXISTS IX_USER_AUTH_USER_ID ON USER_AUTH(USER_ID);
+
+CREATE INDEX CONCURRENTLY IF NOT EXISTS IX_ANSWER_USER_ID ON ANSWER(user_id);
@@ -0,0 +1,10 @@
+--Ids of new rows are allocated by Hibernate in blocks of 50 (pooled optimizer), which lets inserts be batched.
+--The increment must match the allocationSize of the entities. Hibernate uses the ids up to each value it reads from
+--a sequence, so the next block starts right after the last id handed out with increment 1 and nothing is reused.
+ALTER SEQUENCE USERS_ID_SEQ INCREMENT BY 50;
+
+ALTER SEQUENCE USER_AUTH_ID_SEQ INCREMENT BY 50;
+
+ALTER SEQUENCE QUESTION_ID_SEQ INCREMENT BY 50;
+
+ALTER SEQUENCE ANSWER_ID_SEQ INCREMENT BY 50;
@@ -0,0 +1,21 @@
+--Sign outs of stateless tokens, shared by every instance. A row revokes either one session (session_uuid) or every
+--session of a user which signed in at or before revoked_at (user_id). There is no foreign key on user_id, the
+--revocations of a deleted user must outlive its user_auth rows until their tokens expire.
+CREATE TABLE IF NOT EXISTS TOKEN_REVOCATION(
+	ID BIGSERIAL PRIMARY KEY,
+	SESSION_UUID VARCHAR(200) NULL,
+	USER_ID INTEGER NULL,
+	REVOKED_AT TIMESTAMP NOT NULL,
+	EXPIRES_AT TIMESTAMP NOT NULL
+);
+
+ALTER SEQUENCE TOKEN_REVOCATION_ID_SEQ INCREMENT BY 50;
+
+--Used by the periodic refresh of the instances and by the session reaper
+CREATE INDEX IF NOT EXISTS IX_TOKEN_REVOCATION_REVOKED_AT ON TOKEN_REVOCATION(REVOKED_AT);
+CREATE INDEX IF NOT EXISTS IX_TOKEN_REVOCATION_EXPIRES_AT ON TOKEN_REVOCATION(EXPIRES_AT);
+
+--Sessions signed out so far were only recorded in user_auth, sessions copied by a previous run are skipped
+INSERT INTO TOKEN_REVOCATION(SESSION_UUID, REVOKED_AT, EXPIRES_AT)
+	SELECT UUID, LOGOUT_AT, EXPIRES_AT FROM USER_AUTH WHERE LOGOUT_AT IS NOT NULL AND EXPIRES_AT > CURRENT_TIMESTAMP
+	AND NOT EXISTS (SELECT 1 FROM TOKEN_REVOCATION r WHERE r.SESSION_UUID = USER_AUTH.UUID);
@@ -0,0 +1,2 @@
+--Index used by SessionTokenFilter to load the sessions signed in since its previous refresh (requires autocommit).
+CREATE INDEX CONCURRENTLY IF NOT EXISTS IX_USER_AUTH_LOGIN_AT ON USER_AUTH(LOGIN_AT);
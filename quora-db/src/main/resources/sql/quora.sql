@@ -2,6 +2,13 @@
 --USERS table is created to store the details of all the users
 DROP TABLE IF EXISTS USERS CASCADE;
 CREATE TABLE IF NOT EXISTS USERS(id SERIAL, uuid VARCHAR(200) NOT NULL ,firstName VARCHAR(30) NOT NULL , lastName VARCHAR(30) NOT NULL ,userName VARCHAR(30) UNIQUE NOT NULL,  email VARCHAR(50) UNIQUE NOT NULL ,password VARCHAR(255) NOT NULL, salt VARCHAR(200) NOT NULL ,country VARCHAR(30) ,aboutMe VARCHAR(50),dob VARCHAR(30), role VARCHAR(30),contactNumber VARCHAR(30), PRIMARY KEY (id));
+
+--Ids are allocated by Hibernate in blocks of 50 from the sequence (pooled optimizer), so the increment must match the allocationSize of the entity
+ALTER SEQUENCE USERS_ID_SEQ INCREMENT BY 50;
+
+--Public lookups of users by uuid, the uuids are time ordered so new users are appended to the index
+CREATE UNIQUE INDEX UX_USERS_UUID ON USERS(uuid);
+
 INSERT INTO users(
 	id, uuid, firstname, lastname, username, email, password, salt, country, aboutme, dob, role, contactnumber)
 	VALUES (1024,'rdtrdtdyt','Abhi','Mahajan','abhi','a@gmail.com','507FF5FED1CAC746','8Xt6jxoCI3MWsVaKY/1ySAp2qzlb2Z7P89+vDrb1o6U=', 'India' ,'I am @ UpGrad' ,'22-10-1995' , 'admin' , '1222333333' );
@@ -13,18 +20,78 @@ CREATE TABLE IF NOT EXISTS USER_AUTH(
 	uuid VARCHAR(200) NOT NULL,
 	USER_ID INTEGER NOT NULL,
 	ACCESS_TOKEN VARCHAR(500) NOT NULL,
+	ACCESS_TOKEN_DIGEST CHAR(64) NOT NULL,
 	EXPIRES_AT TIMESTAMP NOT NULL,
 	LOGIN_AT TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
 	LOGOUT_AT TIMESTAMP NULL
 );
 
+--Ids are allocated by Hibernate in blocks of 50 from the sequence (pooled optimizer), so the increment must match the allocationSize of the entity
+ALTER SEQUENCE USER_AUTH_ID_SEQ INCREMENT BY 50;
+
 ALTER TABLE USER_AUTH ADD CONSTRAINT FK_USER_AUTH_USER_ID FOREIGN KEY(USER_ID) REFERENCES USERS(ID) ON DELETE CASCADE ;
 
+--Foreign key index, used by the cascade when a user is deleted and by signing out all sessions of a user
+CREATE INDEX IX_USER_AUTH_USER_ID ON USER_AUTH(USER_ID);
+
+--Sessions are looked up by the SHA-256 hex digest of the access token, not by the token itself
+CREATE UNIQUE INDEX UX_USER_AUTH_ACCESS_TOKEN_DIGEST ON USER_AUTH(ACCESS_TOKEN_DIGEST);
+
+--Used by the session reaper to find expired and signed out sessions
+CREATE INDEX IX_USER_AUTH_EXPIRES_AT ON USER_AUTH(EXPIRES_AT);
+CREATE INDEX IX_USER_AUTH_LOGOUT_AT ON USER_AUTH(LOGOUT_AT) WHERE LOGOUT_AT IS NOT NULL;
+
+--Used by SessionTokenFilter to load the sessions signed in since its previous refresh
+CREATE INDEX IX_USER_AUTH_LOGIN_AT ON USER_AUTH(LOGIN_AT);
+
+--TOKEN_REVOCATION table is created to share sign outs of stateless tokens between the instances. A row revokes either
+--one session (session_uuid) or every session of a user which signed in at or before revoked_at (user_id). There is no
+--foreign key on user_id, the revocations of a deleted user must outlive its user_auth rows until their tokens expire
+DROP TABLE IF EXISTS TOKEN_REVOCATION CASCADE;
+CREATE TABLE IF NOT EXISTS TOKEN_REVOCATION(
+	ID BIGSERIAL PRIMARY KEY,
+	SESSION_UUID VARCHAR(200) NULL,
+	USER_ID INTEGER NULL,
+	REVOKED_AT TIMESTAMP NOT NULL,
+	EXPIRES_AT TIMESTAMP NOT NULL
+);
+
+--Ids are allocated by Hibernate in blocks of 50 from the sequence (pooled optimizer), so the increment must match the allocationSize of the entity
+ALTER SEQUENCE TOKEN_REVOCATION_ID_SEQ INCREMENT BY 50;
+
+--Used by the periodic refresh of the instances and by the session reaper
+CREATE INDEX IX_TOKEN_REVOCATION_REVOKED_AT ON TOKEN_REVOCATION(REVOKED_AT);
+CREATE INDEX IX_TOKEN_REVOCATION_EXPIRES_AT ON TOKEN_REVOCATION(EXPIRES_AT);
+
 --QUESTION table is created to store the questions related information posted by any user in the Application
 DROP TABLE IF EXISTS QUESTION CASCADE;
 CREATE TABLE IF NOT EXISTS QUESTION(id SERIAL,uuid VARCHAR(200) NOT NULL, content VARCHAR(500) NOT NULL, date TIMESTAMP NOT NULL , user_id INTEGER NOT NULL, PRIMARY KEY(id), FOREIGN KEY (user_id) REFERENCES USERS(id) ON DELETE CASCADE);
 
+--Ids are allocated by Hibernate in blocks of 50 from the sequence (pooled optimizer), so the increment must match the allocationSize of the entity
+ALTER SEQUENCE QUESTION_ID_SEQ INCREMENT BY 50;
+
+--Public lookups of questions by uuid
+CREATE UNIQUE INDEX UX_QUESTION_UUID ON QUESTION(uuid);
+
+--Keyset pagination of all questions and of the questions of a user, ordered by (date, id).
+--IX_QUESTION_USER_ID_DATE_ID also serves as the index of the user_id foreign key
+CREATE INDEX IX_QUESTION_DATE_ID ON QUESTION(date, id);
+CREATE INDEX IX_QUESTION_USER_ID_DATE_ID ON QUESTION(user_id, date, id);
+
 
 --ANSWER table is created to store the answers related information in reply to any question posted in the Application
 DROP TABLE IF EXISTS ANSWER CASCADE;
 CREATE TABLE IF NOT EXISTS ANSWER(id SERIAL,uuid VARCHAR(200) NOT NULL, ans VARCHAR(255) NOT NULL,date TIMESTAMP NOT NULL , user_id INTEGER NOT NULL, question_id INTEGER NOT NULL , PRIMARY KEY(id), FOREIGN KEY (user_id) REFERENCES USERS(id) ON DELETE CASCADE, FOREIGN KEY (question_id) REFERENCES QUESTION(id) ON DELETE CASCADE);
+
+--Ids are allocated by Hibernate in blocks of 50 from the sequence (pooled optimizer), so the increment must match the allocationSize of the entity
+ALTER SEQUENCE ANSWER_ID_SEQ INCREMENT BY 50;
+
+--Public lookups of answers by uuid
+CREATE UNIQUE INDEX UX_ANSWER_UUID ON ANSWER(uuid);
+
+--Keyset pagination of the answers to a question, ordered by (date, id).
+--IX_ANSWER_QUESTION_ID_DATE_ID also serves as the index of the question_id foreign key
+CREATE INDEX IX_ANSWER_QUESTION_ID_DATE_ID ON ANSWER(question_id, date, id);
+
+--Foreign key index, used by the cascade when a user is deleted
+CREATE INDEX IX_ANSWER_USER_ID ON ANSWER(user_id);
@@ -11,18 +11,34 @@ INSERT INTO users(id, uuid, firstname, lastname, username, email, password, salt
     VALUES (1028,'database_uuid3','database_firstname3','database_lastname3','database_username3','database_email3','database_password3','database_salt3', 'database_country3' ,'database_aboutme3' ,'database_dob3' , 'nonadmin' , 'database_contactnumber3' );
 INSERT INTO users(id, uuid, firstname, lastname, username, email, password, salt, country, aboutme, dob, role, contactnumber)
     VALUES (1029,'database_uuid4','database_firstname4','database_lastname4','database_username4','database_email4','database_password4','database_salt4', 'database_country4' ,'database_aboutme4' ,'database_dob4' , 'nonadmin' , 'database_contactnumber4' );
+--database_username5 signs in with 'database_password5', the hash is in the format used before hashes were versioned
+INSERT INTO users(id, uuid, firstname, lastname, username, email, password, salt, country, aboutme, dob, role, contactnumber)
+    VALUES (1030,'database_uuid5','database_firstname5','database_lastname5','database_username5','database_email5','70D7361F70AA39A6','ZGF0YWJhc2Vfc2FsdDVfbGVnYWN5X2ZpeHR1cmVfMzI=', 'database_country5' ,'database_aboutme5' ,'database_dob5' , 'nonadmin' , 'database_contactnumber5' );
 
 
 --Insert values in USER_AUTH table
-insert into user_auth (id , uuid , user_id , access_token , expires_at , login_at, logout_at) values(1024 , 'database_uuid' , 1025 , 'database_accesstoken' , '2018-09-17 21:07:02.07' , '2018-09-17 13:07:02.07' , null);
-insert into user_auth (id , uuid , user_id , access_token , expires_at , login_at , logout_at) values(1025 , 'database_uuid1' , 1026 , 'database_accesstoken1' , '2018-09-17 21:07:02.07' , '2018-09-17 13:07:02.07' , null );
-insert into user_auth (id , uuid , user_id , access_token , expires_at , login_at , logout_at) values(1026 , 'database_uuid2' , 1027 , 'database_accesstoken2' , '2018-09-17 21:07:02.07' , '2018-09-17 13:07:02.07' , null );
-insert into user_auth (id , uuid , user_id , access_token , expires_at , login_at , logout_at) values(1027 , 'database_uuid3' , 1028 , 'database_accesstoken3' , '2018-09-17 21:07:02.07' , '2018-09-17 13:07:02.07' , '2018-09-17 15:07:02.07' );
+insert into user_auth (id , uuid , user_id , access_token , access_token_digest , expires_at , login_at, logout_at) values(1024 , 'database_uuid' , 1025 , 'database_accesstoken' , encode(sha256('database_accesstoken'::bytea), 'hex') , '2018-09-17 21:07:02.07' , '2018-09-17 13:07:02.07' , null);
+insert into user_auth (id , uuid , user_id , access_token , access_token_digest , expires_at , login_at , logout_at) values(1025 , 'database_uuid1' , 1026 , 'database_accesstoken1' , encode(sha256('database_accesstoken1'::bytea), 'hex') , '2018-09-17 21:07:02.07' , '2018-09-17 13:07:02.07' , null );
+insert into user_auth (id , uuid , user_id , access_token , access_token_digest , expires_at , login_at , logout_at) values(1026 , 'database_uuid2' , 1027 , 'database_accesstoken2' , encode(sha256('database_accesstoken2'::bytea), 'hex') , '2018-09-17 21:07:02.07' , '2018-09-17 13:07:02.07' , null );
+insert into user_auth (id , uuid , user_id , access_token , access_token_digest , expires_at , login_at , logout_at) values(1027 , 'database_uuid3' , 1028 , 'database_accesstoken3' , encode(sha256('database_accesstoken3'::bytea), 'hex') , '2018-09-17 21:07:02.07' , '2018-09-17 13:07:02.07' , '2018-09-17 15:07:02.07' );
+--Still signed in and not yet expired, so it is cached once looked up
+insert into user_auth (id , uuid , user_id , access_token , access_token_digest , expires_at , login_at , logout_at) values(1028 , 'database_uuid4' , 1026 , 'database_accesstoken4' , encode(sha256('database_accesstoken4'::bytea), 'hex') , '2999-12-31 00:00:00.00' , '2018-09-17 13:07:02.07' , null );
 
 
 --Insert values in QUESTION table
 insert into question (id,uuid,content,date,user_id) values(1024,'database_question_uuid','database_question_content','2018-09-17 19:41:19.593',1026);
+--Two questions of database_username2 posted at the same time, paged by id
+insert into question (id,uuid,content,date,user_id) values(1025,'database_question_uuid2','database_question_content2','2018-09-18 10:15:30.123456',1027);
+insert into question (id,uuid,content,date,user_id) values(1026,'database_question_uuid3','database_question_content3','2018-09-18 10:15:30.123456',1027);
 
 
 --Insert values in ANSWER table
 insert into answer(id,uuid,ans,date,user_id,question_id) values (1024,'database_answer_uuid','my_answer','2018-09-17 19:41:19.593',1026,1024);
+insert into answer(id,uuid,ans,date,user_id,question_id) values (1025,'database_answer_uuid2','my_answer2','2018-09-17 19:41:19.593',1027,1024);
+insert into answer(id,uuid,ans,date,user_id,question_id) values (1026,'database_answer_uuid3','my_answer3','2018-09-18 08:00:00.000',1027,1024);
+
+--The records above have explicit ids, move the id sequences past them so new rows do not collide with them
+SELECT setval('users_id_seq', (SELECT max(id) FROM users));
+SELECT setval('user_auth_id_seq', (SELECT max(id) FROM user_auth));
+SELECT setval('question_id_seq', (SELECT max(id) FROM question));
+SELECT setval('answer_id_seq', (SELECT max(id) FROM answer));
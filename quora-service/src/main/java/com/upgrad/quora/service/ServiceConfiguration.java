@@ -1,19 +1,65 @@
 package com.upgrad.quora.service;
 
 
+import com.upgrad.quora.service.dao.ReadOnlyHibernateJpaDialect;
+import org.springframework.beans.factory.BeanInitializationException;
+import org.springframework.beans.factory.config.BeanPostProcessor;
 import org.springframework.boot.autoconfigure.domain.EntityScan;
+import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.ComponentScan;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.orm.jpa.AbstractEntityManagerFactoryBean;
+import org.springframework.scheduling.annotation.EnableScheduling;
+import org.springframework.util.ResourceUtils;
+
+import java.io.FileNotFoundException;
+import java.util.Map;
 
 /**
  * Enabling the component scan and entity scan of classes in the below mentioned
  * "com.upgrad.quora.service" and
  * "com.upgrad.quora.service.entity"
  * packages respectively.
+ * Scheduling is enabled for background jobs such as SessionReaper.
  */
 @Configuration
 @ComponentScan("com.upgrad.quora.service")
 //
 @EntityScan("com.upgrad.quora.service.entity")
+@EnableScheduling
 public class ServiceConfiguration {
+
+    private static final String JCACHE_URI = "hibernate.javax.cache.uri";
+
+    /**
+     * Prepares the entity manager factory before it is initialized:
+     * <ul>
+     * <li>installs ReadOnlyHibernateJpaDialect, the transaction manager takes its dialect from there</li>
+     * <li>resolves a classpath: location of the JCache configuration to a URL, Hibernate 5.2 passes it to Ehcache as
+     * it is and Ehcache only reads URLs</li>
+     * </ul>
+     */
+    @Bean
+    public static BeanPostProcessor entityManagerFactoryPostProcessor() {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessBeforeInitialization(final Object bean, final String beanName) {
+                if (bean instanceof AbstractEntityManagerFactoryBean) {
+                    final AbstractEntityManagerFactoryBean entityManagerFactory = (AbstractEntityManagerFactoryBean) bean;
+                    entityManagerFactory.setJpaDialect(new ReadOnlyHibernateJpaDialect());
+
+                    final Map<String, Object> properties = entityManagerFactory.getJpaPropertyMap();
+                    final Object jcacheUri = properties.get(JCACHE_URI);
+                    if (jcacheUri != null) {
+                        try {
+                            properties.put(JCACHE_URI, ResourceUtils.getURL(jcacheUri.toString()).toString());
+                        } catch (FileNotFoundException e) {
+                            throw new BeanInitializationException("JCache configuration " + jcacheUri + " not found", e);
+                        }
+                    }
+                }
+                return bean;
+            }
+        };
+    }
 }
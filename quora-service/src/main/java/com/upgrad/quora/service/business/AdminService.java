@@ -1,8 +1,10 @@
 package com.upgrad.quora.service.business;
 
+import com.upgrad.quora.service.cache.AnswerListCache;
+import com.upgrad.quora.service.cache.UserSessionRevocations;
 import com.upgrad.quora.service.common.AuthErrorCode;
 import com.upgrad.quora.service.common.UserRole;
-import com.upgrad.quora.service.dao.UserAuthDao;
+import com.upgrad.quora.service.dao.QuestionDao;
 import com.upgrad.quora.service.dao.UserDao;
 import com.upgrad.quora.service.entity.UserAuthEntity;
 import com.upgrad.quora.service.entity.UserEntity;
@@ -19,31 +21,31 @@ import java.time.ZonedDateTime;
 public class AdminService {
 
     @Autowired
-    private UserAuthDao userAuthDao;
+    private UserDao userDao;
 
     @Autowired
-    private UserDao userDao;
+    private QuestionDao questionDao;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private UserSessionRevocations userSessionRevocations;
+
+    @Autowired
+    private StatelessTokenService statelessTokenService;
+
+    @Autowired
+    private AnswerListCache answerListCache;
 
     /**
-     * This method check whether the authoriztion/accessToken exist in database if exist and relevant validation are correct
-     * then it will return UserAuthEntity object else it will throw exception.
+     * This method checks whether the signed in user is an admin, only admins are allowed to delete users.
      *
-     * @param authorization
+     * @param userAuthEntity
      * @return UserAuthEntity
      * @throws AuthorizationFailedException
      */
-    public UserAuthEntity validateUserForDelete(String authorization) throws AuthorizationFailedException {
-        UserAuthEntity userAuthEntity = userAuthDao.getUserAuthByAccessToken(authorization);
-
-        if (userAuthEntity == null)
-            throw new AuthorizationFailedException(AuthErrorCode.ATHR_001.getCode(), AuthErrorCode.ATHR_001.getDefaultMessage());
-
-        ZonedDateTime logoutAt = userAuthEntity.getLogoutAt();
-
-        // if logoutAt is not null then it means user has signed out.
-        if(logoutAt!=null)
-            throw new AuthorizationFailedException(AuthErrorCode.ATHR_002.getCode(), AuthErrorCode.ATHR_002.getDefaultMessage());
-
+    public UserAuthEntity validateUserForDelete(UserAuthEntity userAuthEntity) throws AuthorizationFailedException {
         if (!userAuthEntity.getUserEntity().getRole().equals(UserRole.ADMIN.getName()))
             throw new AuthorizationFailedException(AuthErrorCode.ATHR_003.getCode(), AuthErrorCode.ATHR_003.getDefaultMessage());
         else{
@@ -65,8 +67,40 @@ public class AdminService {
         if (user == null)
             throw new UserNotFoundException(AuthErrorCode.USR_001_DELETED.getCode(), AuthErrorCode.USR_001_DELETED.getDefaultMessage());
 
+        // the questions would be deleted by the cascade as well, deleting them through Hibernate evicts them from the
+        // second-level cache
+        questionDao.deleteQuestionsOfUser(user);
         UserEntity deletedUser = userDao.deleteUser(user);
+        // the answers of the user are deleted by the cascade, wherever they are listed
+        answerListCache.invalidateAll();
+
+        // user_auth rows are deleted by the cascade, cached sessions and stateless tokens of the user must not
+        // outlive them
+        final ZonedDateTime now = ZonedDateTime.now();
+        userSessionRevocations.revokeAll(user.getId(), now);
+        if (statelessTokenService.isEnabled())
+            statelessTokenService.revokeAll(user.getId(), now);
 
         return deletedUser;
     }
+
+    /**
+     * This method signs out every session of the user with given userId if it exist in the database else it will
+     * throw exception.
+     *
+     * @param userId
+     * @return UserEntity
+     * @throws UserNotFoundException
+     */
+    @Transactional(propagation = Propagation.REQUIRED)
+    public UserEntity signOutUser(final String userId) throws UserNotFoundException {
+        UserEntity user = userDao.getUserById(userId);
+
+        if (user == null)
+            throw new UserNotFoundException(AuthErrorCode.USR_001.getCode(), AuthErrorCode.USR_001.getDefaultMessage());
+
+        userService.signOutAllSessions(user);
+
+        return user;
+    }
 }
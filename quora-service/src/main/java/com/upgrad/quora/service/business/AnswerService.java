@@ -1,23 +1,39 @@
 package com.upgrad.quora.service.business;
 
+import com.upgrad.quora.service.cache.AnswerListCache;
 import com.upgrad.quora.service.common.*;
 import com.upgrad.quora.service.dao.AnswerDao;
 import com.upgrad.quora.service.dao.QuestionDao;
-import com.upgrad.quora.service.dao.UserDao;
 import com.upgrad.quora.service.entity.AnswerEntity;
 import com.upgrad.quora.service.entity.QuestionEntity;
 import com.upgrad.quora.service.entity.UserEntity;
 import com.upgrad.quora.service.exception.AnswerNotFoundException;
 import com.upgrad.quora.service.exception.AuthorizationFailedException;
+import com.upgrad.quora.service.exception.InvalidBulkRequestException;
+import com.upgrad.quora.service.exception.InvalidPageRequestException;
 import com.upgrad.quora.service.exception.InvalidQuestionException;
+import com.upgrad.quora.service.projection.AnswerSummary;
+import org.apache.commons.lang3.StringUtils;
+import org.hibernate.exception.ConstraintViolationException;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import javax.validation.ConstraintViolation;
+import javax.validation.Validator;
 import java.time.ZonedDateTime;
+import java.util.Collections;
 import java.util.List;
-import java.util.UUID;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
 
 @Service
 public class AnswerService {
@@ -29,80 +45,252 @@ public class AnswerService {
     private QuestionDao questionDao;
 
     @Autowired
-    private UserDao userDao;
+    private Pagination pagination;
+
+    @Autowired
+    private BulkCreation bulkCreation;
+
+    @Autowired
+    private AnswerListCache answerListCache;
+
+    @Autowired
+    private Validator validator;
+
+    @Value("${quora.export.fetch-size:500}")
+    private int exportFetchSize;
+
+    private final TransactionTemplate readOnlyTransactionTemplate;
+
+    public AnswerService(final PlatformTransactionManager transactionManager) {
+        this.readOnlyTransactionTemplate = new TransactionTemplate(transactionManager);
+        this.readOnlyTransactionTemplate.setReadOnly(true);
+    }
 
     /**
      * This method will accept user input from reqAnswerEntity object and it generated new uuid for answer
      * and store it in object and send to dao for persisting in database and finally return AnswerEntity along with uuid.
      * <p>
-     * This method will throw InvalidQuestionException Exception if question provided by user does not exist in the database
+     * This method will throw InvalidQuestionException Exception if question provided by user does not exist in the database.
+     * A question found in the PublicIdIndex is not loaded, if it was deleted meanwhile by another instance the foreign
+     * key of the insert reports it, it is then evicted from the index and reported the same way.
      *
      * @param reqAnswerEntity
      * @return AnswerEntity
      * @throws InvalidQuestionException
      */
-    @Transactional(propagation = Propagation.REQUIRED)
+    @Transactional(propagation = Propagation.REQUIRED, rollbackFor = InvalidQuestionException.class)
     public AnswerEntity addAnswer(AnswerEntity reqAnswerEntity) throws InvalidQuestionException {
-        // Validate UUID of the question using Question DAO
-        QuestionEntity questionEntity = questionDao.getQuestionById(reqAnswerEntity.getQuestionEntity().getUuid());
+        final String questionId = reqAnswerEntity.getQuestionEntity().getUuid();
+        // Validate UUID of the question using Question DAO, an indexed question is only referenced by its id
+        QuestionEntity questionEntity = questionDao.getQuestionReference(questionId);
         if (questionEntity == null){
             throw new InvalidQuestionException(AnswerCreationErrorCode.QUES_001.getCode(), AnswerCreationErrorCode.QUES_001.getDefaultMessage());
         }
-        reqAnswerEntity.setUuid(UUID.randomUUID().toString());
+        answerListCache.invalidate(questionId);
+        reqAnswerEntity.setUuid(TimeOrderedUuidGenerator.next().toString());
         reqAnswerEntity.setQuestionEntity(questionEntity);
         ZonedDateTime now = ZonedDateTime.now();
         reqAnswerEntity.setDate(now);
-        return answerDao.createAnswer(reqAnswerEntity);
+        try {
+            return answerDao.createAnswer(reqAnswerEntity);
+        } catch (DataIntegrityViolationException e) {
+            if (!isQuestionForeignKeyViolation(e))
+                throw e;
+            questionDao.evictFromIndex(questionId);
+            throw new InvalidQuestionException(AnswerCreationErrorCode.QUES_001.getCode(), AnswerCreationErrorCode.QUES_001.getDefaultMessage());
+        }
     }
 
+    private static boolean isQuestionForeignKeyViolation(final DataIntegrityViolationException exception) {
+        for (Throwable cause = exception; cause != null; cause = cause.getCause()) {
+            if (cause instanceof ConstraintViolationException)
+                return String.valueOf(((ConstraintViolationException) cause).getConstraintName()).toLowerCase().contains("question_id");
+        }
+        return false;
+    }
+
+    /**
+     * This method creates the answers of a bulk request, prepared the same way as for addAnswer. The questions of
+     * all answers are looked up with a single query, except those found in the PublicIdIndex. Answers to a question which does not exist, empty answers
+     * and answers longer than the ans column are rejected one by one, the others are written in chunks.
+     *
+     * @param reqAnswerEntities
+     * @return one result per answer, in request order
+     * @throws InvalidBulkRequestException if there are more answers than allowed in one request
+     */
+    public List<BulkItemResult> addAnswers(final List<AnswerEntity> reqAnswerEntities) throws InvalidBulkRequestException {
+        bulkCreation.checkSize(reqAnswerEntities.size());
+
+        final Set<String> questionIds = reqAnswerEntities.stream()
+                .map(answerEntity -> answerEntity.getQuestionEntity().getUuid())
+                .filter(Objects::nonNull)
+                .collect(Collectors.toSet());
+        final Map<String, QuestionEntity> questions = questionDao.getQuestionReferencesByIds(questionIds);
+
+        final ZonedDateTime now = ZonedDateTime.now();
+        for (AnswerEntity answerEntity : reqAnswerEntities) {
+            answerEntity.setUuid(TimeOrderedUuidGenerator.next().toString());
+            answerEntity.setDate(now);
+            // Unknown questions keep the uuid only entity without id and are rejected below. Questions may be
+            // references which are not loaded, only their id is read
+            answerEntity.setQuestionEntity(questions.getOrDefault(answerEntity.getQuestionEntity().getUuid(), answerEntity.getQuestionEntity()));
+        }
+        final List<BulkItemResult> results = bulkCreation.create(reqAnswerEntities,
+                answerEntity -> answerEntity.getQuestionEntity().getId() == null ? AnswerCreationErrorCode.QUES_001
+                        : StringUtils.isBlank(answerEntity.getAnswer()) ? AnswerCreationErrorCode.ANS_002
+                        : answerEntity.getAnswer().length() > AnswerEntity.ANSWER_MAX_LENGTH ? AnswerCreationErrorCode.ANS_003 : null,
+                AnswerEntity::getUuid,
+                answerDao::createAnswers);
+        // The chunks are committed by now
+        questions.keySet().forEach(answerListCache::invalidate);
+        return results;
+    }
+
+    /**
+     * This method replaces the content of the answer given by its uuid with the one of answerEntity. The answer is
+     * updated by a single statement which also checks that the signed in user is its owner, the answer is only
+     * looked up if nothing was updated, to tell which error applies. An answer of someone else which is in the
+     * PublicIdIndex is refused without a statement. The statement bypasses the Bean Validation of AnswerEntity, the
+     * answer is validated against its constraints beforehand.
+     *
+     * @param answerEntity uuid, new content and signed in user
+     * @return AnswerEntity
+     * @throws AnswerNotFoundException
+     * @throws AuthorizationFailedException
+     */
     @Transactional(propagation = Propagation.REQUIRED)
     public AnswerEntity editAnswer(AnswerEntity answerEntity) throws AnswerNotFoundException, AuthorizationFailedException {
 
-        // Check whether answer for edit content is valid or not
-        AnswerEntity dbAnswerEntity = answerDao.getAnswerById(answerEntity.getUuid());
-        if (dbAnswerEntity == null){
-            throw new AnswerNotFoundException(AnswerEditErrorCode.ANS_001.getCode(), AnswerEditErrorCode.ANS_001.getDefaultMessage());
-        }
+        ZonedDateTime now = ZonedDateTime.now();
 
-        // Enforce the authorization policy for edit answer as only the creator or answer should be able to modiy it
-        UserEntity userEntity = userDao.getUserById(answerEntity.getUserEntity().getUuid());
-        if (!dbAnswerEntity.getUserEntity().getUuid().equals(userEntity.getUuid())){
+        // Only the creator of the answer is able to modify it
+        final Integer ownerId = answerDao.getIndexedOwnerId(answerEntity.getUuid());
+        if (ownerId != null && !ownerId.equals(answerEntity.getUserEntity().getId()))
+            throw new AuthorizationFailedException(AnswerEditErrorCode.ATHR_003.getCode(), AnswerEditErrorCode.ATHR_003.getDefaultMessage());
+        Set<ConstraintViolation<AnswerEntity>> violations = validator.validateValue(AnswerEntity.class, "answer", answerEntity.getAnswer());
+        if (!violations.isEmpty())
+            throw new javax.validation.ConstraintViolationException(violations);
+        if (answerDao.editAnswer(answerEntity.getUuid(), answerEntity.getAnswer(), now, answerEntity.getUserEntity()) == 0) {
+            if (answerDao.getAnswerById(answerEntity.getUuid()) == null)
+                throw new AnswerNotFoundException(AnswerEditErrorCode.ANS_001.getCode(), AnswerEditErrorCode.ANS_001.getDefaultMessage());
             throw new AuthorizationFailedException(AnswerEditErrorCode.ATHR_003.getCode(), AnswerEditErrorCode.ATHR_003.getDefaultMessage());
         }
+        answerListCache.invalidateAnswer(answerEntity.getUuid());
 
-        answerEntity.setQuestionEntity(dbAnswerEntity.getQuestionEntity());
-        answerEntity.setId(dbAnswerEntity.getId());
-        ZonedDateTime now = ZonedDateTime.now();
         answerEntity.setDate(now);
-
-        return answerDao.editAnswer(answerEntity);
+        return answerEntity;
     }
 
+    /**
+     * This method deletes the answer with given uuid. The answer is deleted by a single statement which also checks
+     * that the signed in user is its owner or an admin, the answer is only looked up if nothing was deleted, to tell
+     * which error applies. An answer of someone else which is in the PublicIdIndex is refused without a statement.
+     *
+     * @param answerId
+     * @param userEntity signed in user
+     * @return AnswerEntity with the uuid of the deleted answer
+     * @throws AnswerNotFoundException
+     * @throws AuthorizationFailedException
+     */
     @Transactional(propagation = Propagation.REQUIRED)
     public AnswerEntity deleteAnswer(String answerId, UserEntity userEntity) throws AnswerNotFoundException, AuthorizationFailedException {
 
-        // Check whether answer for edit content is valid or not
-        AnswerEntity dbAnswerEntity = answerDao.getAnswerById(answerId);
+        boolean admin = userEntity.getRole().equals(UserRole.ADMIN.getName());
 
-        if (dbAnswerEntity == null){
-            throw new AnswerNotFoundException(AnswerEditErrorCode.ANS_001.getCode(), AnswerEditErrorCode.ANS_001.getDefaultMessage());
+        // Only the creator of the answer or an admin is able to delete it
+        final Integer ownerId = admin ? null : answerDao.getIndexedOwnerId(answerId);
+        if (ownerId != null && !ownerId.equals(userEntity.getId()))
+            throw new AuthorizationFailedException(AnswerDeleteErrorCode.ATHR_003.getCode(), AnswerDeleteErrorCode.ATHR_003.getDefaultMessage());
+        if (answerDao.deleteAnswer(answerId, userEntity, admin) == 0) {
+            if (answerDao.getAnswerById(answerId) == null)
+                throw new AnswerNotFoundException(AnswerEditErrorCode.ANS_001.getCode(), AnswerEditErrorCode.ANS_001.getDefaultMessage());
+            throw new AuthorizationFailedException(AnswerDeleteErrorCode.ATHR_003.getCode(), AnswerDeleteErrorCode.ATHR_003.getDefaultMessage());
         }
+        answerListCache.invalidateAnswer(answerId);
 
-        // Enforce the authorization policy for edit answer as only the creator or answer should be able to modiy it
-        UserEntity dbUserEntity = userDao.getUserById(dbAnswerEntity.getUserEntity().getUuid());
-        if (!dbAnswerEntity.getUserEntity().getUuid().equals(userEntity.getUuid()) && !userEntity.getRole().equals(UserRole.ADMIN.getName())){
-            throw new AuthorizationFailedException(AnswerDeleteErrorCode.ATHR_003.getCode(), AnswerDeleteErrorCode.ATHR_003.getDefaultMessage());
+        AnswerEntity answerEntity = new AnswerEntity();
+        answerEntity.setUuid(answerId);
+        return answerEntity;
+    }
+
+    /**
+     * This method returns one page of the answers to given question, oldest first.
+     * <p>
+     * The first page is cut from the first answers of the question kept by AnswerListCache, concurrent requests for a
+     * question which is not cached share one load. The method runs outside of a transaction, so requests waiting for
+     * that load hold no connection, the loads and the following pages use read-only transactions of their own.
+     * <p>
+     * This method will throw InvalidQuestionException Exception if the question does not exist in the database
+     *
+     * @param answerEntity question with the uuid set
+     * @param cursor       cursor of the page returned with the previous page, null for the first page
+     * @param pageSize     requested page size, null for the default page size
+     * @param includeTotal whether to estimate the number of answers to the question
+     * @return Page of AnswerSummary
+     * @throws InvalidQuestionException
+     * @throws InvalidPageRequestException
+     */
+    public Page<AnswerSummary> getAllAnswer(QuestionEntity answerEntity, final String cursor, final Integer pageSize, final boolean includeTotal) throws InvalidQuestionException, InvalidPageRequestException {
+        final PageCursor after = PageCursor.decode(cursor);
+        final int limit = pagination.pageSize(pageSize);
+        final String questionId = answerEntity.getUuid();
+
+        List<AnswerSummary> answers;
+        if (after == null) {
+            // Enough answers for the largest page and the row telling whether there is a next one
+            answers = answerListCache.get(questionId, () -> getAnswerSummariesPage(questionId, null, pagination.maxPageSize() + 1));
+            if (answers != null)
+                answers = answers.subList(0, Math.min(answers.size(), limit + 1));
+        } else {
+            answers = getAnswerSummariesPage(questionId, after, limit + 1);
+        }
+        if (answers == null){
+            throw new InvalidQuestionException(AnswerGetAllErrorCode.QUES_001.getCode(), AnswerGetAllErrorCode.QUES_001.getDefaultMessage());
         }
 
-        return answerDao.deleteAnswer(dbAnswerEntity);
+        final Page<AnswerSummary> page = Page.of(answers, limit, answer -> PageCursor.after(answer.getDate(), answer.getId()));
+        if (includeTotal)
+            page.setTotalEstimate(readOnlyTransactionTemplate.execute(status -> {
+                final QuestionEntity questionEntity = questionDao.getQuestionReference(questionId);
+                return questionEntity == null ? null : answerDao.estimateAnswerCountByQuestion(questionEntity);
+            }));
+        return page;
     }
 
-    public List<AnswerEntity> getAllAnswer(QuestionEntity answerEntity) throws InvalidQuestionException {
-        // Validate UUID of the question using Question DAO
+    private List<AnswerSummary> getAnswerSummariesPage(final String questionId, final PageCursor after, final int limit) {
+        return readOnlyTransactionTemplate.execute(status -> {
+            // Validate UUID of the question using Question DAO
+            final QuestionEntity questionEntity = questionDao.getQuestionReference(questionId);
+            if (questionEntity == null)
+                return null;
+            final List<AnswerSummary> answers = answerDao.getAnswerSummariesPageByQuestion(questionEntity, after, limit);
+            // An indexed question deleted by another instance has no answers either, the question is looked up to
+            // tell it from one without answers, and evicted from the index if it is gone
+            if (answers.isEmpty() && questionDao.getQuestionById(questionId) == null)
+                return null;
+            return Collections.unmodifiableList(answers);
+        });
+    }
+
+    /**
+     * This method passes every answer to given question, oldest first, to the given consumer. The answers are read in
+     * chunks of fetch-size rows and must not be kept by the consumer, so memory use does not grow with the number of
+     * answers.
+     * <p>
+     * This method will throw InvalidQuestionException Exception if the question does not exist in the database, before
+     * any answer is passed to the consumer. The question is always looked up, unlike with the PublicIdIndex a question
+     * deleted by another instance is reported this way.
+     *
+     * @param answerEntity question with the uuid set
+     * @param consumer
+     * @throws InvalidQuestionException
+     */
+    @Transactional(propagation = Propagation.REQUIRED, readOnly = true)
+    public void exportAllAnswers(QuestionEntity answerEntity, final Consumer<AnswerSummary> consumer) throws InvalidQuestionException {
         QuestionEntity questionEntity = questionDao.getQuestionById(answerEntity.getUuid());
         if (questionEntity == null){
             throw new InvalidQuestionException(AnswerGetAllErrorCode.QUES_001.getCode(), AnswerGetAllErrorCode.QUES_001.getDefaultMessage());
         }
-        return answerDao.getAnswersByQuestionId(questionEntity);
+        answerDao.forEachAnswerSummaryToQuestion(questionEntity, exportFetchSize, consumer);
     }
 }
@@ -0,0 +1,110 @@
+package com.upgrad.quora.service.business;
+
+import com.upgrad.quora.service.common.BulkItemResult;
+import com.upgrad.quora.service.common.ErrorCode;
+import com.upgrad.quora.service.common.GenericErrorCode;
+import com.upgrad.quora.service.exception.InvalidBulkRequestException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionException;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.PersistenceException;
+import javax.validation.ValidationException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Size limit and chunked writing of the bulk create endpoints, configured under "quora.bulk".
+ * <p>
+ * Items are written chunk-size at a time, each chunk in its own transaction, so a large request neither holds one
+ * long transaction nor keeps all its entities in the persistence context. The inserts of a chunk are sent as JDBC
+ * batches. A chunk which fails is rolled back on its own, the chunks before and after it are still stored.
+ */
+@Component
+public class BulkCreation {
+
+    @Value("${quora.bulk.max-items:5000}")
+    private int maxItems;
+
+    @Value("${quora.bulk.chunk-size:500}")
+    private int chunkSize;
+
+    private final TransactionTemplate transactionTemplate;
+
+    public BulkCreation(final PlatformTransactionManager transactionManager) {
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    /**
+     * Rejects a request with more than max-items items.
+     *
+     * @param items number of items of the request
+     * @throws InvalidBulkRequestException if there are too many items
+     */
+    public void checkSize(final int items) throws InvalidBulkRequestException {
+        if (items > maxItems)
+            throw new InvalidBulkRequestException(GenericErrorCode.GEN_005.getCode(), GenericErrorCode.GEN_005.getDefaultMessage());
+    }
+
+    /**
+     * Stores the items of a bulk request. Items rejected by the given check are reported with its error code, the
+     * others are passed to writeChunk chunk by chunk, each call in its own transaction. Items of a chunk which was
+     * rolled back are reported with GEN-006.
+     *
+     * @param items      items to store, in request order
+     * @param rejection  returns the error code of an item which must not be stored, null for a valid item
+     * @param uuid       returns the uuid of an item, as assigned before writing
+     * @param writeChunk persists one chunk of items
+     * @param <T>        type of the items
+     * @return one result per item, in request order
+     */
+    public <T> List<BulkItemResult> create(final List<T> items, final Function<T, ErrorCode> rejection,
+                                           final Function<T, String> uuid, final Consumer<List<T>> writeChunk) {
+        final BulkItemResult[] results = new BulkItemResult[items.size()];
+        final List<T> accepted = new ArrayList<>(items.size());
+        final List<Integer> acceptedIndexes = new ArrayList<>(items.size());
+        for (int index = 0; index < items.size(); index++) {
+            final ErrorCode error = rejection.apply(items.get(index));
+            if (error != null) {
+                results[index] = BulkItemResult.failed(index, error);
+            } else {
+                accepted.add(items.get(index));
+                acceptedIndexes.add(index);
+            }
+        }
+
+        final BitSet failed = writeInChunks(accepted, writeChunk);
+        for (int i = 0; i < accepted.size(); i++) {
+            final int index = acceptedIndexes.get(i);
+            results[index] = failed.get(i)
+                    ? BulkItemResult.failed(index, GenericErrorCode.GEN_006)
+                    : BulkItemResult.created(index, uuid.apply(accepted.get(i)));
+        }
+        return Arrays.asList(results);
+    }
+
+    private <T> BitSet writeInChunks(final List<T> items, final Consumer<List<T>> writeChunk) {
+        final BitSet failed = new BitSet(items.size());
+        for (int from = 0; from < items.size(); from += chunkSize) {
+            final int to = Math.min(from + chunkSize, items.size());
+            final List<T> chunk = items.subList(from, to);
+            try {
+                transactionTemplate.execute(status -> {
+                    writeChunk.accept(chunk);
+                    return null;
+                });
+            } catch (DataAccessException | TransactionException | PersistenceException | ValidationException e) {
+                // Bean Validation runs at flush, an item the rejection check let through fails its chunk only
+                failed.set(from, to);
+            }
+        }
+        return failed;
+    }
+}
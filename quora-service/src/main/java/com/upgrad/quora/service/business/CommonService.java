@@ -1,5 +1,9 @@
 package com.upgrad.quora.service.business;
 
+import com.upgrad.quora.service.cache.AccessTokenCache;
+import com.upgrad.quora.service.cache.SessionTokenFilter;
+import com.upgrad.quora.service.cache.UnknownTokenCache;
+import com.upgrad.quora.service.common.AccessTokenDigestProvider;
 import com.upgrad.quora.service.common.AuthErrorCode;
 import com.upgrad.quora.service.dao.UserAuthDao;
 import com.upgrad.quora.service.dao.UserDao;
@@ -9,6 +13,9 @@ import com.upgrad.quora.service.exception.AuthorizationFailedException;
 import com.upgrad.quora.service.exception.UserNotFoundException;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.time.ZonedDateTime;
 
@@ -21,11 +28,35 @@ public class CommonService {
     @Autowired
     UserDao userDao;
 
+    @Autowired
+    AccessTokenCache accessTokenCache;
+
+    @Autowired
+    UnknownTokenCache unknownTokenCache;
+
+    @Autowired
+    SessionTokenFilter sessionTokenFilter;
+
+    @Autowired
+    StatelessTokenService statelessTokenService;
+
+    private final TransactionTemplate readOnlyTransactionTemplate;
+
+    public CommonService(final PlatformTransactionManager transactionManager) {
+        this.readOnlyTransactionTemplate = new TransactionTemplate(transactionManager);
+        this.readOnlyTransactionTemplate.setReadOnly(true);
+    }
+
     /**
      * For the given authorization i.e accesstoken, it will query the user_auth table
      * and checks whether its exist or not along with if token is logout or not
      * After these given condition if token is valid then it will return proper UserAuthEntity
      * object else it will throw relevant exception
+     * Signed in sessions are served from AccessTokenCache when present, so repeated calls with the same token
+     * do not reach the database, tokens which matched no session are remembered in UnknownTokenCache and rejected
+     * without a query as well, and so are tokens missing from the SessionTokenFilter of all sessions. When stateless tokens are enabled the token is verified in memory instead.
+     * Only the lookup of a token missing from both caches runs in a read-only transaction, so cache hits do not
+     * take a connection.
      *
      * @param authorization
      * @return UserAuthEntity
@@ -33,10 +64,23 @@ public class CommonService {
      */
     public UserAuthEntity validateUser(String authorization) throws AuthorizationFailedException {
 
-        UserAuthEntity userAuthEntity = userAuthDao.getUserAuthByAccessToken(authorization);
+        if (statelessTokenService.isEnabled())
+            return statelessTokenService.verify(authorization);
+
+        UserAuthEntity userAuthEntity = accessTokenCache.get(authorization);
+        if (userAuthEntity != null)
+            return userAuthEntity;
+
+        final String accessTokenDigest = AccessTokenDigestProvider.digest(authorization);
+        if (unknownTokenCache.contains(accessTokenDigest) || !sessionTokenFilter.mightExist(accessTokenDigest))
+            throw new AuthorizationFailedException(AuthErrorCode.ATHR_001.getCode(), AuthErrorCode.ATHR_001.getDefaultMessage());
+
+        userAuthEntity = readOnlyTransactionTemplate.execute(status -> userAuthDao.getUserAuthByAccessTokenDigest(accessTokenDigest));
 
-        if (userAuthEntity == null)
+        if (userAuthEntity == null) {
+            unknownTokenCache.put(accessTokenDigest);
             throw new AuthorizationFailedException(AuthErrorCode.ATHR_001.getCode(), AuthErrorCode.ATHR_001.getDefaultMessage());
+        }
 
         ZonedDateTime logoutAt = userAuthEntity.getLogoutAt();
 
@@ -45,6 +89,7 @@ public class CommonService {
             throw new AuthorizationFailedException(AuthErrorCode.ATHR_002_RELOGIN_PROMPT.getCode(), AuthErrorCode.ATHR_002_RELOGIN_PROMPT.getDefaultMessage());
         }
         else{
+            accessTokenCache.put(userAuthEntity);
             return userAuthEntity;
         }
     }
@@ -56,6 +101,7 @@ public class CommonService {
      * @return
      * @throws UserNotFoundException
      */
+    @Transactional(readOnly = true)
     public UserEntity getUserByUuid(final String uuid) throws UserNotFoundException {
 
         UserEntity user = userDao.getUserById(uuid);
@@ -1,12 +1,14 @@
 package com.upgrad.quora.service.business;
 
 import com.auth0.jwt.JWT;
+import com.auth0.jwt.JWTVerifier;
 import com.auth0.jwt.algorithms.Algorithm;
+import com.auth0.jwt.exceptions.JWTVerificationException;
+import com.auth0.jwt.interfaces.DecodedJWT;
 import com.upgrad.quora.service.common.GenericErrorCode;
 import com.upgrad.quora.service.common.UnexpectedException;
 
 import java.time.ZonedDateTime;
-import java.time.temporal.ChronoField;
 import java.util.Date;
 import java.util.UUID;
 
@@ -16,17 +18,36 @@ import java.util.UUID;
 public class JwtTokenProvider {
     private static final String TOKEN_ISSUER = "https://quora.io";
 
+    static final String USER_ID_CLAIM = "uid";
+    static final String ROLE_CLAIM = "role";
+    // iat only has whole seconds, sign outs of all sessions are compared against the login time in milliseconds
+    static final String LOGIN_AT_CLAIM = "lat";
+
     private final Algorithm algorithm;
 
+    private final String keyId;
+
+    private final JWTVerifier verifier;
+
     /**
      * A constructor for JwtTokenProvider class which receives user password as an argument to be used in the signature part of JWT access token.
      */
     public JwtTokenProvider(final String secret) {
+        this(secret, null);
+    }
+
+    /**
+     * A constructor for JwtTokenProvider class which receives a server side secret and the id of that secret,
+     * the key id is written in the header of every generated token so the verifying side can pick the same key.
+     */
+    public JwtTokenProvider(final String secret, final String keyId) {
         try {
             algorithm = Algorithm.HMAC512(secret);
         } catch (IllegalArgumentException e) {
             throw new UnexpectedException(GenericErrorCode.GEN_001);
         }
+        this.keyId = keyId;
+        this.verifier = JWT.require(algorithm).withIssuer(TOKEN_ISSUER).build();
     }
 
 
@@ -42,13 +63,50 @@ public class JwtTokenProvider {
      */
     public String generateToken(final String userUuid, final ZonedDateTime issuedDateTime, final ZonedDateTime expiresDateTime) {
 
-        final Date issuedAt = new Date(issuedDateTime.getLong(ChronoField.INSTANT_SECONDS));
-        final Date expiresAt = new Date(expiresDateTime.getLong(ChronoField.INSTANT_SECONDS));
+        final Date issuedAt = Date.from(issuedDateTime.toInstant());
+        final Date expiresAt = Date.from(expiresDateTime.toInstant());
 
         return JWT.create().withIssuer(TOKEN_ISSUER) //
-                .withKeyId(UUID.randomUUID().toString())
+                .withKeyId(keyId != null ? keyId : UUID.randomUUID().toString())
                 .withAudience(userUuid) //
                 .withIssuedAt(issuedAt).withExpiresAt(expiresAt).sign(algorithm);
     }
 
+    /**
+     * Generates a self contained token which carries everything needed to authorize a request without
+     * reading user_auth, i.e. the session uuid (jti), user uuid, user id, role and the login time in milliseconds.
+     *
+     * @param sessionUuid     - uuid of the user_auth row
+     * @param userUuid        - uuid of the user
+     * @param userId          - id of the user
+     * @param role            - role of the user
+     * @param issuedDateTime  - current time
+     * @param expiresDateTime - expiry time of the JWT token
+     * @return - generated JWT token
+     */
+    public String generateToken(final String sessionUuid, final String userUuid, final Integer userId, final String role,
+                                final ZonedDateTime issuedDateTime, final ZonedDateTime expiresDateTime) {
+
+        return JWT.create().withIssuer(TOKEN_ISSUER) //
+                .withKeyId(keyId)
+                .withJWTId(sessionUuid)
+                .withAudience(userUuid) //
+                .withClaim(USER_ID_CLAIM, userId)
+                .withClaim(ROLE_CLAIM, role)
+                .withClaim(LOGIN_AT_CLAIM, issuedDateTime.toInstant().toEpochMilli())
+                .withIssuedAt(Date.from(issuedDateTime.toInstant()))
+                .withExpiresAt(Date.from(expiresDateTime.toInstant())).sign(algorithm);
+    }
+
+    /**
+     * Checks signature, issuer and expiry of the given token.
+     *
+     * @param token - JWT token
+     * @return - decoded JWT token
+     * @throws JWTVerificationException if any of the checks fail
+     */
+    public DecodedJWT verifyToken(final String token) throws JWTVerificationException {
+        return verifier.verify(token);
+    }
+
 }
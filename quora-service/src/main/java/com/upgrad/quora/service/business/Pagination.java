@@ -0,0 +1,39 @@
+package com.upgrad.quora.service.business;
+
+import com.upgrad.quora.service.common.GenericErrorCode;
+import com.upgrad.quora.service.exception.InvalidPageRequestException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Page size limits of the list endpoints, configured under "quora.pagination".
+ */
+@Component
+public class Pagination {
+
+    @Value("${quora.pagination.default-page-size:20}")
+    private int defaultPageSize;
+
+    @Value("${quora.pagination.max-page-size:100}")
+    private int maxPageSize;
+
+    /**
+     * Returns the page size to use for the requested one, the default page size if none was requested and at most
+     * the maximum page size.
+     *
+     * @param requestedPageSize
+     * @return page size
+     * @throws InvalidPageRequestException if the requested page size is not positive
+     */
+    public int pageSize(final Integer requestedPageSize) throws InvalidPageRequestException {
+        if (requestedPageSize == null)
+            return Math.min(defaultPageSize, maxPageSize);
+        if (requestedPageSize < 1)
+            throw new InvalidPageRequestException(GenericErrorCode.GEN_004.getCode(), GenericErrorCode.GEN_004.getDefaultMessage());
+        return Math.min(requestedPageSize, maxPageSize);
+    }
+
+    public int maxPageSize() {
+        return maxPageSize;
+    }
+}
@@ -1,48 +1,168 @@
 package com.upgrad.quora.service.business;
 
 
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.security.SecureRandom;
 import java.security.spec.InvalidKeySpecException;
 import java.util.Base64;
 import java.util.Random;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import javax.crypto.SecretKey;
 import javax.crypto.SecretKeyFactory;
 import javax.crypto.spec.PBEKeySpec;
 
+import com.upgrad.quora.service.common.GenericErrorCode;
+import com.upgrad.quora.service.exception.ServiceUnavailableException;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
 
+/**
+ * Hashes passwords with PBKDF2. The CPU bound hashing runs on a dedicated pool of pool-size threads (the number of
+ * cores by default) with a queue of queue-capacity, so a burst of sign ups and sign ins cannot occupy every request
+ * thread. When the queue is full the request is rejected right away with ServiceUnavailableException.
+ * <p>
+ * Hashes are stored as "$pbkdf2-sha512$i=&lt;iterations&gt;,l=&lt;key length in bits&gt;$&lt;hex hash&gt;" so the cost
+ * can be raised through "quora.auth.hashing.iterations" without invalidating stored passwords. Hashes without the
+ * prefix were written before the format existed and use 1000 iterations and a 64 bit key. See needsRehash.
+ * <p>
+ * Queue depth, active threads and rejections are published under "quora.auth.hashing".
+ */
 @Component
-public class PasswordCryptographyProvider {
+public class PasswordCryptographyProvider implements MeterBinder {
 
     private static String SECRET_KEY_ALGORITHM = "PBKDF2WithHmacSHA512";
-    private static int HASHING_ITERATIONS = 1000;
-    private static int HASHING_KEY_LENGTH = 64;
+    private static String HASH_PREFIX = "$pbkdf2-sha512$";
+    private static int LEGACY_HASHING_ITERATIONS = 1000;
+    private static int LEGACY_HASHING_KEY_LENGTH = 64;
     private final static char[] hexArray = "0123456789ABCDEF".toCharArray();
 
     /**
-     * This method generates Salt and hashed Password
+     * SecretKeyFactory.getInstance goes through the provider lookup on every call, each hashing thread keeps its own.
+     */
+    private static final ThreadLocal<SecretKeyFactory> SECRET_KEY_FACTORY = ThreadLocal.withInitial(() -> {
+        try {
+            return SecretKeyFactory.getInstance(SECRET_KEY_ALGORITHM);
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(e);
+        }
+    });
+
+    @Value("${quora.auth.hashing.iterations:20000}")
+    private int iterations;
+
+    @Value("${quora.auth.hashing.key-length:512}")
+    private int keyLength;
+
+    @Value("${quora.auth.hashing.pool-size:0}")
+    private int poolSize;
+
+    @Value("${quora.auth.hashing.queue-capacity:64}")
+    private int queueCapacity;
+
+    private ThreadPoolExecutor executor;
+
+    private final AtomicLong rejected = new AtomicLong();
+
+    @PostConstruct
+    public void init() {
+        final int threads = poolSize > 0 ? poolSize : Runtime.getRuntime().availableProcessors();
+        executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), new HashingThreadFactory(), new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    /**
+     * This method generates Salt and hashed Password using the configured iterations and key length.
      *
      * @param password char array.
      * @return String array with [0] encoded salt [1] hashed password.
+     * @throws ServiceUnavailableException when the hashing queue is full
      */
-    public String[] encrypt(final String password) {
+    public String[] encrypt(final String password) throws ServiceUnavailableException {
         byte[] salt = generateSaltBytes();
-        byte[] hashedPassword = hashPassword(password.toCharArray(), salt);
-        return new String[]{getBase64EncodedBytesAsString(salt), bytesToHex(hashedPassword)};
+        final int iterations = this.iterations;
+        final int keyLength = this.keyLength;
+        byte[] hashedPassword = submit(() -> hashPassword(password.toCharArray(), salt, iterations, keyLength));
+        return new String[]{getBase64EncodedBytesAsString(salt), formatHash(iterations, keyLength, bytesToHex(hashedPassword))};
     }
 
     /**
-     * This method re-generates hashed Password from raw-password and salt.
-     * This will be used during authentication.
+     * This method re-generates hashed Password from raw-password and salt with the parameters recorded in the
+     * stored hash and compares both. This will be used during authentication.
      *
-     * @param password char array.
-     * @param salt     byte array.
-     * @return byte array of hashed password.
+     * @param password       raw password.
+     * @param salt           encoded salt.
+     * @param storedPassword hashed password as stored in the database.
+     * @return true if the password matches.
+     * @throws ServiceUnavailableException when the hashing queue is full
      */
-    public static String encrypt(final String password, String salt) {
-        return bytesToHex(hashPassword(password.toCharArray(), getBase64DecodedStringAsBytes(salt)));
+    public boolean matches(final String password, final String salt, final String storedPassword) throws ServiceUnavailableException {
+        final StoredHash storedHash = StoredHash.parse(storedPassword);
+        if (storedHash == null)
+            return false;
+
+        final byte[] saltBytes = getBase64DecodedStringAsBytes(salt);
+        final String hash = bytesToHex(submit(() -> hashPassword(password.toCharArray(), saltBytes, storedHash.iterations, storedHash.keyLength)));
+        return MessageDigest.isEqual(hash.getBytes(StandardCharsets.US_ASCII), storedHash.hash.toUpperCase().getBytes(StandardCharsets.US_ASCII));
+    }
+
+    /**
+     * Returns true if given stored hash was not produced with the configured iterations and key length, i.e. the
+     * password should be hashed again the next time it is known in clear text.
+     *
+     * @param storedPassword hashed password as stored in the database.
+     * @return boolean
+     */
+    public boolean needsRehash(final String storedPassword) {
+        final StoredHash storedHash = StoredHash.parse(storedPassword);
+        return storedHash == null || storedHash.iterations != iterations || storedHash.keyLength != keyLength;
+    }
+
+    /**
+     * Runs given hashing task on the hashing pool and waits for its result.
+     */
+    private byte[] submit(final Callable<byte[]> task) throws ServiceUnavailableException {
+        final Future<byte[]> future;
+        try {
+            future = executor.submit(task);
+        } catch (RejectedExecutionException e) {
+            rejected.incrementAndGet();
+            throw new ServiceUnavailableException(GenericErrorCode.GEN_002.getCode(), GenericErrorCode.GEN_002.getDefaultMessage());
+        }
+
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new ServiceUnavailableException(GenericErrorCode.GEN_002.getCode(), GenericErrorCode.GEN_002.getDefaultMessage());
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException)
+                throw (RuntimeException) e.getCause();
+            throw new RuntimeException(e.getCause());
+        }
     }
 
     /**
@@ -58,24 +178,32 @@ public class PasswordCryptographyProvider {
     }
 
     /**
-     * This method generates hashed Password
+     * This method generates hashed Password, it runs on the calling thread and is also used by the hash cost
+     * calibration benchmark.
      *
-     * @param password char array.
-     * @param salt     byte array.
+     * @param password   char array.
+     * @param salt       byte array.
+     * @param iterations PBKDF2 iteration count.
+     * @param keyLength  key length in bits.
      * @return byte array of hashed password.
      */
-    private static byte[] hashPassword(final char[] password, final byte[] salt) {
+    public static byte[] hashPassword(final char[] password, final byte[] salt, final int iterations, final int keyLength) {
         try {
-            SecretKeyFactory skf = SecretKeyFactory.getInstance(SECRET_KEY_ALGORITHM);
-            PBEKeySpec spec = new PBEKeySpec(password, salt, HASHING_ITERATIONS, HASHING_KEY_LENGTH);
+            SecretKeyFactory skf = SECRET_KEY_FACTORY.get();
+            PBEKeySpec spec = new PBEKeySpec(password, salt, iterations, keyLength);
             SecretKey key = skf.generateSecret(spec);
             byte[] res = key.getEncoded();
+            spec.clearPassword();
             return res;
-        } catch (NoSuchAlgorithmException | InvalidKeySpecException e) {
+        } catch (InvalidKeySpecException e) {
             throw new RuntimeException(e);
         }
     }
 
+    private static String formatHash(final int iterations, final int keyLength, final String hash) {
+        return HASH_PREFIX + "i=" + iterations + ",l=" + keyLength + "$" + hash;
+    }
+
     private static String bytesToHex(byte[] bytes) {
         char[] hexChars = new char[bytes.length * 2];
         for (int j = 0; j < bytes.length; j++) {
@@ -93,6 +221,67 @@ public class PasswordCryptographyProvider {
     private static byte[] getBase64DecodedStringAsBytes(String decode) {
         return Base64.getDecoder().decode(decode);
     }
-}
 
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("quora.auth.hashing.queue.size", this, provider -> provider.executor.getQueue().size())
+                .description("Password hashing tasks waiting for a thread").register(registry);
+        Gauge.builder("quora.auth.hashing.active", this, provider -> provider.executor.getActiveCount())
+                .description("Password hashing tasks currently running").register(registry);
+        FunctionCounter.builder("quora.auth.hashing.rejected", rejected, AtomicLong::get)
+                .description("Sign ups and sign ins rejected because the hashing queue was full").register(registry);
+    }
 
+    /**
+     * Parameters and hash read back from the password column.
+     */
+    private static final class StoredHash {
+        private final int iterations;
+        private final int keyLength;
+        private final String hash;
+
+        private StoredHash(int iterations, int keyLength, String hash) {
+            this.iterations = iterations;
+            this.keyLength = keyLength;
+            this.hash = hash;
+        }
+
+        /**
+         * Returns null if the stored value is in the versioned format but cannot be read.
+         */
+        private static StoredHash parse(final String storedPassword) {
+            if (!storedPassword.startsWith(HASH_PREFIX))
+                return new StoredHash(LEGACY_HASHING_ITERATIONS, LEGACY_HASHING_KEY_LENGTH, storedPassword);
+
+            final String[] parts = storedPassword.substring(HASH_PREFIX.length()).split("\\$");
+            if (parts.length != 2)
+                return null;
+            Integer iterations = null;
+            Integer keyLength = null;
+            try {
+                for (String parameter : parts[0].split(",")) {
+                    if (parameter.startsWith("i="))
+                        iterations = Integer.valueOf(parameter.substring(2));
+                    else if (parameter.startsWith("l="))
+                        keyLength = Integer.valueOf(parameter.substring(2));
+                }
+            } catch (NumberFormatException e) {
+                return null;
+            }
+            if (iterations == null || keyLength == null)
+                return null;
+            return new StoredHash(iterations, keyLength, parts[1]);
+        }
+    }
+
+    private static final class HashingThreadFactory implements ThreadFactory {
+        private final AtomicInteger threadNumber = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "password-hashing-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
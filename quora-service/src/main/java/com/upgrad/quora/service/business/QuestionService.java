@@ -1,22 +1,38 @@
 package com.upgrad.quora.service.business;
 
+import com.upgrad.quora.service.cache.AnswerListCache;
+import com.upgrad.quora.service.cache.LatestQuestionsFeed;
 import com.upgrad.quora.service.common.*;
 import com.upgrad.quora.service.dao.QuestionDao;
-import com.upgrad.quora.service.dao.UserAuthDao;
 import com.upgrad.quora.service.dao.UserDao;
 import com.upgrad.quora.service.entity.QuestionEntity;
 import com.upgrad.quora.service.entity.UserAuthEntity;
 import com.upgrad.quora.service.entity.UserEntity;
 import com.upgrad.quora.service.exception.AuthorizationFailedException;
+import com.upgrad.quora.service.exception.InvalidBulkRequestException;
+import com.upgrad.quora.service.exception.InvalidPageRequestException;
 import com.upgrad.quora.service.exception.InvalidQuestionException;
 import com.upgrad.quora.service.exception.UserNotFoundException;
+import com.upgrad.quora.service.projection.QuestionSummary;
+import org.apache.commons.lang3.StringUtils;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.ContextRefreshedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import javax.validation.ConstraintViolation;
+import javax.validation.ConstraintViolationException;
+import javax.validation.Validator;
 import java.time.ZonedDateTime;
 import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
 
 @Service
 public class QuestionService {
@@ -25,7 +41,25 @@ public class QuestionService {
     @Autowired
     private UserDao userDao;
     @Autowired
-    private UserAuthDao userAuthDao;
+    private Pagination pagination;
+    @Autowired
+    private BulkCreation bulkCreation;
+    @Autowired
+    private AnswerListCache answerListCache;
+    @Autowired
+    private LatestQuestionsFeed latestQuestionsFeed;
+    @Autowired
+    private Validator validator;
+
+    @Value("${quora.export.fetch-size:500}")
+    private int exportFetchSize;
+
+    private final TransactionTemplate readOnlyTransactionTemplate;
+
+    public QuestionService(final PlatformTransactionManager transactionManager) {
+        this.readOnlyTransactionTemplate = new TransactionTemplate(transactionManager);
+        this.readOnlyTransactionTemplate.setReadOnly(true);
+    }
 
     /**
      * This method will accept QuestionEntity object
@@ -40,141 +74,177 @@ public class QuestionService {
     }
 
     /**
-     * This method will accept QuestionID object and it returns the uuid of the deleted question
+     * This method creates the questions of a bulk request, prepared the same way as for createQuestion. Questions
+     * without content or with content longer than the content column are rejected one by one, the others are written
+     * in chunks.
      *
-     * @param questionId
-     * @return QuestionEntity
-     * @throws InvalidQuestionException
+     * @param questionEntities
+     * @return one result per question, in request order
+     * @throws InvalidBulkRequestException if there are more questions than allowed in one request
      */
-    @Transactional(propagation = Propagation.REQUIRED)
-    public QuestionEntity deleteQuestion(String questionId, String authorization) throws InvalidQuestionException, AuthorizationFailedException {
-
-        QuestionEntity questionEntity = questionDao.getQuestionById(questionId);
-
-        if (questionEntity != null) {
-            validateUserForDelete(authorization, questionEntity);
-            return questionDao.deleteQuestion(questionEntity);
-        }
-        else{
-            throw new InvalidQuestionException(QuestionDeleteErrorCode.QUES_001_DELETEQUESTION_ACCESS.getCode(), QuestionDeleteErrorCode.QUES_001_DELETEQUESTION_ACCESS.getDefaultMessage());
-        }
-
+    public List<BulkItemResult> createQuestions(final List<QuestionEntity> questionEntities) throws InvalidBulkRequestException {
+        bulkCreation.checkSize(questionEntities.size());
+        return bulkCreation.create(questionEntities,
+                questionEntity -> StringUtils.isBlank(questionEntity.getContent()) ? QuestionCreationErrorCode.QUES_002_EMPTY_CONTENT
+                        : questionEntity.getContent().length() > QuestionEntity.CONTENT_MAX_LENGTH ? QuestionCreationErrorCode.QUES_003_CONTENT_TOO_LONG : null,
+                QuestionEntity::getUuid,
+                questionDao::createQuestions);
     }
 
     /**
-     * This method check whether the authoriztion/accessToken exist in database if exist and
-     * relevant validation are correct
-     * then it will return UserAuthEntity object else it will throw exception.
+     * This method will accept QuestionID object and it returns the uuid of the deleted question. The question is
+     * deleted by a single statement which also checks that the signed in user is its owner or an admin, the question
+     * is only looked up if nothing was deleted, to tell which error applies. A question of someone else which is in
+     * the PublicIdIndex is refused without a statement.
      *
-     * @param authorization
-     * @return UserAuthEntity
+     * @param questionId
+     * @param userAuthEntity
+     * @return QuestionEntity with the uuid of the deleted question
+     * @throws InvalidQuestionException
      * @throws AuthorizationFailedException
      */
-    public UserAuthEntity validateUserForDelete(String authorization, QuestionEntity questionEntity) throws AuthorizationFailedException {
-        UserAuthEntity userAuthEntity = userAuthDao.getUserAuthByAccessToken(authorization);
-
-        if (userAuthEntity == null)
-            throw new AuthorizationFailedException(AuthErrorCode.ATHR_001.getCode(), AuthErrorCode.ATHR_001.getDefaultMessage());
-
-        ZonedDateTime logoutAt = userAuthEntity.getLogoutAt();
-
-        // if logoutAt is not null then it means user has signed out.
-        if (logoutAt != null)
-            throw new AuthorizationFailedException(AuthErrorCode.ATHR_002.getCode(), AuthErrorCode.ATHR_002.getDefaultMessage());
+    @Transactional(propagation = Propagation.REQUIRED)
+    public QuestionEntity deleteQuestion(String questionId, UserAuthEntity userAuthEntity) throws InvalidQuestionException, AuthorizationFailedException {
 
+        UserEntity userEntity = userAuthEntity.getUserEntity();
+        boolean admin = userEntity.getRole().equals(UserRole.ADMIN.getName());
 
-        if (!userAuthEntity.getUserEntity().getRole().equals(UserRole.ADMIN.getName())  && !userAuthEntity.getUserEntity().getUuid().equals(questionEntity.getUserEntity().getUuid()))
+        final Integer ownerId = admin ? null : questionDao.getIndexedOwnerId(questionId);
+        if (ownerId != null && !ownerId.equals(userEntity.getId()))
+            throw new AuthorizationFailedException(QuestionDeleteErrorCode.ATHR_003_DELETEQUESTION_ACCESS.getCode(), QuestionDeleteErrorCode.ATHR_003_DELETEQUESTION_ACCESS.getDefaultMessage());
+        if (questionDao.deleteQuestion(questionId, userEntity, admin) == 0) {
+            if (questionDao.getQuestionById(questionId) == null)
+                throw new InvalidQuestionException(QuestionDeleteErrorCode.QUES_001_DELETEQUESTION_ACCESS.getCode(), QuestionDeleteErrorCode.QUES_001_DELETEQUESTION_ACCESS.getDefaultMessage());
             throw new AuthorizationFailedException(QuestionDeleteErrorCode.ATHR_003_DELETEQUESTION_ACCESS.getCode(), QuestionDeleteErrorCode.ATHR_003_DELETEQUESTION_ACCESS.getDefaultMessage());
-        else {
-            return userAuthEntity;
-        }
-    }
-
-    /**
-     * This method check whether the authoriztion/accessToken exist in database if exist
-     * and relevant validation are correct
-     * then it will return UserAuthEntity object else it will throw exception.
-     *
-     * @param authorization
-     * @return UserAuthEntity
-     * @throws AuthorizationFailedException
-     */
-    public UserAuthEntity validateUserForEdit(String authorization, QuestionEntity questionEntity) throws AuthorizationFailedException {
-        UserAuthEntity userAuthEntity = userAuthDao.getUserAuthByAccessToken(authorization);
-
-        if (userAuthEntity == null)
-            throw new AuthorizationFailedException(AuthErrorCode.ATHR_001.getCode(), AuthErrorCode.ATHR_001.getDefaultMessage());
-
-        ZonedDateTime logoutAt = userAuthEntity.getLogoutAt();
-
-        // if logoutAt is not null then it means user has signed out.
-        if (logoutAt != null) {
-            throw new AuthorizationFailedException(AuthErrorCode.ATHR_002.getCode(), AuthErrorCode.ATHR_002.getDefaultMessage());
         }
+        answerListCache.invalidate(questionId);
 
-        if (!userAuthEntity.getUserEntity().getUuid().equals(questionEntity.getUserEntity().getUuid()))
-            throw new AuthorizationFailedException(QuestionEditErrorCode.ATHR_003_EDITQUESTION_ACCESS.getCode(), QuestionEditErrorCode.ATHR_003_EDITQUESTION_ACCESS.getDefaultMessage());
-        else {
-            return userAuthEntity;
-        }
+        QuestionEntity questionEntity = new QuestionEntity();
+        questionEntity.setUuid(questionId);
+        return questionEntity;
     }
 
-
     /**
      * This method will accept Edited QuestionEntity object
      *  and finally return QuestionEntity along with uuid.
+     * <p>
+     * The content is replaced by a single statement which also checks that the signed in user is the owner of the
+     * question, the question is only looked up if nothing was updated, to tell which error applies. A question of
+     * someone else which is in the PublicIdIndex is refused without a statement. The statement bypasses the Bean
+     * Validation of QuestionEntity, the content is validated against its constraints beforehand.
      *
      * @param questionId
      * @param content
-     * @param authorization
-     * @return QuestionEntity
+     * @param userAuthEntity
+     * @return QuestionEntity with the uuid and the new content of the question
      * @throws InvalidQuestionException
      * @throws AuthorizationFailedException
      */
     @Transactional(propagation = Propagation.REQUIRED)
-    public QuestionEntity editQuestion( String questionId, String content, String authorization) throws InvalidQuestionException, AuthorizationFailedException {
+    public QuestionEntity editQuestion( String questionId, String content, UserAuthEntity userAuthEntity) throws InvalidQuestionException, AuthorizationFailedException {
 
-        QuestionEntity questionEntity = questionDao.getQuestionById(questionId);
-
-        if (questionEntity != null) {
-            validateUserForEdit(authorization, questionEntity);
-            questionEntity.setContent(content);
-            questionEntity.setDate(ZonedDateTime.now());
-            return questionDao.editQuestion(questionEntity);
-        }
-        else{
-            throw new InvalidQuestionException(QuestionEditErrorCode.QUES_001_EDITQUESTION_ACCESS.getCode(), QuestionEditErrorCode.QUES_001_EDITQUESTION_ACCESS.getDefaultMessage());
+        ZonedDateTime now = ZonedDateTime.now();
 
+        final Integer ownerId = questionDao.getIndexedOwnerId(questionId);
+        if (ownerId != null && !ownerId.equals(userAuthEntity.getUserEntity().getId()))
+            throw new AuthorizationFailedException(QuestionEditErrorCode.ATHR_003_EDITQUESTION_ACCESS.getCode(), QuestionEditErrorCode.ATHR_003_EDITQUESTION_ACCESS.getDefaultMessage());
+        Set<ConstraintViolation<QuestionEntity>> violations = validator.validateValue(QuestionEntity.class, "content", content);
+        if (!violations.isEmpty())
+            throw new ConstraintViolationException(violations);
+        if (questionDao.editQuestion(questionId, content, now, userAuthEntity.getUserEntity()) == 0) {
+            if (questionDao.getQuestionById(questionId) == null)
+                throw new InvalidQuestionException(QuestionEditErrorCode.QUES_001_EDITQUESTION_ACCESS.getCode(), QuestionEditErrorCode.QUES_001_EDITQUESTION_ACCESS.getDefaultMessage());
+            throw new AuthorizationFailedException(QuestionEditErrorCode.ATHR_003_EDITQUESTION_ACCESS.getCode(), QuestionEditErrorCode.ATHR_003_EDITQUESTION_ACCESS.getDefaultMessage());
         }
-
+        // The cached answers carry the content of the question
+        answerListCache.invalidate(questionId);
+
+        QuestionEntity questionEntity = new QuestionEntity();
+        questionEntity.setUuid(questionId);
+        questionEntity.setContent(content);
+        questionEntity.setDate(now);
+        questionEntity.setUserEntity(userAuthEntity.getUserEntity());
+        return questionEntity;
     }
     /**
-     * This method will accept QuestionEntity object and it generated new uuid for question
-     * and finally return QuestionEntity along with uuid.
+     * This method returns one page of all questions, newest first. Pages within the LatestQuestionsFeed are served
+     * from memory without a transaction, deeper pages are read in a read-only transaction.
      *
-     * @return questionEntity
+     * @param cursor       cursor of the page returned with the previous page, null for the first page
+     * @param pageSize     requested page size, null for the default page size
+     * @param includeTotal whether to estimate the number of all questions
+     * @return Page of QuestionSummary
+     * @throws InvalidPageRequestException
      */
+    public Page<QuestionSummary> getAllQuestions(final String cursor, final Integer pageSize, final boolean includeTotal) throws InvalidPageRequestException {
+        final PageCursor after = PageCursor.decode(cursor);
+        final int limit = pagination.pageSize(pageSize);
+
+        List<QuestionSummary> questions = latestQuestionsFeed.page(after, limit + 1);
+        if (questions == null)
+            questions = readOnlyTransactionTemplate.execute(status -> questionDao.getQuestionSummariesPage(after, limit + 1));
+        final Page<QuestionSummary> page = Page.of(questions, limit, QuestionService::sortKey);
+        if (includeTotal)
+            page.setTotalEstimate(readOnlyTransactionTemplate.execute(status -> questionDao.estimateQuestionCount()));
+        return page;
+    }
 
-    @Transactional(propagation = Propagation.REQUIRED)
-    public List<QuestionEntity> getAllQuestions() {
-        return questionDao.getAllQuestions();
+    /**
+     * This method loads the newest questions into the LatestQuestionsFeed with a single query, at startup and then
+     * every refresh-interval-ms to pick up questions changed by other instances.
+     */
+    @EventListener(ContextRefreshedEvent.class)
+    @Scheduled(initialDelayString = "${quora.latest-questions.refresh-interval-ms:60000}", fixedDelayString = "${quora.latest-questions.refresh-interval-ms:60000}")
+    public void reloadLatestQuestions() {
+        latestQuestionsFeed.reload(capacity -> readOnlyTransactionTemplate.execute(status -> questionDao.getQuestionSummariesPage(null, capacity)));
     }
+
     /**
-     * This method will accept QuestionEntity object and it generated new uuid for question
-     * and finally return QuestionEntity along with uuid.
+     * This method returns one page of the questions posted by given user, newest first.
      *
-     * @return questionEntity
      * @param userId
+     * @param cursor       cursor of the page returned with the previous page, null for the first page
+     * @param pageSize     requested page size, null for the default page size
+     * @param includeTotal whether to estimate the number of questions posted by the user
+     * @return Page of QuestionSummary
+     * @throws UserNotFoundException
+     * @throws InvalidPageRequestException
      */
+    @Transactional(propagation = Propagation.REQUIRED, readOnly = true)
+    public Page<QuestionSummary> getAllQuestionsByUser(String userId, final String cursor, final Integer pageSize, final boolean includeTotal) throws UserNotFoundException, InvalidPageRequestException {
+        final PageCursor after = PageCursor.decode(cursor);
+        final int limit = pagination.pageSize(pageSize);
 
-    @Transactional(propagation = Propagation.REQUIRED)
-    public List<QuestionEntity> getAllQuestionsByUser(String userId) throws UserNotFoundException {
-        UserEntity userEntity = userDao.getUserById(userId);
+        // Only the id of the user is needed, an indexed user is not loaded
+        UserEntity userEntity = userDao.getUserReference(userId);
         if(userEntity!=null){
-            return questionDao.getAllQuestionsbyUser(userEntity);
+            final List<QuestionSummary> questions = questionDao.getQuestionSummariesPageByUser(userEntity, after, limit + 1);
+            // An indexed user deleted by another instance has no questions either, the user is looked up to tell it
+            // from one without questions, and evicted from the index if it is gone
+            if (questions.isEmpty() && userDao.getUserById(userId) == null)
+                throw new UserNotFoundException(GellAllQuestionByUserErrorCode.USR_001.getCode(), GellAllQuestionByUserErrorCode.USR_001.getDefaultMessage());
+            final Page<QuestionSummary> page = Page.of(questions, limit, QuestionService::sortKey);
+            if (includeTotal)
+                page.setTotalEstimate(questionDao.estimateQuestionCountByUser(userEntity));
+            return page;
         }
         else{
             throw new UserNotFoundException(GellAllQuestionByUserErrorCode.USR_001.getCode(), GellAllQuestionByUserErrorCode.USR_001.getDefaultMessage());
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * This method passes every question, newest first, to the given consumer. The questions are read in chunks of
+     * fetch-size rows and must not be kept by the consumer, so memory use does not grow with the number of questions.
+     *
+     * @param consumer
+     */
+    @Transactional(propagation = Propagation.REQUIRED, readOnly = true)
+    public void exportAllQuestions(final Consumer<QuestionSummary> consumer) {
+        questionDao.forEachQuestionSummary(exportFetchSize, consumer);
+    }
+
+    private static PageCursor sortKey(final QuestionSummary questionSummary) {
+        return PageCursor.after(questionSummary.getDate(), questionSummary.getId());
+    }
+}
@@ -0,0 +1,80 @@
+package com.upgrad.quora.service.business;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Server side signing keys used when stateless token verification is enabled.
+ * <p>
+ * Keys are configured under "quora.auth.stateless.keys" as key id -> secret. New tokens are always signed with
+ * "quora.auth.stateless.active-key-id", older keys stay in the ring so tokens signed before a rotation are still
+ * accepted until they expire. Removing a key from the ring invalidates every token signed with it.
+ */
+@Component
+@ConfigurationProperties(prefix = "quora.auth.stateless")
+public class ServerKeyRing {
+
+    private boolean enabled;
+
+    private String activeKeyId;
+
+    private Map<String, String> keys = new HashMap<>();
+
+    private final Map<String, JwtTokenProvider> providers = new ConcurrentHashMap<>();
+
+    /**
+     * Returns JwtTokenProvider for the active key, used to sign new tokens.
+     *
+     * @return JwtTokenProvider
+     */
+    public JwtTokenProvider getActiveProvider() {
+        JwtTokenProvider provider = getProvider(activeKeyId);
+        if (provider == null)
+            throw new IllegalStateException("Active key '" + activeKeyId + "' is not present in the key ring");
+        return provider;
+    }
+
+    /**
+     * Returns JwtTokenProvider for the given key id or null if the key is not part of the ring.
+     *
+     * @param keyId
+     * @return JwtTokenProvider
+     */
+    public JwtTokenProvider getProvider(final String keyId) {
+        if (keyId == null)
+            return null;
+        String secret = keys.get(keyId);
+        if (secret == null)
+            return null;
+        return providers.computeIfAbsent(keyId, id -> new JwtTokenProvider(secret, id));
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public String getActiveKeyId() {
+        return activeKeyId;
+    }
+
+    public void setActiveKeyId(String activeKeyId) {
+        this.activeKeyId = activeKeyId;
+    }
+
+    public Map<String, String> getKeys() {
+        return keys;
+    }
+
+    public void setKeys(Map<String, String> keys) {
+        this.keys = keys;
+        this.providers.clear();
+    }
+}
@@ -0,0 +1,113 @@
+package com.upgrad.quora.service.business;
+
+import com.upgrad.quora.service.dao.TokenRevocationDao;
+import com.upgrad.quora.service.dao.UserAuthDao;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.composite.CompositeMeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.ZonedDateTime;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntSupplier;
+
+/**
+ * Background job which deletes user_auth rows that can no longer authorize anything, i.e. sessions past their
+ * expiresAt and sessions signed out more than signed-out-retention-minutes ago, and token_revocation rows past their
+ * expiresAt.
+ * <p>
+ * Rows are deleted in batches of batch-size, each batch in its own short transaction followed by a pause of
+ * pause-ms, and a single run stops after max-batches-per-run per table. This caps how many row locks and how much
+ * WAL a run produces at a time.
+ * <p>
+ * Published metrics: "quora.auth.reaper.purged" (rows deleted) and "quora.auth.reaper.batch" (time per batch).
+ */
+@Component
+@ConditionalOnProperty(prefix = "quora.auth.reaper", name = "enabled", havingValue = "true")
+public class SessionReaper implements MeterBinder {
+
+    @Autowired
+    private UserAuthDao userAuthDao;
+
+    @Autowired
+    private TokenRevocationDao tokenRevocationDao;
+
+    @Value("${quora.auth.reaper.batch-size:500}")
+    private int batchSize;
+
+    @Value("${quora.auth.reaper.max-batches-per-run:20}")
+    private int maxBatchesPerRun;
+
+    @Value("${quora.auth.reaper.pause-ms:100}")
+    private long pauseMillis;
+
+    @Value("${quora.auth.reaper.signed-out-retention-minutes:60}")
+    private long signedOutRetentionMinutes;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final CompositeMeterRegistry meterRegistry = new CompositeMeterRegistry();
+
+    private final Counter purged = Counter.builder("quora.auth.reaper.purged")
+            .description("Expired or signed out sessions deleted from user_auth and expired revocations from token_revocation").register(meterRegistry);
+
+    private final Timer batchTimer = Timer.builder("quora.auth.reaper.batch")
+            .description("Time taken to delete one batch of sessions or revocations").register(meterRegistry);
+
+    public SessionReaper(final PlatformTransactionManager transactionManager) {
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    /**
+     * Deletes stale sessions, then expired revocations, batch by batch until a batch comes back short or
+     * max-batches-per-run is reached.
+     *
+     * @return number of deleted rows
+     */
+    @Scheduled(initialDelayString = "${quora.auth.reaper.interval-ms:60000}", fixedDelayString = "${quora.auth.reaper.interval-ms:60000}")
+    public int purge() {
+        final ZonedDateTime now = ZonedDateTime.now();
+        final ZonedDateTime signedOutBefore = now.minusMinutes(signedOutRetentionMinutes);
+
+        return purge(() -> transactionTemplate.execute(status -> userAuthDao.deleteStaleSessions(now, signedOutBefore, batchSize)))
+                + purge(() -> transactionTemplate.execute(status -> tokenRevocationDao.deleteExpiredTokenRevocations(now, batchSize)));
+    }
+
+    private int purge(final IntSupplier deleteBatch) {
+        int total = 0;
+        for (int batch = 0; batch < maxBatchesPerRun; batch++) {
+            final long start = System.nanoTime();
+            final int deleted = deleteBatch.getAsInt();
+            batchTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            purged.increment(deleted);
+            total += deleted;
+
+            if (deleted < batchSize || !pause())
+                break;
+        }
+        return total;
+    }
+
+    private boolean pause() {
+        try {
+            Thread.sleep(pauseMillis);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        meterRegistry.add(registry);
+    }
+}
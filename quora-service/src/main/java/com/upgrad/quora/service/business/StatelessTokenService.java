@@ -0,0 +1,200 @@
+package com.upgrad.quora.service.business;
+
+import com.auth0.jwt.JWT;
+import com.auth0.jwt.exceptions.JWTVerificationException;
+import com.auth0.jwt.interfaces.DecodedJWT;
+import com.upgrad.quora.service.cache.RevokedTokenSet;
+import com.upgrad.quora.service.cache.UserSessionRevocations;
+import com.upgrad.quora.service.common.AuthErrorCode;
+import com.upgrad.quora.service.dao.TokenRevocationDao;
+import com.upgrad.quora.service.entity.TokenRevocationEntity;
+import com.upgrad.quora.service.entity.UserAuthEntity;
+import com.upgrad.quora.service.entity.UserEntity;
+import com.upgrad.quora.service.exception.AuthorizationFailedException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.ContextRefreshedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.List;
+
+/**
+ * Issues and verifies access tokens signed with the server key ring, so that a request can be authorized
+ * without reading user_auth. Only active when "quora.auth.stateless.enabled" is true, otherwise tokens keep
+ * being signed with the user's password hash and looked up in the database.
+ * <p>
+ * Signature, issuer and exp are checked in memory, sign outs are tracked in RevokedTokenSet, sign outs of all
+ * sessions of a user in UserSessionRevocations. Both are written through to token_revocation, which is loaded at
+ * startup and polled every refresh-interval-ms, so a sign out on one instance reaches the others and survives a
+ * restart even when the user_auth rows are gone (deleted users). A poll reads the revocations made since the previous
+ * one minus refresh-overlap-seconds, which covers transactions committing late and clocks of the instances apart.
+ */
+@Service
+public class StatelessTokenService {
+
+    @Autowired
+    private ServerKeyRing serverKeyRing;
+
+    @Autowired
+    private RevokedTokenSet revokedTokenSet;
+
+    @Autowired
+    private UserSessionRevocations userSessionRevocations;
+
+    @Autowired
+    private TokenRevocationDao tokenRevocationDao;
+
+    @Value("${quora.auth.revocation.retention-hours:8}")
+    private long retentionHours;
+
+    @Value("${quora.auth.revocation.refresh-overlap-seconds:60}")
+    private long refreshOverlapSeconds;
+
+    private final TransactionTemplate readOnlyTransactionTemplate;
+
+    private volatile ZonedDateTime refreshedAt;
+
+    public StatelessTokenService(final PlatformTransactionManager transactionManager) {
+        this.readOnlyTransactionTemplate = new TransactionTemplate(transactionManager);
+        this.readOnlyTransactionTemplate.setReadOnly(true);
+    }
+
+    public boolean isEnabled() {
+        return serverKeyRing.isEnabled();
+    }
+
+    /**
+     * Generates token for given session using the active key of the ring.
+     *
+     * @param userAuthEntity
+     * @return access token
+     */
+    public String generateToken(final UserAuthEntity userAuthEntity) {
+        UserEntity userEntity = userAuthEntity.getUserEntity();
+        return serverKeyRing.getActiveProvider().generateToken(userAuthEntity.getUuid(), userEntity.getUuid(),
+                userEntity.getId(), userEntity.getRole(), userAuthEntity.getLoginAt(), userAuthEntity.getExpiresAt());
+    }
+
+    /**
+     * Verifies given token entirely in memory. The returned UserAuthEntity is built from the token claims, its
+     * UserEntity only carries id, uuid and role of the user.
+     *
+     * @param accessToken
+     * @return UserAuthEntity
+     * @throws AuthorizationFailedException
+     */
+    public UserAuthEntity verify(final String accessToken) throws AuthorizationFailedException {
+        DecodedJWT decodedJWT;
+        try {
+            JwtTokenProvider provider = serverKeyRing.getProvider(JWT.decode(accessToken).getKeyId());
+            if (provider == null)
+                throw new AuthorizationFailedException(AuthErrorCode.ATHR_001.getCode(), AuthErrorCode.ATHR_001.getDefaultMessage());
+            decodedJWT = provider.verifyToken(accessToken);
+        } catch (JWTVerificationException e) {
+            throw new AuthorizationFailedException(AuthErrorCode.ATHR_001.getCode(), AuthErrorCode.ATHR_001.getDefaultMessage());
+        }
+
+        if (revokedTokenSet.isRevoked(decodedJWT.getId()))
+            throw new AuthorizationFailedException(AuthErrorCode.ATHR_002_RELOGIN_PROMPT.getCode(), AuthErrorCode.ATHR_002_RELOGIN_PROMPT.getDefaultMessage());
+
+        final Integer userId = decodedJWT.getClaim(JwtTokenProvider.USER_ID_CLAIM).asInt();
+        final ZonedDateTime loginAt = loginAt(decodedJWT);
+        if (userSessionRevocations.isRevoked(userId, loginAt))
+            throw new AuthorizationFailedException(AuthErrorCode.ATHR_002_RELOGIN_PROMPT.getCode(), AuthErrorCode.ATHR_002_RELOGIN_PROMPT.getDefaultMessage());
+
+        UserEntity userEntity = new UserEntity();
+        userEntity.setId(userId);
+        userEntity.setUuid(decodedJWT.getAudience().get(0));
+        userEntity.setRole(decodedJWT.getClaim(JwtTokenProvider.ROLE_CLAIM).asString());
+
+        UserAuthEntity userAuthEntity = new UserAuthEntity();
+        userAuthEntity.setUuid(decodedJWT.getId());
+        userAuthEntity.setUserEntity(userEntity);
+        userAuthEntity.setAccessToken(accessToken);
+        userAuthEntity.setLoginAt(loginAt);
+        userAuthEntity.setExpiresAt(ZonedDateTime.ofInstant(decodedJWT.getExpiresAt().toInstant(), ZoneId.systemDefault()));
+        return userAuthEntity;
+    }
+
+    /**
+     * Returns the login time of the token in milliseconds. Tokens issued without the claim fall back to iat, which
+     * is truncated to whole seconds.
+     */
+    private static ZonedDateTime loginAt(final DecodedJWT decodedJWT) {
+        final Long loginAtMillis = decodedJWT.getClaim(JwtTokenProvider.LOGIN_AT_CLAIM).asLong();
+        final Instant loginAt = loginAtMillis != null ? Instant.ofEpochMilli(loginAtMillis) : decodedJWT.getIssuedAt().toInstant();
+        return ZonedDateTime.ofInstant(loginAt, ZoneId.systemDefault());
+    }
+
+    /**
+     * Records sign out of the given session so its token is rejected from now on, on every instance. Must be called
+     * within the transaction of the sign out.
+     *
+     * @param userAuthEntity
+     */
+    public void revoke(final UserAuthEntity userAuthEntity) {
+        TokenRevocationEntity tokenRevocationEntity = new TokenRevocationEntity();
+        tokenRevocationEntity.setSessionUuid(userAuthEntity.getUuid());
+        tokenRevocationEntity.setRevokedAt(ZonedDateTime.now());
+        tokenRevocationEntity.setExpiresAt(userAuthEntity.getExpiresAt());
+        tokenRevocationDao.createTokenRevocation(tokenRevocationEntity);
+        revokedTokenSet.revoke(userAuthEntity.getUuid(), userAuthEntity.getExpiresAt());
+    }
+
+    /**
+     * Records sign out of every session of the given user which signed in at or before revokedAt, on every instance.
+     * Must be called within the transaction of the sign out or of the deletion of the user.
+     *
+     * @param userId
+     * @param revokedAt
+     */
+    public void revokeAll(final Integer userId, final ZonedDateTime revokedAt) {
+        TokenRevocationEntity tokenRevocationEntity = new TokenRevocationEntity();
+        tokenRevocationEntity.setUserId(userId);
+        tokenRevocationEntity.setRevokedAt(revokedAt);
+        tokenRevocationEntity.setExpiresAt(revokedAt.plusHours(retentionHours));
+        tokenRevocationDao.createTokenRevocation(tokenRevocationEntity);
+        userSessionRevocations.revokeAll(userId, revokedAt);
+    }
+
+    /**
+     * Loads the revocations which have not expired yet, made before this instance started.
+     */
+    @EventListener(ContextRefreshedEvent.class)
+    public void loadRevokedTokens() {
+        if (!isEnabled())
+            return;
+        final ZonedDateTime now = ZonedDateTime.now();
+        apply(readOnlyTransactionTemplate.execute(status -> tokenRevocationDao.getLiveTokenRevocations(now)));
+        refreshedAt = now;
+    }
+
+    /**
+     * Loads the revocations made by other instances since the previous refresh.
+     */
+    @Scheduled(initialDelayString = "${quora.auth.revocation.refresh-interval-ms:5000}", fixedDelayString = "${quora.auth.revocation.refresh-interval-ms:5000}")
+    public void refreshRevokedTokens() {
+        if (!isEnabled() || refreshedAt == null)
+            return;
+        final ZonedDateTime now = ZonedDateTime.now();
+        final ZonedDateTime since = refreshedAt.minusSeconds(refreshOverlapSeconds);
+        apply(readOnlyTransactionTemplate.execute(status -> tokenRevocationDao.getTokenRevocationsSince(since, now)));
+        refreshedAt = now;
+    }
+
+    private void apply(final List<TokenRevocationEntity> tokenRevocations) {
+        for (TokenRevocationEntity tokenRevocation : tokenRevocations) {
+            if (tokenRevocation.getSessionUuid() != null)
+                revokedTokenSet.revoke(tokenRevocation.getSessionUuid(), tokenRevocation.getExpiresAt());
+            else
+                userSessionRevocations.revokeAll(tokenRevocation.getUserId(), tokenRevocation.getRevokedAt());
+        }
+    }
+}
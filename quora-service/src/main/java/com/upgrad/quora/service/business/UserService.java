@@ -1,22 +1,34 @@
 package com.upgrad.quora.service.business;
 
+import com.upgrad.quora.service.cache.AccessTokenCache;
+import com.upgrad.quora.service.cache.SessionTokenFilter;
+import com.upgrad.quora.service.cache.UnknownTokenCache;
+import com.upgrad.quora.service.cache.UserAvailabilityFilter;
+import com.upgrad.quora.service.cache.UserSessionRevocations;
+import com.upgrad.quora.service.common.AccessTokenDigestProvider;
 import com.upgrad.quora.service.common.SigninErrorCode;
 import com.upgrad.quora.service.common.SignoutErrorCode;
 import com.upgrad.quora.service.common.SignupErrorCode;
+import com.upgrad.quora.service.common.TimeOrderedUuidGenerator;
 import com.upgrad.quora.service.dao.UserAuthDao;
 import com.upgrad.quora.service.dao.UserDao;
 import com.upgrad.quora.service.entity.UserAuthEntity;
 import com.upgrad.quora.service.entity.UserEntity;
 import com.upgrad.quora.service.exception.AuthenticationFailedException;
+import com.upgrad.quora.service.exception.ServiceUnavailableException;
 import com.upgrad.quora.service.exception.SignOutRestrictedException;
 import com.upgrad.quora.service.exception.SignUpRestrictedException;
+import org.hibernate.exception.ConstraintViolationException;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.time.ZonedDateTime;
-import java.util.UUID;
+import java.util.List;
 
 @Service
 public class UserService {
@@ -30,33 +42,100 @@ public class UserService {
     @Autowired
     private PasswordCryptographyProvider passwordCryptographyProvider;
 
+    @Autowired
+    private AccessTokenCache accessTokenCache;
+
+    @Autowired
+    private StatelessTokenService statelessTokenService;
+
+    @Autowired
+    private UnknownTokenCache unknownTokenCache;
+
+    @Autowired
+    private SessionTokenFilter sessionTokenFilter;
+
+    @Autowired
+    private UserSessionRevocations userSessionRevocations;
+
+    @Autowired
+    private UserAvailabilityFilter userAvailabilityFilter;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final TransactionTemplate readOnlyTransactionTemplate;
+
+    public UserService(final PlatformTransactionManager transactionManager) {
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.readOnlyTransactionTemplate = new TransactionTemplate(transactionManager);
+        this.readOnlyTransactionTemplate.setReadOnly(true);
+    }
+
     /**
      * This method will accept user input from reqUserEntity object and it generated new uuid for user
      * and encrypt the password using PasswordCryptographyProvider and store it in object and send to
      * dao for persisting in database and finally return UserEntity along with uuid.
      * <p>
      * This method will throw SignUpRestrictedException Exception if username or emailid provided by user
-     * already exist in the database
+     * already exist in the database. Both are checked with a single query, a concurrent sign up which takes the
+     * same username or email after that check is caught by the unique constraints and reported the same way.
+     * <p>
+     * The check and the insert run in transactions of their own, the password is hashed between them, so a request
+     * waiting for the hashing pool holds no connection.
      *
      * @param reqUserEntity
      * @return UserEntity
      * @throws SignUpRestrictedException
+     * @throws ServiceUnavailableException
      */
-    @Transactional(propagation = Propagation.REQUIRED)
-    public UserEntity signUp(UserEntity reqUserEntity) throws SignUpRestrictedException {
+    public UserEntity signUp(UserEntity reqUserEntity) throws SignUpRestrictedException, ServiceUnavailableException {
+
+        List<UserEntity> existingUsers = readOnlyTransactionTemplate.execute(status ->
+                userDao.getUsersByUserNameOrEmail(reqUserEntity.getUserName(), reqUserEntity.getEmail()));
 
-        if (isUserNameExist(reqUserEntity.getUserName()))
+        // username conflicts are reported first, like before
+        if (existingUsers.stream().anyMatch(existingUser -> existingUser.getUserName().equals(reqUserEntity.getUserName())))
             throw new SignUpRestrictedException(SignupErrorCode.SGR_001.getCode(), SignupErrorCode.SGR_001.getDefaultMessage());
 
-        if (isEmailExist(reqUserEntity.getEmail()))
+        if (!existingUsers.isEmpty())
             throw new SignUpRestrictedException(SignupErrorCode.SGR_002.getCode(), SignupErrorCode.SGR_002.getDefaultMessage());
 
-        reqUserEntity.setUuid(UUID.randomUUID().toString());
+        reqUserEntity.setUuid(TimeOrderedUuidGenerator.next().toString());
         String[] encryptedText = passwordCryptographyProvider.encrypt(reqUserEntity.getPassword());
         reqUserEntity.setSalt(encryptedText[0]);
         reqUserEntity.setPassword(encryptedText[1]);
 
-        return userDao.createUser(reqUserEntity);
+        UserEntity userEntity;
+        try {
+            userEntity = transactionTemplate.execute(status -> userDao.createUser(reqUserEntity));
+        } catch (DataIntegrityViolationException e) {
+            throw toSignUpRestrictedException(e);
+        }
+        userAvailabilityFilter.put(userEntity.getUserName(), userEntity.getEmail());
+        return userEntity;
+    }
+
+    /**
+     * Check whether the given userName can still be used to sign up. Names the availability filter has never
+     * seen are answered without a query.
+     *
+     * @param userName
+     * @return boolean
+     */
+    @Transactional(readOnly = true)
+    public boolean isUserNameAvailable(final String userName) {
+        return !userAvailabilityFilter.mightBeTakenUserName(userName) || !isUserNameExist(userName);
+    }
+
+    /**
+     * Check whether the given email can still be used to sign up. Emails the availability filter has never
+     * seen are answered without a query.
+     *
+     * @param email
+     * @return boolean
+     */
+    @Transactional(readOnly = true)
+    public boolean isEmailAvailable(final String email) {
+        return !userAvailabilityFilter.mightBeTakenEmail(email) || !isEmailExist(email);
     }
 
     /**
@@ -83,48 +162,89 @@ public class UserService {
         return value;
     }
 
+    /**
+     * Maps a unique constraint violation on users.username or users.email to the matching sign up error.
+     */
+    private SignUpRestrictedException toSignUpRestrictedException(final DataIntegrityViolationException exception) {
+        for (Throwable cause = exception; cause != null; cause = cause.getCause()) {
+            if (cause instanceof ConstraintViolationException) {
+                String constraintName = String.valueOf(((ConstraintViolationException) cause).getConstraintName()).toLowerCase();
+                if (constraintName.contains("username"))
+                    return new SignUpRestrictedException(SignupErrorCode.SGR_001.getCode(), SignupErrorCode.SGR_001.getDefaultMessage());
+                if (constraintName.contains("email"))
+                    return new SignUpRestrictedException(SignupErrorCode.SGR_002.getCode(), SignupErrorCode.SGR_002.getDefaultMessage());
+            }
+        }
+        throw exception;
+    }
+
     /**
      * This method encrypt the user provided password and compare that password with already existing encrypted password
      * in the database, then it will generate a token with the help of JwtTokenProvider and create UserAuthEntity
      * object save take along with other details in the user_auth table in database.
+     * When stateless tokens are enabled the token is signed with the server key ring instead of the password.
+     * A password stored with outdated hashing parameters is hashed again with the current ones.
+     * <p>
+     * The user is read in a read-only transaction and the password is checked outside of any transaction, only the
+     * session insert and a rehashed password are written in a short transaction of their own. So a request waiting
+     * for the hashing pool holds no connection.
      *
      * @param username
      * @param password
      * @return UserAuthEntity
      * @throws AuthenticationFailedException
+     * @throws ServiceUnavailableException
      */
-    @Transactional(propagation = Propagation.REQUIRED)
-    public UserAuthEntity signIn(final String username, final String password) throws AuthenticationFailedException {
+    public UserAuthEntity signIn(final String username, final String password) throws AuthenticationFailedException, ServiceUnavailableException {
 
-        UserEntity userEntity = userDao.getUserByUserName(username);
+        final UserEntity userEntity = readOnlyTransactionTemplate.execute(status -> userDao.getUserByUserName(username));
 
         if (userEntity == null)
             throw new AuthenticationFailedException(SigninErrorCode.ATH_001.getCode(), SigninErrorCode.ATH_001.getDefaultMessage());
 
-        final String encryptedPassword = PasswordCryptographyProvider.encrypt(password, userEntity.getSalt());
-
-        if (!userEntity.getPassword().equals(encryptedPassword))
+        if (!passwordCryptographyProvider.matches(password, userEntity.getSalt(), userEntity.getPassword()))
             throw new AuthenticationFailedException(SigninErrorCode.ATH_002.getCode(), SigninErrorCode.ATH_002.getDefaultMessage());
 
-        JwtTokenProvider jwtTokenProvider = new JwtTokenProvider(encryptedPassword);
+        // Password hashed with outdated iterations or key length, store it again with the current ones
+        final boolean rehashed = passwordCryptographyProvider.needsRehash(userEntity.getPassword());
+        if (rehashed) {
+            String[] encryptedText = passwordCryptographyProvider.encrypt(password);
+            userEntity.setSalt(encryptedText[0]);
+            userEntity.setPassword(encryptedText[1]);
+        }
+
         UserAuthEntity userAuthEntity = new UserAuthEntity();
 
-        userAuthEntity.setUuid(UUID.randomUUID().toString());
+        userAuthEntity.setUuid(TimeOrderedUuidGenerator.next().toString());
         userAuthEntity.setUserEntity(userEntity);
         final ZonedDateTime now = ZonedDateTime.now();
         final ZonedDateTime expiresAt = now.plusHours(8);
-        userAuthEntity.setAccessToken(jwtTokenProvider.generateToken(userEntity.getUuid(), now, expiresAt));
         userAuthEntity.setLoginAt(now);
         userAuthEntity.setExpiresAt(expiresAt);
 
-        userAuthDao.createUserAuth(userAuthEntity);
+        if (statelessTokenService.isEnabled()) {
+            userAuthEntity.setAccessToken(statelessTokenService.generateToken(userAuthEntity));
+        } else {
+            JwtTokenProvider jwtTokenProvider = new JwtTokenProvider(userEntity.getPassword());
+            userAuthEntity.setAccessToken(jwtTokenProvider.generateToken(userEntity.getUuid(), now, expiresAt));
+        }
+        userAuthEntity.setAccessTokenDigest(AccessTokenDigestProvider.digest(userAuthEntity.getAccessToken()));
+        unknownTokenCache.invalidate(userAuthEntity.getAccessTokenDigest());
+        sessionTokenFilter.put(userAuthEntity.getAccessTokenDigest());
+
+        transactionTemplate.execute(status -> {
+            if (rehashed)
+                userAuthEntity.setUserEntity(userDao.updateUser(userEntity));
+            return userAuthDao.createUserAuth(userAuthEntity);
+        });
 
         return userAuthEntity;
     }
 
     /**
      * This method initially verfies the token by searching for it in database if found, it will invalidate the token
-     * by setting logoutAt DateTime. If related UserAuthEntity object not found in database then it will throw exception
+     * by setting logoutAt DateTime and evict it from AccessTokenCache. If related UserAuthEntity object not found in
+     * database then it will throw exception
      *
      * @param accessToken
      * @return UserEntity
@@ -139,7 +259,29 @@ public class UserService {
 
         userAuth.setLogoutAt(ZonedDateTime.now());
         userAuthDao.updateUserAuth(userAuth);
+        accessTokenCache.invalidate(accessToken);
+        if (statelessTokenService.isEnabled())
+            statelessTokenService.revoke(userAuth);
 
         return userAuth.getUserEntity();
     }
+
+    /**
+     * This method signs out every session of the given user at once, e.g. when the account is compromised. All
+     * user_auth rows are updated with one statement and in-memory copies of the sessions (AccessTokenCache,
+     * stateless tokens) are revoked through UserSessionRevocations, so the cost does not depend on the number of
+     * sessions. Stateless tokens are also revoked on the other instances through token_revocation.
+     *
+     * @param userEntity
+     * @return number of sessions signed out
+     */
+    @Transactional(propagation = Propagation.REQUIRED)
+    public int signOutAllSessions(final UserEntity userEntity) {
+        final ZonedDateTime now = ZonedDateTime.now();
+        final int signedOut = userAuthDao.signOutAllSessions(userEntity.getId(), now);
+        userSessionRevocations.revokeAll(userEntity.getId(), now);
+        if (statelessTokenService.isEnabled())
+            statelessTokenService.revokeAll(userEntity.getId(), now);
+        return signedOut;
+    }
 }
@@ -0,0 +1,160 @@
+package com.upgrad.quora.service.cache;
+
+import com.upgrad.quora.service.entity.UserAuthEntity;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.ZonedDateTime;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-process cache of accessToken -> signed in UserAuthEntity, used by CommonService.validateUser to avoid a
+ * user_auth lookup on every authenticated request.
+ * <p>
+ * The cache is bounded by size (least recently used entries are evicted first) and every entry lives at most
+ * ttl-seconds, capped at the expiresAt of the session itself. Only signed in sessions are cached, a sign out
+ * must invalidate the token, signing out all sessions of a user is picked up through UserSessionRevocations.
+ * Hit, miss and eviction counters are published under "quora.auth.token.cache".
+ */
+@Component
+public class AccessTokenCache implements MeterBinder {
+
+    @Autowired
+    private UserSessionRevocations userSessionRevocations;
+
+    @Value("${quora.auth.token-cache.max-size:10000}")
+    private int maxSize;
+
+    @Value("${quora.auth.token-cache.ttl-seconds:300}")
+    private long ttlSeconds;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    private final Map<String, CachedSession> sessions = new LinkedHashMap<String, CachedSession>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, CachedSession> eldest) {
+            if (size() > maxSize) {
+                evictions.incrementAndGet();
+                return true;
+            }
+            return false;
+        }
+    };
+
+    /**
+     * Returns the cached session for given access token or null if it is not cached or its entry has expired.
+     *
+     * @param accessToken
+     * @return UserAuthEntity
+     */
+    public UserAuthEntity get(final String accessToken) {
+        final long now = System.currentTimeMillis();
+        synchronized (sessions) {
+            CachedSession cachedSession = sessions.get(accessToken);
+            if (cachedSession == null) {
+                misses.incrementAndGet();
+                return null;
+            }
+            if (cachedSession.expiresAtMillis <= now || isRevoked(cachedSession.userAuthEntity)) {
+                sessions.remove(accessToken);
+                evictions.incrementAndGet();
+                misses.incrementAndGet();
+                return null;
+            }
+            hits.incrementAndGet();
+            return cachedSession.userAuthEntity;
+        }
+    }
+
+    /**
+     * Caches the given session if it is still signed in and not yet expired.
+     *
+     * @param userAuthEntity
+     */
+    public void put(final UserAuthEntity userAuthEntity) {
+        if (maxSize <= 0 || userAuthEntity.getLogoutAt() != null)
+            return;
+
+        final long now = System.currentTimeMillis();
+        long expiresAtMillis = now + TimeUnit.SECONDS.toMillis(ttlSeconds);
+        ZonedDateTime sessionExpiresAt = userAuthEntity.getExpiresAt();
+        if (sessionExpiresAt != null)
+            expiresAtMillis = Math.min(expiresAtMillis, sessionExpiresAt.toInstant().toEpochMilli());
+
+        if (expiresAtMillis <= now)
+            return;
+
+        synchronized (sessions) {
+            sessions.put(userAuthEntity.getAccessToken(), new CachedSession(userAuthEntity, expiresAtMillis));
+        }
+    }
+
+    /**
+     * Removes given access token from the cache, called whenever the session is signed out.
+     * When called inside a transaction the token is removed again after completion, so a concurrent request
+     * cannot re-cache the row as it was before the sign out committed.
+     *
+     * @param accessToken
+     */
+    public void invalidate(final String accessToken) {
+        remove(accessToken);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+                @Override
+                public void afterCompletion(int status) {
+                    remove(accessToken);
+                }
+            });
+        }
+    }
+
+    private boolean isRevoked(final UserAuthEntity userAuthEntity) {
+        return userSessionRevocations.isRevoked(userAuthEntity.getUserEntity().getId(), userAuthEntity.getLoginAt());
+    }
+
+    private void remove(final String accessToken) {
+        synchronized (sessions) {
+            sessions.remove(accessToken);
+        }
+    }
+
+    public int size() {
+        synchronized (sessions) {
+            return sessions.size();
+        }
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("quora.auth.token.cache.hits", hits, AtomicLong::get)
+                .description("Access token lookups served from the cache").register(registry);
+        FunctionCounter.builder("quora.auth.token.cache.misses", misses, AtomicLong::get)
+                .description("Access token lookups that went to the database").register(registry);
+        FunctionCounter.builder("quora.auth.token.cache.evictions", evictions, AtomicLong::get)
+                .description("Entries evicted because of size or ttl").register(registry);
+        Gauge.builder("quora.auth.token.cache.size", this, AccessTokenCache::size)
+                .description("Number of cached sessions").register(registry);
+    }
+
+    private static final class CachedSession {
+        private final UserAuthEntity userAuthEntity;
+        private final long expiresAtMillis;
+
+        private CachedSession(UserAuthEntity userAuthEntity, long expiresAtMillis) {
+            this.userAuthEntity = userAuthEntity;
+            this.expiresAtMillis = expiresAtMillis;
+        }
+    }
+}
@@ -0,0 +1,205 @@
+package com.upgrad.quora.service.cache;
+
+import com.upgrad.quora.service.projection.AnswerSummary;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * In-process cache of the first answers of a question, by question uuid, used by AnswerService.getAllAnswer to serve
+ * the first page of /answer/all/{questionId} which every client of a popular question polls.
+ * <p>
+ * Concurrent misses of the same question are coalesced: the first request loads the answers, the others wait for its
+ * result instead of querying themselves, also when an entry expires. Entries live ttl-seconds, at most max-questions
+ * are kept (least recently used are evicted first). A question which does not exist is cached as well, as null.
+ * <p>
+ * Adding answers, editing or deleting a question and deleting a user invalidate the question, editing or deleting an
+ * answer invalidates the question it is listed under. When called inside a transaction the entries are invalidated
+ * again after completion, so a load which read the rows before the change committed is not kept. Hits, misses and
+ * coalesced requests are published under "quora.answer.list.cache".
+ */
+@Component
+public class AnswerListCache implements MeterBinder {
+
+    @Value("${quora.answer-list-cache.max-questions:200}")
+    private int maxQuestions;
+
+    @Value("${quora.answer-list-cache.ttl-seconds:10}")
+    private long ttlSeconds;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong();
+
+    private final Map<String, CachedAnswers> questions = new LinkedHashMap<String, CachedAnswers>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, CachedAnswers> eldest) {
+            return size() > maxQuestions;
+        }
+    };
+
+    /**
+     * Returns the cached answers of given question. On a miss they are read by the loader in the calling thread,
+     * requests for the same question arriving meanwhile wait for that load. The loader should not run inside the
+     * transaction of the caller, waiting requests would hold their connections.
+     *
+     * @param questionId
+     * @param loader     reads the answers, returns null if the question does not exist
+     * @return List of AnswerSummary, null if the question does not exist
+     */
+    public List<AnswerSummary> get(final String questionId, final Supplier<List<AnswerSummary>> loader) {
+        if (maxQuestions <= 0)
+            return loader.get();
+
+        final long now = System.currentTimeMillis();
+        final CachedAnswers cachedAnswers;
+        boolean load = false;
+        synchronized (questions) {
+            CachedAnswers current = questions.get(questionId);
+            if (current == null || current.expiresAtMillis <= now) {
+                current = new CachedAnswers();
+                questions.put(questionId, current);
+                load = true;
+                misses.incrementAndGet();
+            } else if (current.answers.isDone()) {
+                hits.incrementAndGet();
+            } else {
+                coalesced.incrementAndGet();
+            }
+            cachedAnswers = current;
+        }
+
+        if (load) {
+            try {
+                final List<AnswerSummary> answers = loader.get();
+                cachedAnswers.expiresAtMillis = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(ttlSeconds);
+                cachedAnswers.answers.complete(answers);
+            } catch (RuntimeException e) {
+                removeIf(questionId, cachedAnswers);
+                cachedAnswers.answers.completeExceptionally(e);
+                throw e;
+            }
+        }
+
+        try {
+            return cachedAnswers.answers.join();
+        } catch (CompletionException e) {
+            // The waiting requests fail like the one which loaded
+            throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : e;
+        }
+    }
+
+    /**
+     * Invalidates the answers of given question, called whenever answers are added to it or the question changes.
+     *
+     * @param questionId
+     */
+    public void invalidate(final String questionId) {
+        invalidate(cachedAnswers -> false, questionId);
+    }
+
+    /**
+     * Invalidates the question which lists the given answer, called whenever the answer changes. An answer which is
+     * in no cached list does not affect them: the lists hold the oldest answers and an edited answer moves to the end.
+     * Lists which are still loading are invalidated as well.
+     *
+     * @param answerId
+     */
+    public void invalidateAnswer(final String answerId) {
+        invalidate(cachedAnswers -> cachedAnswers.mightContain(answerId), null);
+    }
+
+    /**
+     * Invalidates every question, called when a user is deleted together with its answers.
+     */
+    public void invalidateAll() {
+        invalidate(cachedAnswers -> true, null);
+    }
+
+    private void invalidate(final Predicate<CachedAnswers> stale, final String questionId) {
+        remove(stale, questionId);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+                @Override
+                public void afterCompletion(int status) {
+                    remove(stale, questionId);
+                }
+            });
+        }
+    }
+
+    private void remove(final Predicate<CachedAnswers> stale, final String questionId) {
+        synchronized (questions) {
+            if (questionId != null) {
+                questions.remove(questionId);
+                return;
+            }
+            final Iterator<CachedAnswers> iterator = questions.values().iterator();
+            while (iterator.hasNext()) {
+                final CachedAnswers cachedAnswers = iterator.next();
+                if (stale.test(cachedAnswers))
+                    iterator.remove();
+            }
+        }
+    }
+
+    private void removeIf(final String questionId, final CachedAnswers cachedAnswers) {
+        synchronized (questions) {
+            questions.remove(questionId, cachedAnswers);
+        }
+    }
+
+    public int size() {
+        synchronized (questions) {
+            return questions.size();
+        }
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("quora.answer.list.cache.hits", hits, AtomicLong::get)
+                .description("Answer lists served from the cache").register(registry);
+        FunctionCounter.builder("quora.answer.list.cache.misses", misses, AtomicLong::get)
+                .description("Answer lists loaded from the database").register(registry);
+        FunctionCounter.builder("quora.answer.list.cache.coalesced", coalesced, AtomicLong::get)
+                .description("Answer list requests which waited for the load of a concurrent request").register(registry);
+        Gauge.builder("quora.answer.list.cache.size", this, AnswerListCache::size)
+                .description("Questions with cached answers").register(registry);
+    }
+
+    private static final class CachedAnswers {
+        private final CompletableFuture<List<AnswerSummary>> answers = new CompletableFuture<>();
+
+        // Not expired while loading
+        private volatile long expiresAtMillis = Long.MAX_VALUE;
+
+        private boolean mightContain(final String answerId) {
+            if (!answers.isDone())
+                return true;
+            final List<AnswerSummary> loaded = answers.getNow(null);
+            if (loaded == null)
+                return false;
+            for (AnswerSummary answerSummary : loaded) {
+                if (answerSummary.getUuid().equals(answerId))
+                    return true;
+            }
+            return false;
+        }
+    }
+}
@@ -0,0 +1,239 @@
+package com.upgrad.quora.service.cache;
+
+import com.upgrad.quora.service.common.PageCursor;
+import com.upgrad.quora.service.projection.QuestionSummary;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.IntFunction;
+import java.util.function.UnaryOperator;
+
+/**
+ * In-process copy of the newest questions, in the order of /question/all (date and id descending), so the first
+ * pages of the list are served without a query. At most capacity questions are kept, deeper pages are read from the
+ * database.
+ * <p>
+ * The questions are held in an immutable array which every change replaces as a whole, readers take the current
+ * array without locking. The array always holds the newest questions without gaps: a question older than the last
+ * one held is not added, so a page is only served if the array reaches past its end or holds every question.
+ * <p>
+ * QuestionDao records created, edited and deleted questions once their transaction commits. The array is reloaded
+ * with a single query at startup and every refresh-interval-ms by QuestionService, which also picks up changes made
+ * by other instances; changes committed while the query runs are applied to its result again. Pages served from
+ * memory and pages read from the database are counted under "quora.latest.questions".
+ */
+@Component
+public class LatestQuestionsFeed implements MeterBinder {
+
+    private static final Comparator<QuestionSummary> NEWEST_FIRST = Comparator
+            .comparing((QuestionSummary questionSummary) -> questionSummary.getDate().toInstant())
+            .thenComparing(QuestionSummary::getId)
+            .reversed();
+
+    @Value("${quora.latest-questions.capacity:1000}")
+    private int capacity;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    private final AtomicReference<State> state = new AtomicReference<>(new State(null, false, null));
+
+    /**
+     * Returns up to rows questions following the given cursor, or from the start if it is null, or null if they are
+     * not all held in memory.
+     *
+     * @param after
+     * @param rows
+     * @return List of QuestionSummary or null
+     */
+    public List<QuestionSummary> page(final PageCursor after, final int rows) {
+        final Snapshot snapshot = state.get().snapshot;
+        if (snapshot != null) {
+            final QuestionSummary[] questions = snapshot.questions;
+            final int from = after == null ? 0 : indexAfter(questions, after);
+            if (from + rows <= questions.length || snapshot.complete) {
+                hits.incrementAndGet();
+                return Collections.unmodifiableList(Arrays.asList(questions).subList(from, Math.min(from + rows, questions.length)));
+            }
+        }
+        misses.incrementAndGet();
+        return null;
+    }
+
+    /**
+     * Adds a created question, or moves an edited one to its new position, once the current transaction commits.
+     *
+     * @param questionSummary
+     */
+    public void put(final QuestionSummary questionSummary) {
+        afterCommit(snapshot -> snapshot.put(questionSummary, capacity));
+    }
+
+    /**
+     * Removes the questions with given ids once the current transaction commits.
+     *
+     * @param questionIds
+     */
+    public void remove(final int... questionIds) {
+        final int[] sortedQuestionIds = questionIds.clone();
+        Arrays.sort(sortedQuestionIds);
+        afterCommit(snapshot -> snapshot.remove(sortedQuestionIds));
+    }
+
+    /**
+     * Replaces the questions by the newest ones read by the loader, which is passed the number of questions to read.
+     * Returns right away if another reload is running.
+     *
+     * @param loader
+     */
+    public void reload(final IntFunction<List<QuestionSummary>> loader) {
+        if (capacity <= 0)
+            return;
+        final State idle = state.get();
+        if (idle.reloading || !state.compareAndSet(idle, new State(idle.snapshot, true, null)))
+            return;
+
+        boolean reloaded = false;
+        try {
+            final List<QuestionSummary> questions = loader.apply(capacity);
+            final Snapshot loaded = new Snapshot(questions.toArray(new QuestionSummary[0]), questions.size() < capacity);
+            state.updateAndGet(current -> new State(replay(loaded, current.pending), false, null));
+            reloaded = true;
+        } finally {
+            if (!reloaded)
+                state.updateAndGet(current -> new State(current.snapshot, false, null));
+        }
+    }
+
+    private void afterCommit(final UnaryOperator<Snapshot> change) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            apply(change);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+            @Override
+            public void afterCommit() {
+                apply(change);
+            }
+        });
+    }
+
+    private void apply(final UnaryOperator<Snapshot> change) {
+        state.updateAndGet(current -> new State(current.snapshot == null ? null : change.apply(current.snapshot),
+                current.reloading, current.reloading ? new Pending(change, current.pending) : null));
+    }
+
+    /**
+     * Applies the changes recorded while a reload ran to its result, oldest first. Changes committed before the
+     * query read its rows are applied twice, which leaves the questions as they are.
+     */
+    private static Snapshot replay(final Snapshot loaded, final Pending pending) {
+        final Deque<UnaryOperator<Snapshot>> changes = new ArrayDeque<>();
+        for (Pending change = pending; change != null; change = change.previous)
+            changes.push(change.change);
+        Snapshot snapshot = loaded;
+        for (UnaryOperator<Snapshot> change : changes)
+            snapshot = change.apply(snapshot);
+        return snapshot;
+    }
+
+    private static int indexAfter(final QuestionSummary[] questions, final PageCursor after) {
+        final QuestionSummary cursor = new QuestionSummary(null, null,
+                ZonedDateTime.ofInstant(after.getDate().toInstant(), ZoneOffset.UTC), after.getId());
+        final int index = Arrays.binarySearch(questions, cursor, NEWEST_FIRST);
+        return index >= 0 ? index + 1 : -index - 1;
+    }
+
+    public int size() {
+        final Snapshot snapshot = state.get().snapshot;
+        return snapshot == null ? 0 : snapshot.questions.length;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("quora.latest.questions.hits", hits, AtomicLong::get)
+                .description("Question pages served from memory").register(registry);
+        FunctionCounter.builder("quora.latest.questions.misses", misses, AtomicLong::get)
+                .description("Question pages read from the database").register(registry);
+        Gauge.builder("quora.latest.questions.size", this, LatestQuestionsFeed::size)
+                .description("Newest questions held in memory").register(registry);
+    }
+
+    private static final class State {
+        // null until loaded
+        private final Snapshot snapshot;
+        private final boolean reloading;
+        // changes since the reload began, newest first
+        private final Pending pending;
+
+        private State(final Snapshot snapshot, final boolean reloading, final Pending pending) {
+            this.snapshot = snapshot;
+            this.reloading = reloading;
+            this.pending = pending;
+        }
+    }
+
+    private static final class Pending {
+        private final UnaryOperator<Snapshot> change;
+        private final Pending previous;
+
+        private Pending(final UnaryOperator<Snapshot> change, final Pending previous) {
+            this.change = change;
+            this.previous = previous;
+        }
+    }
+
+    private static final class Snapshot {
+        private final QuestionSummary[] questions;
+        // whether the questions are all questions there are
+        private final boolean complete;
+
+        private Snapshot(final QuestionSummary[] questions, final boolean complete) {
+            this.questions = questions;
+            this.complete = complete;
+        }
+
+        private Snapshot put(final QuestionSummary questionSummary, final int capacity) {
+            final Snapshot without = remove(new int[]{questionSummary.getId()});
+            final QuestionSummary[] questions = without.questions;
+            final int index = -Arrays.binarySearch(questions, questionSummary, NEWEST_FIRST) - 1;
+            // Older than every question held, there may be others in between
+            if (index == questions.length && !without.complete)
+                return without;
+
+            final QuestionSummary[] added = new QuestionSummary[Math.min(questions.length + 1, capacity)];
+            System.arraycopy(questions, 0, added, 0, index);
+            if (index < added.length) {
+                added[index] = questionSummary;
+                System.arraycopy(questions, index, added, index + 1, added.length - index - 1);
+            }
+            return new Snapshot(added, without.complete && questions.length < capacity);
+        }
+
+        private Snapshot remove(final int[] sortedQuestionIds) {
+            int kept = 0;
+            final QuestionSummary[] remaining = new QuestionSummary[questions.length];
+            for (QuestionSummary questionSummary : questions) {
+                if (Arrays.binarySearch(sortedQuestionIds, questionSummary.getId()) < 0)
+                    remaining[kept++] = questionSummary;
+            }
+            return kept == questions.length ? this : new Snapshot(Arrays.copyOf(remaining, kept), complete);
+        }
+    }
+}
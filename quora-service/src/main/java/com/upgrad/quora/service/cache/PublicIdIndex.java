@@ -0,0 +1,308 @@
+package com.upgrad.quora.service.cache;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.annotation.PostConstruct;
+import java.util.BitSet;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-process index from the public uuid of users, questions and answers to their integer id and the id of their
+ * owner, so the DAOs can refer to a row and the services can check its ownership without loading the entity.
+ * Answers also keep the id of their question. Each kind is held in a UuidIdTable of at most max-entries entries.
+ * <p>
+ * Only uuids in the lowercase canonical form given out by TimeOrderedUuidGenerator are indexed, they are stored as
+ * two longs. Any other string is never found and always looked up in the database.
+ * <p>
+ * An entry is only a positive answer: a uuid which is not indexed may still exist. Entries are added after the
+ * transaction which created or read the row commits, and removed after the transaction which deleted it commits.
+ * An entry read before a concurrent delete committed is dropped, as every put carries the number of removals seen
+ * before the row was read. Deletes handled by other instances are not seen, edit and delete still check ownership in
+ * their statements, and the DAOs evict a uuid as soon as the database shows it does not exist any more.
+ * <p>
+ * Deleting a question or a user removes only its own entry right away. The ids of deleted questions and users are
+ * remembered instead, ids are never reused: the entries of their questions and answers are dropped when they are
+ * looked up, and all of them are swept at once when enough ids have piled up. So a delete takes constant time and
+ * the tables are only walked once per sweep-threshold deletes, without allocating.
+ * <p>
+ * Lookups are counted under "quora.id.index", the entries and bytes of each table are published as gauges.
+ */
+@Component
+public class PublicIdIndex implements MeterBinder {
+
+    public enum Kind {
+        USER, QUESTION, ANSWER
+    }
+
+    public static final long ABSENT = UuidIdTable.ABSENT;
+
+    @Value("${quora.id-index.max-entries:1000000}")
+    private int maxEntries;
+
+    @Value("${quora.id-index.sweep-threshold:1024}")
+    private int sweepThreshold;
+
+    private final UuidIdTable[] tables = new UuidIdTable[Kind.values().length];
+
+    private final AtomicLong[] hits = new AtomicLong[Kind.values().length];
+    private final AtomicLong[] misses = new AtomicLong[Kind.values().length];
+
+    private long removals;
+
+    // Ids of deleted questions and users whose questions and answers may still be in the tables, until the next sweep
+    private final BitSet deletedQuestionIds = new BitSet();
+    private final BitSet deletedUserIds = new BitSet();
+    private int deletedSinceSweep;
+
+    @PostConstruct
+    public void createTables() {
+        for (Kind kind : Kind.values()) {
+            tables[kind.ordinal()] = new UuidIdTable(maxEntries, kind == Kind.ANSWER);
+            hits[kind.ordinal()] = new AtomicLong();
+            misses[kind.ordinal()] = new AtomicLong();
+        }
+    }
+
+    public static int id(final long entry) {
+        return (int) (entry >>> 32);
+    }
+
+    public static int ownerId(final long entry) {
+        return (int) entry;
+    }
+
+    /**
+     * Returns the entry of given uuid, to be read with id and ownerId, or ABSENT if it is not indexed.
+     *
+     * @param kind
+     * @param uuid
+     * @return long
+     */
+    public long get(final Kind kind, final String uuid) {
+        long entry = ABSENT;
+        if (isIndexable(uuid)) {
+            synchronized (this) {
+                final UuidIdTable table = tables[kind.ordinal()];
+                if (kind == Kind.USER)
+                    entry = table.get(mostSigBits(uuid), leastSigBits(uuid));
+                else
+                    entry = table.getUnless(mostSigBits(uuid), leastSigBits(uuid), kind == Kind.QUESTION ? this::isDeletedQuestion : this::isDeletedAnswer);
+            }
+        }
+        (entry == ABSENT ? misses : hits)[kind.ordinal()].incrementAndGet();
+        return entry;
+    }
+
+    /**
+     * Number of removals so far, to be read before a row is read from the database and passed to put.
+     *
+     * @return long
+     */
+    public synchronized long removals() {
+        return removals;
+    }
+
+    /**
+     * Indexes a row once the current transaction commits, unless something was removed since removalsSeen.
+     *
+     * @param kind
+     * @param uuid
+     * @param id
+     * @param ownerId
+     * @param parentId     id of the question of an answer, 0 otherwise
+     * @param removalsSeen result of removals() before the row was read or written
+     */
+    public void put(final Kind kind, final String uuid, final int id, final int ownerId, final int parentId, final long removalsSeen) {
+        if (!isIndexable(uuid))
+            return;
+        afterCommit(() -> {
+            synchronized (this) {
+                if (removals == removalsSeen)
+                    tables[kind.ordinal()].put(mostSigBits(uuid), leastSigBits(uuid), id, ownerId, parentId);
+            }
+        });
+    }
+
+    /**
+     * Removes the answer with given uuid once the current transaction commits.
+     *
+     * @param uuid
+     */
+    public void removeAnswer(final String uuid) {
+        afterCommit(() -> remove(Kind.ANSWER, uuid));
+    }
+
+    /**
+     * Removes the question with given uuid and the answers to it once the current transaction commits.
+     *
+     * @param uuid
+     * @param questionId
+     */
+    public void removeQuestion(final String uuid, final int questionId) {
+        afterCommit(() -> {
+            synchronized (this) {
+                remove(Kind.QUESTION, uuid);
+                deletedQuestionIds.set(questionId);
+                deleted(1);
+            }
+        });
+    }
+
+    /**
+     * Removes the questions of given user and the answers to them once the current transaction commits.
+     *
+     * @param userId
+     * @param questionIds ids of all questions of the user, indexed or not
+     */
+    public void removeQuestionsOfUser(final int userId, final int[] questionIds) {
+        afterCommit(() -> {
+            synchronized (this) {
+                removals++;
+                for (int questionId : questionIds)
+                    deletedQuestionIds.set(questionId);
+                deleted(questionIds.length);
+            }
+        });
+    }
+
+    /**
+     * Removes the user with given uuid and its answers once the current transaction commits.
+     *
+     * @param uuid
+     * @param userId
+     */
+    public void removeUser(final String uuid, final int userId) {
+        afterCommit(() -> {
+            synchronized (this) {
+                remove(Kind.USER, uuid);
+                deletedUserIds.set(userId);
+                deleted(1);
+            }
+        });
+    }
+
+    /**
+     * Removes the entry of given uuid right away, called when the database has no such row.
+     *
+     * @param kind
+     * @param uuid
+     */
+    public synchronized void evict(final Kind kind, final String uuid) {
+        if (isIndexable(uuid) && tables[kind.ordinal()].remove(mostSigBits(uuid), leastSigBits(uuid)))
+            removals++;
+    }
+
+    private synchronized void remove(final Kind kind, final String uuid) {
+        // Counted even if the uuid is not indexed yet, a concurrent reader may be about to put it
+        removals++;
+        if (isIndexable(uuid))
+            tables[kind.ordinal()].remove(mostSigBits(uuid), leastSigBits(uuid));
+    }
+
+    private boolean isDeletedQuestion(final int id, final int ownerId, final int parentId) {
+        return deletedQuestionIds.get(id);
+    }
+
+    /**
+     * Answers are removed by the cascade when their question or their owner is deleted.
+     */
+    private boolean isDeletedAnswer(final int id, final int ownerId, final int parentId) {
+        return deletedQuestionIds.get(parentId) || deletedUserIds.get(ownerId);
+    }
+
+    private void deleted(final int ids) {
+        deletedSinceSweep += ids;
+        if (deletedSinceSweep < sweepThreshold)
+            return;
+        tables[Kind.QUESTION.ordinal()].removeIf(this::isDeletedQuestion);
+        tables[Kind.ANSWER.ordinal()].removeIf(this::isDeletedAnswer);
+        deletedQuestionIds.clear();
+        deletedUserIds.clear();
+        deletedSinceSweep = 0;
+    }
+
+    private static void afterCommit(final Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+
+    /**
+     * Accepts "xxxxxxxx-xxxx-xxxx-xxxx-xxxxxxxxxxxx" with lowercase hex digits only. The uuid columns are compared as
+     * strings, an uppercase spelling is a different uuid to the database.
+     */
+    private static boolean isIndexable(final String uuid) {
+        if (uuid == null || uuid.length() != 36)
+            return false;
+        for (int i = 0; i < 36; i++) {
+            final char c = uuid.charAt(i);
+            if (i == 8 || i == 13 || i == 18 || i == 23) {
+                if (c != '-')
+                    return false;
+            } else if (!(c >= '0' && c <= '9' || c >= 'a' && c <= 'f')) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static long mostSigBits(final String uuid) {
+        return hexBits(uuid, 0, 18);
+    }
+
+    private static long leastSigBits(final String uuid) {
+        return hexBits(uuid, 19, 36);
+    }
+
+    private static long hexBits(final String uuid, final int from, final int to) {
+        long bits = 0;
+        for (int i = from; i < to; i++) {
+            final char c = uuid.charAt(i);
+            if (c != '-')
+                bits = bits << 4 | (c <= '9' ? c - '0' : c - 'a' + 10);
+        }
+        return bits;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        for (Kind kind : Kind.values()) {
+            final String tag = kind.name().toLowerCase();
+            final UuidIdTable table = tables[kind.ordinal()];
+            FunctionCounter.builder("quora.id.index.hits", hits[kind.ordinal()], AtomicLong::get)
+                    .tag("kind", tag)
+                    .description("Uuids translated to ids without a query").register(registry);
+            FunctionCounter.builder("quora.id.index.misses", misses[kind.ordinal()], AtomicLong::get)
+                    .tag("kind", tag)
+                    .description("Uuids not indexed, looked up in the database").register(registry);
+            Gauge.builder("quora.id.index.entries", this, index -> index.size(table))
+                    .tag("kind", tag)
+                    .description("Uuids held by the index").register(registry);
+            Gauge.builder("quora.id.index.bytes", this, index -> index.memoryBytes(table))
+                    .tag("kind", tag)
+                    .description("Memory taken by the arrays of the index, free slots included").register(registry);
+        }
+    }
+
+    private synchronized double size(final UuidIdTable table) {
+        return table.size();
+    }
+
+    private synchronized double memoryBytes(final UuidIdTable table) {
+        return table.memoryBytes();
+    }
+}
@@ -0,0 +1,72 @@
+package com.upgrad.quora.service.cache;
+
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.ZonedDateTime;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Session uuids (the jti of a stateless token) that were signed out before their expiry.
+ * <p>
+ * A stateless token is otherwise valid until its exp, so this set is the only place sign outs are visible to the
+ * in-memory verification path. An entry is only needed until the token would have expired anyway, expired
+ * entries are dropped every few hundred revocations so the set stays close to the number of live signed out
+ * sessions. A sign out made inside a transaction is applied once it commits.
+ */
+@Component
+public class RevokedTokenSet {
+
+    private static final int PURGE_INTERVAL = 256;
+
+    private final Map<String, Long> revoked = new ConcurrentHashMap<>();
+
+    private final AtomicInteger revocations = new AtomicInteger();
+
+    /**
+     * Marks given session as signed out until the given expiry, once the current transaction commits.
+     *
+     * @param sessionUuid
+     * @param expiresAt
+     */
+    public void revoke(final String sessionUuid, final ZonedDateTime expiresAt) {
+        final long expiresAtMillis = expiresAt.toInstant().toEpochMilli();
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            apply(sessionUuid, expiresAtMillis);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+            @Override
+            public void afterCommit() {
+                apply(sessionUuid, expiresAtMillis);
+            }
+        });
+    }
+
+    private void apply(final String sessionUuid, final long expiresAtMillis) {
+        final long now = System.currentTimeMillis();
+        if (expiresAtMillis > now)
+            revoked.put(sessionUuid, expiresAtMillis);
+        if (revocations.incrementAndGet() % PURGE_INTERVAL == 0)
+            purgeExpired(now);
+    }
+
+    public boolean isRevoked(final String sessionUuid) {
+        return sessionUuid != null && revoked.containsKey(sessionUuid);
+    }
+
+    public int size() {
+        return revoked.size();
+    }
+
+    private void purgeExpired(final long now) {
+        for (Iterator<Long> iterator = revoked.values().iterator(); iterator.hasNext(); ) {
+            if (iterator.next() <= now)
+                iterator.remove();
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package com.upgrad.quora.service.cache;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.SecondLevelCacheStatistics;
+import org.hibernate.stat.Statistics;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.stereotype.Component;
+
+import javax.persistence.EntityManagerFactory;
+
+/**
+ * Hits, misses and hit ratio of the Hibernate second-level cache, per region: the entity regions "user" and
+ * "question" and the query regions "userByUuid" and "questionByUuid". The regions are sized in ehcache.xml.
+ * Hibernate only counts while hibernate.generate_statistics is enabled.
+ * <p>
+ * The meter registry is created together with the data source, before the entity manager factory exists, so the
+ * statistics are looked up when the meters are read.
+ */
+@Component
+public class SecondLevelCacheMetrics implements MeterBinder {
+
+    private static final String[] REGIONS = {"user", "question", "userByUuid", "questionByUuid"};
+
+    private final ObjectProvider<EntityManagerFactory> entityManagerFactory;
+
+    public SecondLevelCacheMetrics(final ObjectProvider<EntityManagerFactory> entityManagerFactory) {
+        this.entityManagerFactory = entityManagerFactory;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        for (final String region : REGIONS) {
+            FunctionCounter.builder("quora.hibernate.cache.hits", this, metrics -> metrics.hits(region))
+                    .tag("region", region)
+                    .description("Lookups served from the second-level cache region").register(registry);
+            FunctionCounter.builder("quora.hibernate.cache.misses", this, metrics -> metrics.misses(region))
+                    .tag("region", region)
+                    .description("Lookups of the second-level cache region that went to the database").register(registry);
+            Gauge.builder("quora.hibernate.cache.hit.ratio", this, metrics -> metrics.hitRatio(region))
+                    .tag("region", region)
+                    .description("Share of the lookups of the second-level cache region which were hits").register(registry);
+        }
+    }
+
+    private double hits(final String region) {
+        final SecondLevelCacheStatistics regionStatistics = regionStatistics(region);
+        return regionStatistics == null ? 0 : regionStatistics.getHitCount();
+    }
+
+    private double misses(final String region) {
+        final SecondLevelCacheStatistics regionStatistics = regionStatistics(region);
+        return regionStatistics == null ? 0 : regionStatistics.getMissCount();
+    }
+
+    private double hitRatio(final String region) {
+        final double hits = hits(region);
+        final double lookups = hits + misses(region);
+        return lookups == 0 ? Double.NaN : hits / lookups;
+    }
+
+    private SecondLevelCacheStatistics regionStatistics(final String region) {
+        final EntityManagerFactory factory = entityManagerFactory.getIfAvailable();
+        if (factory == null)
+            return null;
+        final Statistics statistics = factory.unwrap(SessionFactory.class).getStatistics();
+        return statistics.getSecondLevelCacheStatistics(region);
+    }
+}
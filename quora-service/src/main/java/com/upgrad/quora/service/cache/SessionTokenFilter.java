@@ -0,0 +1,168 @@
+package com.upgrad.quora.service.cache;
+
+import com.upgrad.quora.service.dao.UserAuthDao;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.ContextRefreshedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.ZonedDateTime;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bloom filter of the access token digests of all user_auth rows, used by CommonService.validateUser to reject
+ * tokens which match no session without a query, whatever they look like.
+ * <p>
+ * The filter is built at startup, updated on every sign in and rebuilt every rebuild-interval-ms, which also drops
+ * deleted sessions. Sessions created by other instances are loaded every refresh-interval-ms, a refresh reads the
+ * sessions signed in since the previous one minus refresh-overlap-seconds. Until then a token the filter has not seen
+ * is still looked up, at most miss-lookups-per-second times per second, every other one is rejected.
+ * <p>
+ * Tokens rejected by the filter, tokens passed on to the database and lookups of missed tokens are counted under
+ * "quora.auth.token.filter".
+ */
+@Component
+public class SessionTokenFilter implements MeterBinder {
+
+    @Autowired
+    private UserAuthDao userAuthDao;
+
+    @Value("${quora.auth.token-filter.expected-sessions:1000000}")
+    private long expectedSessions;
+
+    @Value("${quora.auth.token-filter.false-positive-probability:0.01}")
+    private double falsePositiveProbability;
+
+    @Value("${quora.auth.token-filter.refresh-overlap-seconds:60}")
+    private long refreshOverlapSeconds;
+
+    @Value("${quora.auth.token-filter.miss-lookups-per-second:20}")
+    private int missLookupsPerSecond;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong passedOn = new AtomicLong();
+    private final AtomicLong missLookups = new AtomicLong();
+
+    private final Object missLookupBudget = new Object();
+    private long missLookupSecond;
+    private int missLookupsInSecond;
+
+    private volatile BloomFilter filter;
+
+    private volatile BloomFilter rebuilding;
+
+    private volatile ZonedDateTime refreshedAt;
+
+    public SessionTokenFilter(final PlatformTransactionManager transactionManager) {
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setReadOnly(true);
+    }
+
+    /**
+     * Returns false if the token digest has to be rejected without a lookup, true if the database has to be asked.
+     *
+     * @param accessTokenDigest
+     * @return boolean
+     */
+    public boolean mightExist(final String accessTokenDigest) {
+        final BloomFilter current = filter;
+        if (current == null || current.mightContain(accessTokenDigest)) {
+            passedOn.incrementAndGet();
+            return true;
+        }
+        // possibly a session created by another instance since the last refresh
+        if (takeMissLookup()) {
+            missLookups.incrementAndGet();
+            return true;
+        }
+        rejected.incrementAndGet();
+        return false;
+    }
+
+    /**
+     * Records the token digest of a new session, called on sign in.
+     *
+     * @param accessTokenDigest
+     */
+    public void put(final String accessTokenDigest) {
+        final BloomFilter current = filter;
+        if (current != null)
+            current.put(accessTokenDigest);
+        final BloomFilter next = rebuilding;
+        if (next != null)
+            next.put(accessTokenDigest);
+    }
+
+    /**
+     * Builds a new filter from the user_auth table and swaps it in once complete. Sign ins during the rebuild are
+     * recorded in both the old and the new filter.
+     */
+    @EventListener(ContextRefreshedEvent.class)
+    @Scheduled(initialDelayString = "${quora.auth.token-filter.rebuild-interval-ms:600000}", fixedDelayString = "${quora.auth.token-filter.rebuild-interval-ms:600000}")
+    public synchronized void rebuild() {
+        final BloomFilter next = new BloomFilter(expectedSessions, falsePositiveProbability);
+        final ZonedDateTime now = ZonedDateTime.now();
+        rebuilding = next;
+        try {
+            transactionTemplate.execute(status -> {
+                userAuthDao.forEachAccessTokenDigest(next::put);
+                return null;
+            });
+            filter = next;
+            refreshedAt = now;
+        } finally {
+            rebuilding = null;
+        }
+    }
+
+    /**
+     * Adds the sessions signed in on other instances since the previous refresh.
+     */
+    @Scheduled(initialDelayString = "${quora.auth.token-filter.refresh-interval-ms:5000}", fixedDelayString = "${quora.auth.token-filter.refresh-interval-ms:5000}")
+    public synchronized void refresh() {
+        final BloomFilter current = filter;
+        if (current == null)
+            return;
+        final ZonedDateTime now = ZonedDateTime.now();
+        final ZonedDateTime since = refreshedAt.minusSeconds(refreshOverlapSeconds);
+        transactionTemplate.execute(status -> {
+            userAuthDao.forEachAccessTokenDigestSince(since, current::put);
+            return null;
+        });
+        refreshedAt = now;
+    }
+
+    private boolean takeMissLookup() {
+        final long second = TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis());
+        synchronized (missLookupBudget) {
+            if (second != missLookupSecond) {
+                missLookupSecond = second;
+                missLookupsInSecond = 0;
+            }
+            if (missLookupsInSecond >= missLookupsPerSecond)
+                return false;
+            missLookupsInSecond++;
+            return true;
+        }
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("quora.auth.token.filter.rejected", rejected, AtomicLong::get)
+                .description("Access tokens rejected by the bloom filter without a database lookup").register(registry);
+        FunctionCounter.builder("quora.auth.token.filter.database", passedOn, AtomicLong::get)
+                .description("Access tokens the bloom filter might contain, looked up in the database").register(registry);
+        FunctionCounter.builder("quora.auth.token.filter.miss.lookups", missLookups, AtomicLong::get)
+                .description("Access tokens missing from the bloom filter, looked up within the per second budget").register(registry);
+    }
+}
@@ -0,0 +1,117 @@
+package com.upgrad.quora.service.cache;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Negative cache of access token digests which matched no user_auth row, used by CommonService.validateUser to
+ * reject repeated garbage or stale tokens without a query.
+ * <p>
+ * Entries are keyed by the SHA-256 digest, so memory per entry does not depend on what the client sent. The cache is
+ * bounded by size (least recently used entries are evicted first) and every entry lives at most ttl-seconds. A
+ * digest must be invalidated when a session with that token is created, see UserService.signIn. Rejections served
+ * from the cache are published under "quora.auth.unknown.token.cache".
+ */
+@Component
+public class UnknownTokenCache implements MeterBinder {
+
+    @Value("${quora.auth.unknown-token-cache.max-size:100000}")
+    private int maxSize;
+
+    @Value("${quora.auth.unknown-token-cache.ttl-seconds:600}")
+    private long ttlSeconds;
+
+    private final AtomicLong hits = new AtomicLong();
+
+    private final Map<String, Long> digests = new LinkedHashMap<String, Long>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Long> eldest) {
+            return size() > maxSize;
+        }
+    };
+
+    /**
+     * Returns true if given token digest is known not to match any session.
+     *
+     * @param accessTokenDigest
+     * @return boolean
+     */
+    public boolean contains(final String accessTokenDigest) {
+        final long now = System.currentTimeMillis();
+        synchronized (digests) {
+            Long expiresAtMillis = digests.get(accessTokenDigest);
+            if (expiresAtMillis == null)
+                return false;
+            if (expiresAtMillis <= now) {
+                digests.remove(accessTokenDigest);
+                return false;
+            }
+        }
+        hits.incrementAndGet();
+        return true;
+    }
+
+    /**
+     * Records that given token digest matched no session.
+     *
+     * @param accessTokenDigest
+     */
+    public void put(final String accessTokenDigest) {
+        if (maxSize <= 0)
+            return;
+        final long expiresAtMillis = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(ttlSeconds);
+        synchronized (digests) {
+            digests.put(accessTokenDigest, expiresAtMillis);
+        }
+    }
+
+    /**
+     * Removes given token digest, called whenever a session with that token is created. When called inside a
+     * transaction the digest is removed again after completion, covering lookups which missed the row while the
+     * session was not yet committed.
+     *
+     * @param accessTokenDigest
+     */
+    public void invalidate(final String accessTokenDigest) {
+        remove(accessTokenDigest);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+                @Override
+                public void afterCompletion(int status) {
+                    remove(accessTokenDigest);
+                }
+            });
+        }
+    }
+
+    private void remove(final String accessTokenDigest) {
+        synchronized (digests) {
+            digests.remove(accessTokenDigest);
+        }
+    }
+
+    public int size() {
+        synchronized (digests) {
+            return digests.size();
+        }
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("quora.auth.unknown.token.cache.hits", hits, AtomicLong::get)
+                .description("Unknown access tokens rejected without a database lookup").register(registry);
+        Gauge.builder("quora.auth.unknown.token.cache.size", this, UnknownTokenCache::size)
+                .description("Number of cached unknown token digests").register(registry);
+    }
+}
@@ -0,0 +1,141 @@
+package com.upgrad.quora.service.cache;
+
+import com.upgrad.quora.service.dao.UserDao;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.ContextRefreshedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bloom filters of all usernames and email addresses, used to answer "is this name taken?" without a query.
+ * <p>
+ * A name the filter has never seen is certainly free, only names the filter might contain (taken ones and a small
+ * fraction of false positives) have to be confirmed against the database. The filters are built at startup, updated
+ * on every sign up and rebuilt every rebuild-interval-ms, which also picks up sign ups handled by other instances
+ * and drops deleted users. The answer is advisory, sign up itself still relies on the unique constraints.
+ * <p>
+ * Checks answered by the filter and checks passed on to the database are counted under "quora.user.availability".
+ */
+@Component
+public class UserAvailabilityFilter implements MeterBinder {
+
+    @Autowired
+    private UserDao userDao;
+
+    @Value("${quora.user.availability.expected-users:1000000}")
+    private long expectedUsers;
+
+    @Value("${quora.user.availability.false-positive-probability:0.01}")
+    private double falsePositiveProbability;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final AtomicLong filtered = new AtomicLong();
+    private final AtomicLong passedOn = new AtomicLong();
+
+    private volatile Filters filters;
+
+    private volatile Filters rebuilding;
+
+    public UserAvailabilityFilter(final PlatformTransactionManager transactionManager) {
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setReadOnly(true);
+    }
+
+    /**
+     * Returns false if no user has the given userName for sure, true if the database has to be asked.
+     *
+     * @param userName
+     * @return boolean
+     */
+    public boolean mightBeTakenUserName(final String userName) {
+        final Filters current = filters;
+        return count(current == null || current.userNames.mightContain(userName));
+    }
+
+    /**
+     * Returns false if no user has the given email for sure, true if the database has to be asked.
+     *
+     * @param email
+     * @return boolean
+     */
+    public boolean mightBeTakenEmail(final String email) {
+        final Filters current = filters;
+        return count(current == null || current.emails.mightContain(email));
+    }
+
+    /**
+     * Records a new user, called on sign up.
+     *
+     * @param userName
+     * @param email
+     */
+    public void put(final String userName, final String email) {
+        final Filters current = filters;
+        if (current != null)
+            current.put(userName, email);
+        final Filters next = rebuilding;
+        if (next != null)
+            next.put(userName, email);
+    }
+
+    /**
+     * Builds new filters from the users table and swaps them in once complete. Sign ups during the rebuild are
+     * recorded in both the old and the new filters.
+     */
+    @EventListener(ContextRefreshedEvent.class)
+    @Scheduled(initialDelayString = "${quora.user.availability.rebuild-interval-ms:600000}", fixedDelayString = "${quora.user.availability.rebuild-interval-ms:600000}")
+    public synchronized void rebuild() {
+        final Filters next = new Filters(expectedUsers, falsePositiveProbability);
+        rebuilding = next;
+        try {
+            transactionTemplate.execute(status -> {
+                userDao.forEachUserNameAndEmail(next::put);
+                return null;
+            });
+            filters = next;
+        } finally {
+            rebuilding = null;
+        }
+    }
+
+    private boolean count(final boolean mightBeTaken) {
+        if (mightBeTaken)
+            passedOn.incrementAndGet();
+        else
+            filtered.incrementAndGet();
+        return mightBeTaken;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("quora.user.availability.filtered", filtered, AtomicLong::get)
+                .description("Availability checks answered by the bloom filter").register(registry);
+        FunctionCounter.builder("quora.user.availability.database", passedOn, AtomicLong::get)
+                .description("Availability checks confirmed against the database").register(registry);
+    }
+
+    private static final class Filters {
+        private final BloomFilter userNames;
+        private final BloomFilter emails;
+
+        private Filters(long expectedUsers, double falsePositiveProbability) {
+            this.userNames = new BloomFilter(expectedUsers, falsePositiveProbability);
+            this.emails = new BloomFilter(expectedUsers, falsePositiveProbability);
+        }
+
+        private void put(String userName, String email) {
+            userNames.put(userName);
+            emails.put(email);
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package com.upgrad.quora.service.cache;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.ZonedDateTime;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Per user "signed out everywhere" instants. Every session of the user which signed in at or before that instant is
+ * revoked, whatever in-memory copy of it exists, so revoking all sessions of a user is a single map write no matter
+ * how many sessions the user has.
+ * <p>
+ * Checked by AccessTokenCache for cached sessions and by StatelessTokenService for self contained tokens. Such
+ * copies outlive the sign out by at most retention-hours (the session lifetime), after that the entry is dropped.
+ * A revocation made inside a transaction is applied once it commits, a rollback leaves the sessions valid.
+ */
+@Component
+public class UserSessionRevocations {
+
+    private static final int PURGE_INTERVAL = 256;
+
+    @Value("${quora.auth.revocation.retention-hours:8}")
+    private long retentionHours;
+
+    private final Map<Integer, Long> revokedBefore = new ConcurrentHashMap<>();
+
+    private final AtomicInteger revocations = new AtomicInteger();
+
+    /**
+     * Revokes every session of the given user which signed in at or before the given instant, once the current
+     * transaction commits.
+     *
+     * @param userId
+     * @param revokedAt
+     */
+    public void revokeAll(final Integer userId, final ZonedDateTime revokedAt) {
+        final long revokedAtMillis = revokedAt.toInstant().toEpochMilli();
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            apply(userId, revokedAtMillis);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+            @Override
+            public void afterCommit() {
+                apply(userId, revokedAtMillis);
+            }
+        });
+    }
+
+    private void apply(final Integer userId, final long revokedAtMillis) {
+        revokedBefore.merge(userId, revokedAtMillis, Math::max);
+        if (revocations.incrementAndGet() % PURGE_INTERVAL == 0)
+            purgeExpired();
+    }
+
+    /**
+     * Returns true if a session of the given user which signed in at loginAt has been revoked.
+     *
+     * @param userId
+     * @param loginAt
+     * @return boolean
+     */
+    public boolean isRevoked(final Integer userId, final ZonedDateTime loginAt) {
+        if (userId == null || loginAt == null)
+            return false;
+        Long revokedAtMillis = revokedBefore.get(userId);
+        return revokedAtMillis != null && loginAt.toInstant().toEpochMilli() <= revokedAtMillis;
+    }
+
+    private void purgeExpired() {
+        final long oldestNeeded = System.currentTimeMillis() - TimeUnit.HOURS.toMillis(retentionHours);
+        for (Iterator<Long> iterator = revokedBefore.values().iterator(); iterator.hasNext(); ) {
+            if (iterator.next() < oldestNeeded)
+                iterator.remove();
+        }
+    }
+}
@@ -0,0 +1,226 @@
+package com.upgrad.quora.service.cache;
+
+/**
+ * Open addressing hash table from a uuid, given as its two 64 bit halves, to the integer id, owner id and parent id
+ * of a row. Keys and values are kept in parallel primitive arrays with linear probing, an entry takes 24 bytes, 28
+ * with parent ids, and the table is kept at most 70% full, so about 35 to 40 bytes per entry including free slots.
+ * <p>
+ * A slot is free while its id is 0, ids come from sequences and start at 1. Removal shifts the following entries of
+ * the probe sequence back instead of leaving tombstones, so no removal allocates. The table grows by doubling up to maxEntries entries and
+ * refuses entries beyond that.
+ * <p>
+ * Not thread safe, see PublicIdIndex.
+ */
+public class UuidIdTable {
+
+    /**
+     * Returned by get for a uuid without entry. Entries are returned as id in the high and owner id in the low half
+     * of a long, which is never negative as ids are positive.
+     */
+    public static final long ABSENT = -1L;
+
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private static final double MAX_LOAD = 0.7;
+
+    private final int maxEntries;
+
+    private final boolean withParents;
+
+    private long[] mostSigBits;
+    private long[] leastSigBits;
+    private int[] ids;
+    private int[] ownerIds;
+    private int[] parentIds;
+
+    private int mask;
+
+    private int size;
+
+    /**
+     * @param maxEntries  number of entries after which put refuses new uuids
+     * @param withParents whether parent ids are stored, otherwise they are read as 0
+     */
+    public UuidIdTable(final int maxEntries, final boolean withParents) {
+        this.maxEntries = maxEntries;
+        this.withParents = withParents;
+        allocate(INITIAL_CAPACITY);
+    }
+
+    public interface EntryFilter {
+        boolean test(int id, int ownerId, int parentId);
+    }
+
+    public long get(final long msb, final long lsb) {
+        final int slot = find(msb, lsb);
+        return slot < 0 ? ABSENT : ((long) ids[slot] << 32) | (ownerIds[slot] & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Adds or replaces the entry of given uuid.
+     *
+     * @return false if the uuid is new and the table already holds maxEntries entries
+     */
+    public boolean put(final long msb, final long lsb, final int id, final int ownerId, final int parentId) {
+        int slot = find(msb, lsb);
+        if (slot < 0) {
+            if (size >= maxEntries)
+                return false;
+            if (size + 1 > (mask + 1) * MAX_LOAD)
+                rehash((mask + 1) * 2);
+            slot = freeSlot(msb, lsb);
+            mostSigBits[slot] = msb;
+            leastSigBits[slot] = lsb;
+            size++;
+        }
+        ids[slot] = id;
+        ownerIds[slot] = ownerId;
+        if (withParents)
+            parentIds[slot] = parentId;
+        return true;
+    }
+
+    /**
+     * Returns the entry of given uuid like get, unless the filter accepts it: such an entry is removed in place and
+     * ABSENT is returned.
+     */
+    public long getUnless(final long msb, final long lsb, final EntryFilter stale) {
+        final int slot = find(msb, lsb);
+        if (slot < 0)
+            return ABSENT;
+        if (stale.test(ids[slot], ownerIds[slot], withParents ? parentIds[slot] : 0)) {
+            removeSlot(slot);
+            return ABSENT;
+        }
+        return ((long) ids[slot] << 32) | (ownerIds[slot] & 0xFFFFFFFFL);
+    }
+
+    public boolean remove(final long msb, final long lsb) {
+        final int slot = find(msb, lsb);
+        if (slot < 0)
+            return false;
+        removeSlot(slot);
+        return true;
+    }
+
+    /**
+     * Removes every entry accepted by the filter in place, without allocating. Takes time in the order of its
+     * capacity.
+     *
+     * @return number of removed entries
+     */
+    public int removeIf(final EntryFilter filter) {
+        if (size == 0)
+            return 0;
+        // Start after a free slot, so no cluster wraps around the start and an entry shifted back by a removal is
+        // never moved into a slot which was already checked
+        int start = 0;
+        while (ids[start] != 0)
+            start++;
+
+        final int oldSize = size;
+        for (int i = 1; i <= mask + 1; i++) {
+            final int slot = (start + i) & mask;
+            while (ids[slot] != 0 && filter.test(ids[slot], ownerIds[slot], withParents ? parentIds[slot] : 0))
+                removeSlot(slot);
+        }
+        return oldSize - size;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Bytes taken by the arrays of the table, free slots included.
+     */
+    public long memoryBytes() {
+        return (long) (mask + 1) * (withParents ? 28 : 24);
+    }
+
+    private int find(final long msb, final long lsb) {
+        for (int slot = home(msb, lsb); ids[slot] != 0; slot = (slot + 1) & mask) {
+            if (mostSigBits[slot] == msb && leastSigBits[slot] == lsb)
+                return slot;
+        }
+        return -1;
+    }
+
+    private int freeSlot(final long msb, final long lsb) {
+        int slot = home(msb, lsb);
+        while (ids[slot] != 0)
+            slot = (slot + 1) & mask;
+        return slot;
+    }
+
+    private int home(final long msb, final long lsb) {
+        // Finalizer of MurmurHash3, time ordered uuids differ mostly in a few bits of the first half
+        long hash = msb * 31 + lsb;
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return (int) hash & mask;
+    }
+
+    private void removeSlot(int gap) {
+        // Move every following entry of the cluster which may live at or before the gap into it
+        int next = (gap + 1) & mask;
+        while (ids[next] != 0) {
+            final int home = home(mostSigBits[next], leastSigBits[next]);
+            if (((next - home) & mask) >= ((next - gap) & mask)) {
+                move(next, gap);
+                gap = next;
+            }
+            next = (next + 1) & mask;
+        }
+        ids[gap] = 0;
+        size--;
+    }
+
+    private void move(final int from, final int to) {
+        mostSigBits[to] = mostSigBits[from];
+        leastSigBits[to] = leastSigBits[from];
+        ids[to] = ids[from];
+        ownerIds[to] = ownerIds[from];
+        if (withParents)
+            parentIds[to] = parentIds[from];
+    }
+
+    private void insert(final long msb, final long lsb, final int id, final int ownerId, final int parentId) {
+        final int slot = freeSlot(msb, lsb);
+        mostSigBits[slot] = msb;
+        leastSigBits[slot] = lsb;
+        ids[slot] = id;
+        ownerIds[slot] = ownerId;
+        if (withParents)
+            parentIds[slot] = parentId;
+        size++;
+    }
+
+    private void allocate(final int capacity) {
+        mostSigBits = new long[capacity];
+        leastSigBits = new long[capacity];
+        ids = new int[capacity];
+        ownerIds = new int[capacity];
+        parentIds = withParents ? new int[capacity] : null;
+        mask = capacity - 1;
+        size = 0;
+    }
+
+    private void rehash(final int capacity) {
+        final long[] oldMostSigBits = mostSigBits;
+        final long[] oldLeastSigBits = leastSigBits;
+        final int[] oldIds = ids;
+        final int[] oldOwnerIds = ownerIds;
+        final int[] oldParentIds = parentIds;
+
+        allocate(capacity);
+        for (int slot = 0; slot < oldIds.length; slot++) {
+            final int parentId = withParents ? oldParentIds[slot] : 0;
+            if (oldIds[slot] != 0)
+                insert(oldMostSigBits[slot], oldLeastSigBits[slot], oldIds[slot], oldOwnerIds[slot], parentId);
+        }
+    }
+}
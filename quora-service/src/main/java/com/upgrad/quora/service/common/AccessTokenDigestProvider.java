@@ -0,0 +1,46 @@
+package com.upgrad.quora.service.common;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * This class provides the fixed length digest under which an access token is stored and looked up in user_auth.
+ * <p>
+ * The digest is the lower case hex encoded SHA-256 of the token, i.e. the same value as
+ * encode(sha256(access_token::bytea), 'hex') in Postgres, so rows can be backfilled by the database itself.
+ */
+public final class AccessTokenDigestProvider {
+
+    private static final String DIGEST_ALGORITHM = "SHA-256";
+    private final static char[] hexArray = "0123456789abcdef".toCharArray();
+
+    private AccessTokenDigestProvider() {
+    }
+
+    /**
+     * This method returns the 64 characters long hex encoded SHA-256 digest of given access token.
+     *
+     * @param accessToken
+     * @return hex encoded digest
+     */
+    public static String digest(final String accessToken) {
+        final MessageDigest messageDigest;
+        try {
+            messageDigest = MessageDigest.getInstance(DIGEST_ALGORITHM);
+        } catch (NoSuchAlgorithmException e) {
+            throw new UnexpectedException(GenericErrorCode.GEN_001, e);
+        }
+        return bytesToHex(messageDigest.digest(accessToken.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private static String bytesToHex(byte[] bytes) {
+        char[] hexChars = new char[bytes.length * 2];
+        for (int j = 0; j < bytes.length; j++) {
+            int v = bytes[j] & 0xFF;
+            hexChars[j * 2] = hexArray[v >>> 4];
+            hexChars[j * 2 + 1] = hexArray[v & 0x0F];
+        }
+        return new String(hexChars);
+    }
+}
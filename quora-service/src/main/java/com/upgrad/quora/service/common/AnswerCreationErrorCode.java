@@ -17,7 +17,21 @@ public enum AnswerCreationErrorCode implements ErrorCode {
    * <b>Cause:</b> If the authorize token provided by the user expired with some logged out date value in the current database.<br>
    * <b>Action: Try adding answer after the login </b><br>
    */
-  ATHR_002("ATHR-002", "User is signed out.Sign in first to post an answer");
+  ATHR_002("ATHR-002", "User is signed out.Sign in first to post an answer"),
+
+  /**
+   * Error message: <b>Answer must not be empty</b><br>
+   * <b>Cause:</b> An item of a bulk request has no answer.<br>
+   * <b>Action: Send the answer again with its content</b><br>
+   */
+  ANS_002("ANS-002", "Answer must not be empty"),
+
+  /**
+   * Error message: <b>Answer must not be longer than 255 characters</b><br>
+   * <b>Cause:</b> The answer of an item of a bulk request does not fit the ans column.<br>
+   * <b>Action: Shorten the answer and send it again</b><br>
+   */
+  ANS_003("ANS-003", "Answer must not be longer than 255 characters");
 
   private static final Map<String, AnswerCreationErrorCode> LOOKUP =
       new HashMap<String, AnswerCreationErrorCode>();
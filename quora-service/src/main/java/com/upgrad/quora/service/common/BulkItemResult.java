@@ -0,0 +1,57 @@
+package com.upgrad.quora.service.common;
+
+/**
+ * Outcome of one item of a bulk create request, either the uuid of the created row or the error which kept the item
+ * from being stored.
+ */
+public final class BulkItemResult {
+
+    private final int index;
+
+    private final String uuid;
+
+    private final ErrorCode error;
+
+    private BulkItemResult(final int index, final String uuid, final ErrorCode error) {
+        this.index = index;
+        this.uuid = uuid;
+        this.error = error;
+    }
+
+    public static BulkItemResult created(final int index, final String uuid) {
+        return new BulkItemResult(index, uuid, null);
+    }
+
+    public static BulkItemResult failed(final int index, final ErrorCode error) {
+        return new BulkItemResult(index, null, error);
+    }
+
+    /**
+     * @return position of the item in the request
+     */
+    public int getIndex() {
+        return index;
+    }
+
+    public boolean isCreated() {
+        return error == null;
+    }
+
+    /**
+     * @return uuid of the created row, null if the item failed
+     */
+    public String getUuid() {
+        return uuid;
+    }
+
+    /**
+     * @return error code of a failed item, null if it was created
+     */
+    public String getErrorCode() {
+        return error == null ? null : error.getCode();
+    }
+
+    public String getErrorMessage() {
+        return error == null ? null : error.getDefaultMessage();
+    }
+}
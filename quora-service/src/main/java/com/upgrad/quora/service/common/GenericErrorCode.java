@@ -10,7 +10,42 @@ public enum GenericErrorCode implements ErrorCode {
      * <b>Cause:</b> This error could have occurred due to undetermined runtime errors.<br>
      * <b>Action: None</b><br>
      */
-    GEN_001("GEN-001", "An unexpected error occurred. Please contact System Administrator");
+    GEN_001("GEN-001", "An unexpected error occurred. Please contact System Administrator"),
+
+    /**
+     * Error message: <b>Server is busy, please try again later</b><br>
+     * <b>Cause:</b> Too many password hashing requests are already waiting to be processed.<br>
+     * <b>Action: Retry the request after a short delay</b><br>
+     */
+    GEN_002("GEN-002", "Server is busy, please try again later"),
+
+    /**
+     * Error message: <b>Invalid page cursor</b><br>
+     * <b>Cause:</b> The cursor was not returned by a previous page of the same list or has been altered.<br>
+     * <b>Action: Restart from the first page without a cursor</b><br>
+     */
+    GEN_003("GEN-003", "Invalid page cursor"),
+
+    /**
+     * Error message: <b>Page size must be a positive number</b><br>
+     * <b>Cause:</b> The requested page size is zero or negative.<br>
+     * <b>Action: Request a page size between 1 and the maximum page size</b><br>
+     */
+    GEN_004("GEN-004", "Page size must be a positive number"),
+
+    /**
+     * Error message: <b>Too many items in one bulk request</b><br>
+     * <b>Cause:</b> The bulk request has more items than the configured maximum.<br>
+     * <b>Action: Split the items into several requests</b><br>
+     */
+    GEN_005("GEN-005", "Too many items in one bulk request"),
+
+    /**
+     * Error message: <b>The item could not be stored, the chunk it was written with was rolled back</b><br>
+     * <b>Cause:</b> Writing another item of the same chunk failed, e.g. because its question was deleted meanwhile.<br>
+     * <b>Action: Send the items of the failed chunk again</b><br>
+     */
+    GEN_006("GEN-006", "The item could not be stored, the chunk it was written with was rolled back");
 
     private static final Map<String, GenericErrorCode> LOOKUP = new HashMap<String, GenericErrorCode>();
 
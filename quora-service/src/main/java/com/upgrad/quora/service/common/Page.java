@@ -0,0 +1,62 @@
+package com.upgrad.quora.service.common;
+
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * One page of a list ordered by (date, id) together with the cursor of the following page.
+ *
+ * @param <T> type of the rows
+ */
+public final class Page<T> {
+
+    private final List<T> items;
+
+    private final PageCursor nextCursor;
+
+    private Long totalEstimate;
+
+    private Page(final List<T> items, final PageCursor nextCursor) {
+        this.items = items;
+        this.nextCursor = nextCursor;
+    }
+
+    /**
+     * Builds a page from up to pageSize + 1 rows fetched by the DAO. The extra row is only used to find out whether
+     * another page exists and is dropped.
+     *
+     * @param rows      rows of the page followed by at most one row of the next page
+     * @param pageSize  requested page size
+     * @param sortKey   returns the cursor pointing right after a row
+     * @param <T>       type of the rows
+     * @return Page
+     */
+    public static <T> Page<T> of(final List<T> rows, final int pageSize, final Function<T, PageCursor> sortKey) {
+        if (rows.size() <= pageSize)
+            return new Page<>(rows, null);
+        final List<T> items = rows.subList(0, pageSize);
+        return new Page<>(items, sortKey.apply(items.get(pageSize - 1)));
+    }
+
+    public List<T> getItems() {
+        return items;
+    }
+
+    /**
+     * @return the encoded cursor of the next page, null on the last page
+     */
+    public String getNextCursor() {
+        return nextCursor == null ? null : nextCursor.encode();
+    }
+
+    /**
+     * @return the approximate number of rows of the whole list, null unless requested
+     */
+    public Long getTotalEstimate() {
+        return totalEstimate;
+    }
+
+    public void setTotalEstimate(Long totalEstimate) {
+        this.totalEstimate = totalEstimate;
+    }
+}
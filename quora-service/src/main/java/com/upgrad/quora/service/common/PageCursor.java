@@ -0,0 +1,80 @@
+package com.upgrad.quora.service.common;
+
+import com.upgrad.quora.service.exception.InvalidPageRequestException;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.time.DateTimeException;
+import java.time.Instant;
+import java.time.ZonedDateTime;
+import java.util.Base64;
+
+/**
+ * Position in a list ordered by (date, id), i.e. the sort key of the last row of the previous page. The next page
+ * starts right after that row, so rows inserted or deleted in between neither shift nor repeat the following pages.
+ * <p>
+ * Clients get the cursor as an opaque url safe string and must not interpret it.
+ */
+public final class PageCursor {
+
+    private static final char SEPARATOR = '|';
+
+    private final Instant date;
+
+    private final int id;
+
+    private PageCursor(final Instant date, final int id) {
+        this.date = date;
+        this.id = id;
+    }
+
+    /**
+     * Returns the cursor pointing right after the row with given date and id.
+     *
+     * @param date
+     * @param id
+     * @return PageCursor
+     */
+    public static PageCursor after(final ZonedDateTime date, final Integer id) {
+        return new PageCursor(date.toInstant(), id);
+    }
+
+    /**
+     * Decodes a cursor returned by encode, returns null for a missing cursor.
+     *
+     * @param cursor
+     * @return PageCursor
+     * @throws InvalidPageRequestException if the cursor is not a valid cursor
+     */
+    public static PageCursor decode(final String cursor) throws InvalidPageRequestException {
+        if (cursor == null || cursor.isEmpty())
+            return null;
+        try {
+            final String value = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            final int separator = value.indexOf(SEPARATOR);
+            final String[] seconds = value.substring(0, separator).split("\\.");
+            final Instant date = Instant.ofEpochSecond(Long.parseLong(seconds[0]), Long.parseLong(seconds[1]));
+            return new PageCursor(date, Integer.parseInt(value.substring(separator + 1)));
+        } catch (IllegalArgumentException | IndexOutOfBoundsException | DateTimeException e) {
+            throw new InvalidPageRequestException(GenericErrorCode.GEN_003.getCode(), GenericErrorCode.GEN_003.getDefaultMessage());
+        }
+    }
+
+    /**
+     * Encodes the cursor, the full timestamp precision is kept so rows sharing the same millisecond are not skipped.
+     *
+     * @return String
+     */
+    public String encode() {
+        final String value = date.getEpochSecond() + "." + date.getNano() + SEPARATOR + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public Timestamp getDate() {
+        return Timestamp.from(date);
+    }
+
+    public int getId() {
+        return id;
+    }
+}
@@ -12,7 +12,21 @@ public enum QuestionCreationErrorCode implements ErrorCode {
      * <b>Cause:</b> If the user has signed out.<br>
      * <b>Action: User has been signed out need to re-login to get the access again</b><br>
      */
-    ATHR_002_CREATEQUESTION_PROMPT("ATHR-002", "User is signed out.Sign in first to post a question");
+    ATHR_002_CREATEQUESTION_PROMPT("ATHR-002", "User is signed out.Sign in first to post a question"),
+
+    /**
+     * Error message: <b>Question content must not be empty</b><br>
+     * <b>Cause:</b> An item of a bulk request has no content.<br>
+     * <b>Action: Send the question again with its content</b><br>
+     */
+    QUES_002_EMPTY_CONTENT("QUES-002", "Question content must not be empty"),
+
+    /**
+     * Error message: <b>Question content must not be longer than 500 characters</b><br>
+     * <b>Cause:</b> The content of an item of a bulk request does not fit the content column.<br>
+     * <b>Action: Shorten the question and send it again</b><br>
+     */
+    QUES_003_CONTENT_TOO_LONG("QUES-003", "Question content must not be longer than 500 characters");
 
 
     private static final Map<String, QuestionCreationErrorCode> LOOKUP =
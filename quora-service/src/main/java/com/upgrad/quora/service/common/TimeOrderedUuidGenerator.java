@@ -0,0 +1,58 @@
+package com.upgrad.quora.service.common;
+
+import java.security.SecureRandom;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * This class generates the public uuids of users, sessions, questions and answers as version 7 UUIDs (RFC 9562).
+ * <p>
+ * The first 48 bits are the unix time in milliseconds, followed by a 12 bit counter and 62 random bits. Uuids
+ * generated later compare greater, both as UUID and as the lower case string stored in the uuid columns, so new rows
+ * are appended at the right edge of the unique uuid indexes instead of splitting pages all over them as random
+ * (version 4) uuids do. The counter keeps uuids of one JVM strictly increasing within the same millisecond and across
+ * small backward clock adjustments.
+ */
+public final class TimeOrderedUuidGenerator {
+
+    private static final int COUNTER_BITS = 12;
+
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    /**
+     * unix time in milliseconds shifted left by COUNTER_BITS, plus the counter of the last generated uuid
+     */
+    private static final AtomicLong LAST_TIMESTAMP_AND_COUNTER = new AtomicLong();
+
+    private TimeOrderedUuidGenerator() {
+    }
+
+    /**
+     * This method returns a new version 7 UUID.
+     *
+     * @return UUID
+     */
+    public static UUID next() {
+        final long timestampAndCounter = nextTimestampAndCounter(System.currentTimeMillis());
+
+        // unix_ts_ms (48 bits) | version (4 bits) | counter (12 bits)
+        final long mostSigBits = (timestampAndCounter >>> COUNTER_BITS) << 16
+                | 0x7000L
+                | timestampAndCounter & 0xFFFL;
+        // variant (2 bits) | random (62 bits)
+        final long leastSigBits = RANDOM.nextLong() & 0x3FFFFFFFFFFFFFFFL | 0x8000000000000000L;
+        return new UUID(mostSigBits, leastSigBits);
+    }
+
+    private static long nextTimestampAndCounter(final long currentTimeMillis) {
+        final long now = currentTimeMillis << COUNTER_BITS;
+        long last;
+        long next;
+        do {
+            last = LAST_TIMESTAMP_AND_COUNTER.get();
+            // Overflowing the counter borrows the next millisecond, the clock catches up within a few milliseconds
+            next = Math.max(now, last + 1);
+        } while (!LAST_TIMESTAMP_AND_COUNTER.compareAndSet(last, next));
+        return next;
+    }
+}
@@ -1,14 +1,24 @@
 package com.upgrad.quora.service.dao;
 
+import com.upgrad.quora.service.cache.PublicIdIndex;
+import com.upgrad.quora.service.common.PageCursor;
 import com.upgrad.quora.service.entity.AnswerEntity;
 import com.upgrad.quora.service.entity.QuestionEntity;
+import com.upgrad.quora.service.entity.UserEntity;
+import com.upgrad.quora.service.projection.AnswerSummary;
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Repository;
 
 import javax.persistence.EntityManager;
 import javax.persistence.NoResultException;
 import javax.persistence.PersistenceContext;
-import javax.persistence.TypedQuery;
+import javax.persistence.Query;
+import java.time.ZonedDateTime;
+import java.util.Collections;
 import java.util.List;
+import java.util.function.Consumer;
 
 @Repository
 public class AnswerDao {
@@ -16,58 +26,171 @@ public class AnswerDao {
     @PersistenceContext
     private EntityManager entityManager;
 
+    @Autowired
+    private PlannerEstimateDao plannerEstimateDao;
+
+    @Autowired
+    private PublicIdIndex publicIdIndex;
+
     /**
-     * This method will create answer answerEntity object to database.
+     * This method will create answer answerEntity object to database. The insert is flushed right away, so a question
+     * which does not exist any more is reported here as a DataIntegrityViolationException.
      * @param answerEntity
      * @return AnswerEntity
      */
     public AnswerEntity createAnswer(AnswerEntity answerEntity) {
+        final long removals = publicIdIndex.removals();
         entityManager.persist(answerEntity);
+        entityManager.flush();
+        index(answerEntity, removals);
         return answerEntity;
     }
 
+    /**
+     * This method persists the answers of one bulk chunk. They are flushed as JDBC batches and then detached, so
+     * the persistence context does not grow with the number of chunks.
+     *
+     * @param answerEntities
+     */
+    public void createAnswers(final List<AnswerEntity> answerEntities) {
+        final long removals = publicIdIndex.removals();
+        for (AnswerEntity answerEntity : answerEntities) {
+            entityManager.persist(answerEntity);
+            index(answerEntity, removals);
+        }
+        entityManager.flush();
+        entityManager.clear();
+    }
+
+    /**
+     * This method fetches the answer with given uuid, used to tell a missing answer from a forbidden one when edit or
+     * delete affected no row.
+     *
+     * @param answerId
+     * @return AnswerEntity
+     */
     public AnswerEntity getAnswerById(String answerId) {
         AnswerEntity answerEntity = null;
+        final long removals = publicIdIndex.removals();
 
         try {
             answerEntity = entityManager
                     .createNamedQuery("answerByUuid", AnswerEntity.class)
                     .setParameter("uuid", answerId)
                     .getSingleResult();
+            index(answerEntity, removals);
         } catch (NoResultException e) {
             System.err.println(e.toString());
+            publicIdIndex.evict(PublicIdIndex.Kind.ANSWER, answerId);
         }
         return answerEntity;
     }
 
-    public AnswerEntity editAnswer(AnswerEntity answerEntity) {
-        return  entityManager.merge(answerEntity);
+    /**
+     * This method returns the id of the user who posted the answer with given uuid, as far as the PublicIdIndex
+     * knows it, without a query.
+     *
+     * @param answerId
+     * @return id of the owner or null if the answer is not indexed
+     */
+    public Integer getIndexedOwnerId(final String answerId) {
+        final long entry = publicIdIndex.get(PublicIdIndex.Kind.ANSWER, answerId);
+        return entry == PublicIdIndex.ABSENT ? null : PublicIdIndex.ownerId(entry);
     }
 
-    public AnswerEntity deleteAnswer(AnswerEntity answerEntity) {
-        if (answerEntity != null) {
-            entityManager.remove(answerEntity);
-        }
-        return answerEntity;
+    /**
+     * This method replaces the content of the answer with given uuid if it was posted by given owner, in a single
+     * statement.
+     *
+     * @param answerId
+     * @param answer
+     * @param date
+     * @param owner
+     * @return number of updated answers, 0 if there is no such answer or it was posted by someone else
+     */
+    public int editAnswer(final String answerId, final String answer, final ZonedDateTime date, final UserEntity owner) {
+        return entityManager
+                .createNamedQuery("editAnswerOfOwner")
+                .setParameter("answer", answer)
+                .setParameter("date", date)
+                .setParameter("uuid", answerId)
+                .setParameter("owner", owner)
+                .executeUpdate();
     }
 
-    public List<AnswerEntity> getAnswersByQuestionId(QuestionEntity questionEntity) {
-
-        List<AnswerEntity> answerEntity = null;
-        System.out.println("questionEntity \n" + questionEntity);
-        try {
-            TypedQuery<AnswerEntity> queryObject = entityManager
-                    .createNamedQuery("answerByQuestionId", AnswerEntity.class)
-                    .setParameter("questionId", questionEntity.getId());
-            System.out.println(queryObject);
-            answerEntity = queryObject.getResultList();
+    /**
+     * This method deletes the answer with given uuid if it was posted by given owner, or by anyone if admin is true,
+     * in a single statement.
+     *
+     * @param answerId
+     * @param owner
+     * @param admin
+     * @return number of deleted answers, 0 if there is no such answer or the caller may not delete it
+     */
+    public int deleteAnswer(final String answerId, final UserEntity owner, final boolean admin) {
+        final int deleted = entityManager
+                .createNamedQuery("deleteAnswerOfOwnerOrAdmin")
+                .setParameter("uuid", answerId)
+                .setParameter("owner", owner)
+                .setParameter("admin", admin)
+                .executeUpdate();
+        if (deleted > 0)
+            publicIdIndex.removeAnswer(answerId);
+        return deleted;
+    }
 
-//            answerEntity = entityManager.createNativeQuery("SELECT * FROM answer where question_id = " + questionEntity.getId(), AnswerEntity.class)
-//                    .getResultList();
+    /**
+     * Returns up to limit answers of given question, oldest first, following the given cursor or from the start if
+     * it is null. Only the listed columns are read, no entity is loaded.
+     *
+     * @param questionEntity
+     * @param after
+     * @param limit
+     * @return List of AnswerSummary
+     */
+    @SuppressWarnings("unchecked")
+    public List<AnswerSummary> getAnswerSummariesPageByQuestion(final QuestionEntity questionEntity, final PageCursor after, final int limit) {
+        final Query query;
+        if (after == null) {
+            query = entityManager.createNamedQuery("answerSummariesByQuestionFirstPage");
+        } else {
+            query = entityManager.createNamedQuery("answerSummariesByQuestionPageAfter")
+                    .setParameter("date", after.getDate())
+                    .setParameter("id", after.getId());
+        }
+        return query.setParameter("questionId", questionEntity.getId()).setMaxResults(limit).getResultList();
+    }
 
-        } catch (NoResultException e) {
-            System.err.println(e.toString());
+    /**
+     * Passes every answer to given question, oldest first, to the given consumer without holding them all in memory.
+     * Rows are read through a forward only cursor fetchSize rows at a time. They are read as AnswerSummary, so the
+     * persistence context does not grow while scrolling. Must be called inside a transaction, otherwise the driver
+     * reads the whole result at once.
+     *
+     * @param questionEntity
+     * @param fetchSize
+     * @param consumer
+     */
+    public void forEachAnswerSummaryToQuestion(final QuestionEntity questionEntity, final int fetchSize, final Consumer<AnswerSummary> consumer) {
+        try (ScrollableResults results = entityManager
+                .createNamedQuery("answerSummariesByQuestionForExport", AnswerSummary.class)
+                .setParameter("questionId", questionEntity.getId())
+                .unwrap(org.hibernate.query.Query.class)
+                .setFetchSize(fetchSize)
+                .scroll(ScrollMode.FORWARD_ONLY)) {
+            while (results.next()) {
+                consumer.accept((AnswerSummary) results.get(0));
+            }
         }
-        return answerEntity;
+    }
+
+    public long estimateAnswerCountByQuestion(final QuestionEntity questionEntity) {
+        return plannerEstimateDao.estimateRows("select 1 from answer where question_id = :questionId",
+                Collections.singletonMap("questionId", questionEntity.getId()));
+    }
+
+    private void index(final AnswerEntity answerEntity, final long removals) {
+        publicIdIndex.put(PublicIdIndex.Kind.ANSWER, answerEntity.getUuid(), answerEntity.getId(),
+                answerEntity.getUserEntity().getId(), answerEntity.getQuestionEntity().getId(), removals);
     }
 }
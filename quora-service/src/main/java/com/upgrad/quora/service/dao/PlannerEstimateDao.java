@@ -0,0 +1,40 @@
+package com.upgrad.quora.service.dao;
+
+import org.springframework.stereotype.Repository;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import javax.persistence.Query;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Approximate row counts taken from the planner statistics instead of count(*). The estimate is the number of rows
+ * the planner expects for a query, so it costs one planning step and no scan, and it is as accurate as the last
+ * ANALYZE of the table.
+ */
+@Repository
+public class PlannerEstimateDao {
+
+    private static final Pattern PLAN_ROWS = Pattern.compile("rows=(\\d+)");
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    /**
+     * Returns the number of rows the planner estimates for given native query.
+     *
+     * @param sql        native query, must not contain user input other than through parameters
+     * @param parameters named parameters of the query
+     * @return estimated number of rows
+     */
+    public long estimateRows(final String sql, final Map<String, Object> parameters) {
+        final Query query = entityManager.createNativeQuery("explain " + sql);
+        parameters.forEach(query::setParameter);
+        // The first line of the plan is the top node, its row estimate is the one for the whole query
+        final Object topPlanNode = query.getResultList().get(0);
+        final Matcher matcher = PLAN_ROWS.matcher(String.valueOf(topPlanNode));
+        return matcher.find() ? Long.parseLong(matcher.group(1)) : 0L;
+    }
+}
@@ -1,86 +1,375 @@
 package com.upgrad.quora.service.dao;
 
+import com.upgrad.quora.service.cache.LatestQuestionsFeed;
+import com.upgrad.quora.service.cache.PublicIdIndex;
+import com.upgrad.quora.service.common.PageCursor;
 import com.upgrad.quora.service.entity.QuestionEntity;
 import com.upgrad.quora.service.entity.UserEntity;
-import com.upgrad.quora.service.exception.InvalidQuestionException;
+import com.upgrad.quora.service.projection.QuestionSummary;
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
+import org.hibernate.annotations.QueryHints;
+import org.hibernate.query.NativeQuery;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
+import javax.persistence.Cache;
 import javax.persistence.EntityManager;
 import javax.persistence.NoResultException;
 import javax.persistence.PersistenceContext;
+import javax.persistence.Query;
+import java.time.ZonedDateTime;
+import java.util.Collection;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
 
 
 @Repository
 public class QuestionDao {
+    /**
+     * Query space of the native edit and delete statements. It matches no table, so Hibernate evicts nothing after
+     * them and the DAO evicts the affected question itself.
+     */
+    private static final String OWN_QUERY_SPACE = "question_by_uuid_statement";
+
     @PersistenceContext
     private EntityManager entityManager;
 
+    @Autowired
+    private PlannerEstimateDao plannerEstimateDao;
+
+    @Autowired
+    private PublicIdIndex publicIdIndex;
+
+    @Autowired
+    private LatestQuestionsFeed latestQuestionsFeed;
+
 
     public QuestionEntity getQuestionById(final String questionId) {
         QuestionEntity questionEntity = null;
+        final long removals = publicIdIndex.removals();
 
         try {
             questionEntity = entityManager
                     .createNamedQuery("questionByUuid", QuestionEntity.class)
                     .setParameter("uuid", questionId)
+                    .setHint(QueryHints.READ_ONLY, TransactionSynchronizationManager.isCurrentTransactionReadOnly())
                     .getSingleResult();
+            index(questionEntity, removals);
 
         } catch (NoResultException e) {
             System.out.println(e.toString());
+            publicIdIndex.evict(PublicIdIndex.Kind.QUESTION, questionId);
         }
 
         return questionEntity;
     }
 
+    /**
+     * This method returns the question with given uuid for use as a reference, for instance to add an answer or to
+     * list its answers. If the uuid is in the PublicIdIndex the question is not loaded, only its id may be read
+     * without a query.
+     *
+     * @param questionId
+     * @return QuestionEntity or null if there is no such question
+     */
+    public QuestionEntity getQuestionReference(final String questionId) {
+        final long entry = publicIdIndex.get(PublicIdIndex.Kind.QUESTION, questionId);
+        if (entry == PublicIdIndex.ABSENT)
+            return getQuestionById(questionId);
+        return entityManager.getReference(QuestionEntity.class, PublicIdIndex.id(entry));
+    }
+
+    /**
+     * This method drops the question with given uuid from the PublicIdIndex, called when the database shows it does
+     * not exist any more.
+     *
+     * @param questionId
+     */
+    public void evictFromIndex(final String questionId) {
+        publicIdIndex.evict(PublicIdIndex.Kind.QUESTION, questionId);
+    }
+
+    /**
+     * This method returns the id of the user who posted the question with given uuid, as far as the PublicIdIndex
+     * knows it, without a query.
+     *
+     * @param questionId
+     * @return id of the owner or null if the question is not indexed
+     */
+    public Integer getIndexedOwnerId(final String questionId) {
+        final long entry = publicIdIndex.get(PublicIdIndex.Kind.QUESTION, questionId);
+        return entry == PublicIdIndex.ABSENT ? null : PublicIdIndex.ownerId(entry);
+    }
+
     public QuestionEntity createQuestion(QuestionEntity questionEntity) {
+        final long removals = publicIdIndex.removals();
         entityManager.persist(questionEntity);
+        index(questionEntity, removals);
+        latestQuestionsFeed.put(summary(questionEntity));
         return questionEntity;
     }
 
-    public QuestionEntity deleteQuestion(QuestionEntity questionEntity) throws InvalidQuestionException {
+    /**
+     * This method persists the questions of one bulk chunk. They are flushed as JDBC batches and then detached, so
+     * the persistence context does not grow with the number of chunks.
+     *
+     * @param questionEntities
+     */
+    public void createQuestions(final List<QuestionEntity> questionEntities) {
+        final long removals = publicIdIndex.removals();
+        for (QuestionEntity questionEntity : questionEntities) {
+            entityManager.persist(questionEntity);
+            index(questionEntity, removals);
+            latestQuestionsFeed.put(summary(questionEntity));
+        }
+        entityManager.flush();
+        entityManager.clear();
+    }
 
-        entityManager.remove(questionEntity);
-        return questionEntity;
+    /**
+     * This method fetches the questions with given uuids in a single query, uuids without a question are left out.
+     *
+     * @param questionIds
+     * @return list of QuestionEntity
+     */
+    public List<QuestionEntity> getQuestionsByIds(final Collection<String> questionIds) {
+        if (questionIds.isEmpty())
+            return Collections.emptyList();
+        return entityManager
+                .createNamedQuery("questionsByUuids", QuestionEntity.class)
+                .setParameter("uuids", questionIds)
+                .getResultList();
     }
 
+    /**
+     * This method returns the questions with given uuids for use as references, like getQuestionReference. The
+     * uuids in the PublicIdIndex are not loaded, their ids are only checked to still exist, as a question deleted by
+     * another instance would fail the whole chunk of a bulk request. The others are fetched in a single query.
+     *
+     * @param questionIds
+     * @return map of uuid to QuestionEntity, uuids without a question are left out
+     */
+    public Map<String, QuestionEntity> getQuestionReferencesByIds(final Collection<String> questionIds) {
+        final Map<String, QuestionEntity> questions = new HashMap<>();
+        final List<String> notIndexed = new ArrayList<>();
+        final Map<Integer, String> indexed = new HashMap<>();
+        for (String questionId : questionIds) {
+            final long entry = publicIdIndex.get(PublicIdIndex.Kind.QUESTION, questionId);
+            if (entry == PublicIdIndex.ABSENT)
+                notIndexed.add(questionId);
+            else
+                indexed.put(PublicIdIndex.id(entry), questionId);
+        }
+        if (!indexed.isEmpty()) {
+            final List<Integer> existing = entityManager
+                    .createNamedQuery("existingQuestionIds", Integer.class)
+                    .setParameter("ids", indexed.keySet())
+                    .getResultList();
+            for (Integer id : existing)
+                questions.put(indexed.remove(id), entityManager.getReference(QuestionEntity.class, id));
+            indexed.values().forEach(this::evictFromIndex);
+        }
+        final long removals = publicIdIndex.removals();
+        for (QuestionEntity questionEntity : getQuestionsByIds(notIndexed)) {
+            index(questionEntity, removals);
+            questions.put(questionEntity.getUuid(), questionEntity);
+        }
+        return questions;
+    }
 
-    public List<QuestionEntity> getAllQuestions() {
-        List<QuestionEntity> questionEntity = null;
+    /**
+     * This method deletes the question with given uuid if it was posted by given owner, or by anyone if admin is
+     * true, in a single statement. Its answers are removed by the cascade of the answer.question_id foreign key.
+     * The id of the question is needed to drop its answers from the PublicIdIndex and to evict it from the
+     * second-level cache, it is queried first unless the question is indexed.
+     *
+     * @param questionId
+     * @param owner
+     * @param admin
+     * @return number of deleted questions, 0 if there is no such question or the caller may not delete it
+     */
+    public int deleteQuestion(final String questionId, final UserEntity owner, final boolean admin) {
+        final long entry = publicIdIndex.get(PublicIdIndex.Kind.QUESTION, questionId);
+        final QuestionEntity questionEntity = entry == PublicIdIndex.ABSENT ? getQuestionById(questionId) : null;
+        if (entry == PublicIdIndex.ABSENT && questionEntity == null)
+            return 0;
 
-        try {
-            questionEntity = entityManager
-                    .createNamedQuery("getAllQuestions", QuestionEntity.class)
-                    .getResultList();
+        final int deleted = entityManager
+                .createNamedQuery("deleteQuestionOfOwnerOrAdmin")
+                .setParameter("uuid", questionId)
+                .setParameter("ownerId", owner == null ? 0 : owner.getId())
+                .setParameter("admin", admin)
+                .unwrap(NativeQuery.class)
+                .addSynchronizedQuerySpace(OWN_QUERY_SPACE)
+                .executeUpdate();
+        if (deleted > 0) {
+            final int id = questionEntity == null ? PublicIdIndex.id(entry) : questionEntity.getId();
+            evictFromSecondLevelCache(id);
+            // Cached questionByUuid results would still name the deleted question
+            entityManager.getEntityManagerFactory().getCache().unwrap(org.hibernate.Cache.class).evictQueryRegion("questionByUuid");
+            publicIdIndex.removeQuestion(questionId, id);
+            latestQuestionsFeed.remove(id);
+        }
+        return deleted;
+    }
 
-        } catch (NoResultException e) {
-            System.out.println(e.toString());
+    /**
+     * This method deletes all questions posted by given user in a single statement. Unlike the cascade of the
+     * question.user_id foreign key it lets Hibernate evict the questions from the second-level cache and invalidate
+     * the cached questionByUuid results. The ids of the questions are read first, to drop the answers to them from
+     * the PublicIdIndex.
+     *
+     * @param user
+     * @return number of deleted questions
+     */
+    public int deleteQuestionsOfUser(final UserEntity user) {
+        final int[] questionIds = entityManager
+                .createNamedQuery("questionIdsOfUser", Integer.class)
+                .setParameter("user", user)
+                .getResultList().stream().mapToInt(Integer::intValue).toArray();
+        final int deleted = entityManager
+                .createNamedQuery("deleteQuestionsOfUser")
+                .setParameter("user", user)
+                .executeUpdate();
+        publicIdIndex.removeQuestionsOfUser(user.getId(), questionIds);
+        latestQuestionsFeed.remove(questionIds);
+        return deleted;
+    }
+
+    /**
+     * Returns up to limit questions, newest first, following the given cursor or from the start if it is null.
+     * Only the listed columns are read, no entity is loaded.
+     *
+     * @param after
+     * @param limit
+     * @return List of QuestionSummary
+     */
+    @SuppressWarnings("unchecked")
+    public List<QuestionSummary> getQuestionSummariesPage(final PageCursor after, final int limit) {
+        final Query query;
+        if (after == null) {
+            query = entityManager.createNamedQuery("questionSummariesFirstPage");
+        } else {
+            query = entityManager.createNamedQuery("questionSummariesPageAfter")
+                    .setParameter("date", after.getDate())
+                    .setParameter("id", after.getId());
         }
+        return query.setMaxResults(limit).getResultList();
+    }
 
-        return questionEntity;
+    /**
+     * Returns up to limit questions of given user, newest first, following the given cursor or from the start if it
+     * is null. Only the listed columns are read, no entity is loaded.
+     *
+     * @param userEntity
+     * @param after
+     * @param limit
+     * @return List of QuestionSummary
+     */
+    @SuppressWarnings("unchecked")
+    public List<QuestionSummary> getQuestionSummariesPageByUser(final UserEntity userEntity, final PageCursor after, final int limit) {
+        final Query query;
+        if (after == null) {
+            query = entityManager.createNamedQuery("questionSummariesByUserFirstPage");
+        } else {
+            query = entityManager.createNamedQuery("questionSummariesByUserPageAfter")
+                    .setParameter("date", after.getDate())
+                    .setParameter("id", after.getId());
+        }
+        return query.setParameter("userId", userEntity.getId()).setMaxResults(limit).getResultList();
+    }
 
+    /**
+     * Passes every question, newest first, to the given consumer without holding the whole table in memory. Rows are
+     * read through a forward only cursor fetchSize rows at a time. They are read as QuestionSummary, so the
+     * persistence context does not grow while scrolling. Must be called inside a transaction, otherwise the driver
+     * reads the whole result at once.
+     *
+     * @param fetchSize
+     * @param consumer
+     */
+    public void forEachQuestionSummary(final int fetchSize, final Consumer<QuestionSummary> consumer) {
+        try (ScrollableResults results = entityManager
+                .createNamedQuery("questionSummariesForExport", QuestionSummary.class)
+                .unwrap(org.hibernate.query.Query.class)
+                .setFetchSize(fetchSize)
+                .scroll(ScrollMode.FORWARD_ONLY)) {
+            while (results.next()) {
+                consumer.accept((QuestionSummary) results.get(0));
+            }
+        }
     }
 
-    public List<QuestionEntity> getAllQuestionsbyUser(final UserEntity userEntity) {
-        List<QuestionEntity> questionEntity = null;
+    public long estimateQuestionCount() {
+        return plannerEstimateDao.estimateRows("select 1 from question", Collections.emptyMap());
+    }
 
-        try {
-            questionEntity = entityManager
-                    .createNamedQuery("getAllQuestionByUser", QuestionEntity.class)
-                    .setParameter("user", userEntity)
-                    .getResultList();
+    public long estimateQuestionCountByUser(final UserEntity userEntity) {
+        return plannerEstimateDao.estimateRows("select 1 from question where user_id = :userId",
+                Collections.singletonMap("userId", userEntity.getId()));
+    }
 
-        } catch (NoResultException e) {
-            System.out.println(e.toString());
+    /**
+     * This method replaces the content of the question with given uuid if it was posted by given owner, in a single
+     * statement. The edited question is evicted from the second-level cache and moves to the top of the
+     * LatestQuestionsFeed, both need its id: it is looked up after the update unless the question is in the
+     * PublicIdIndex.
+     *
+     * @param questionId
+     * @param content
+     * @param date
+     * @param owner
+     * @return number of updated questions, 0 if there is no such question or it was posted by someone else
+     */
+    public int editQuestion(final String questionId, final String content, final ZonedDateTime date, final UserEntity owner) {
+        final int updated = entityManager
+                .createNamedQuery("editQuestionOfOwner")
+                .setParameter("content", content)
+                .setParameter("date", date)
+                .setParameter("uuid", questionId)
+                .setParameter("ownerId", owner.getId())
+                .unwrap(NativeQuery.class)
+                .addSynchronizedQuerySpace(OWN_QUERY_SPACE)
+                .executeUpdate();
+        if (updated > 0) {
+            final long entry = publicIdIndex.get(PublicIdIndex.Kind.QUESTION, questionId);
+            final int id = entry == PublicIdIndex.ABSENT ? getQuestionById(questionId).getId() : PublicIdIndex.id(entry);
+            evictFromSecondLevelCache(id);
+            latestQuestionsFeed.put(new QuestionSummary(questionId, content, date, id));
         }
+        return updated;
+    }
 
-        return questionEntity;
-
+    /**
+     * Evicts the question with given id from the second-level cache now and once more when the transaction completes,
+     * a concurrent transaction may cache the old row again before this one commits.
+     */
+    private void evictFromSecondLevelCache(final int id) {
+        final Cache cache = entityManager.getEntityManagerFactory().getCache();
+        cache.evict(QuestionEntity.class, id);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+                @Override
+                public void afterCompletion(final int status) {
+                    cache.evict(QuestionEntity.class, id);
+                }
+            });
+        }
     }
 
-    public QuestionEntity editQuestion(QuestionEntity questionEntity) {
-        entityManager.merge(questionEntity);
-        return questionEntity;
+    private static QuestionSummary summary(final QuestionEntity questionEntity) {
+        return new QuestionSummary(questionEntity.getUuid(), questionEntity.getContent(), questionEntity.getDate(), questionEntity.getId());
+    }
 
+    private void index(final QuestionEntity questionEntity, final long removals) {
+        publicIdIndex.put(PublicIdIndex.Kind.QUESTION, questionEntity.getUuid(), questionEntity.getId(),
+                questionEntity.getUserEntity().getId(), 0, removals);
     }
 }
@@ -0,0 +1,64 @@
+package com.upgrad.quora.service.dao;
+
+import org.hibernate.Session;
+import org.springframework.orm.jpa.vendor.HibernateJpaDialect;
+import org.springframework.transaction.TransactionDefinition;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceException;
+import java.sql.SQLException;
+
+/**
+ * HibernateJpaDialect which also makes the session read-only for the duration of a read-only transaction.
+ * <p>
+ * For a transaction declared with readOnly = true Spring already sets the flush mode to MANUAL and marks the JDBC
+ * connection read-only. On top of that the entities loaded by such a transaction are loaded read-only, so Hibernate
+ * keeps no snapshot of their state and never dirty checks them. The previous default is restored when the
+ * transaction ends, because the session may outlive it.
+ * <p>
+ * Named queries do not follow the read-only default of the session, the DAOs set the QueryHints.READ_ONLY hint of
+ * those used on read paths from TransactionSynchronizationManager.isCurrentTransactionReadOnly().
+ */
+public class ReadOnlyHibernateJpaDialect extends HibernateJpaDialect {
+
+    @Override
+    public Object beginTransaction(final EntityManager entityManager, final TransactionDefinition definition)
+            throws PersistenceException, SQLException {
+        final Object transactionData = super.beginTransaction(entityManager, definition);
+        if (!definition.isReadOnly())
+            return transactionData;
+
+        final Session session = getSession(entityManager);
+        final boolean previousDefaultReadOnly = session.isDefaultReadOnly();
+        session.setDefaultReadOnly(true);
+        return new ReadOnlyTransactionData(transactionData, session, previousDefaultReadOnly);
+    }
+
+    @Override
+    public void cleanupTransaction(final Object transactionData) {
+        if (!(transactionData instanceof ReadOnlyTransactionData)) {
+            super.cleanupTransaction(transactionData);
+            return;
+        }
+
+        final ReadOnlyTransactionData readOnlyTransactionData = (ReadOnlyTransactionData) transactionData;
+        super.cleanupTransaction(readOnlyTransactionData.transactionData);
+        if (readOnlyTransactionData.session.isOpen())
+            readOnlyTransactionData.session.setDefaultReadOnly(readOnlyTransactionData.previousDefaultReadOnly);
+    }
+
+    private static final class ReadOnlyTransactionData {
+
+        private final Object transactionData;
+
+        private final Session session;
+
+        private final boolean previousDefaultReadOnly;
+
+        private ReadOnlyTransactionData(final Object transactionData, final Session session, final boolean previousDefaultReadOnly) {
+            this.transactionData = transactionData;
+            this.session = session;
+            this.previousDefaultReadOnly = previousDefaultReadOnly;
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package com.upgrad.quora.service.dao;
+
+import com.upgrad.quora.service.entity.TokenRevocationEntity;
+import org.hibernate.query.NativeQuery;
+import org.springframework.stereotype.Repository;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.time.ZonedDateTime;
+import java.util.List;
+
+@Repository
+public class TokenRevocationDao {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    /**
+     * This method save/insert TokenRevocationEntity object in database
+     *
+     * @param tokenRevocationEntity
+     * @return TokenRevocationEntity
+     */
+    public TokenRevocationEntity createTokenRevocation(final TokenRevocationEntity tokenRevocationEntity) {
+        entityManager.persist(tokenRevocationEntity);
+        return tokenRevocationEntity;
+    }
+
+    /**
+     * This method fetch all revocations which have not expired yet.
+     *
+     * @param now
+     * @return list of TokenRevocationEntity
+     */
+    public List<TokenRevocationEntity> getLiveTokenRevocations(final ZonedDateTime now) {
+        return entityManager
+                .createNamedQuery("liveTokenRevocations", TokenRevocationEntity.class)
+                .setParameter("now", now)
+                .getResultList();
+    }
+
+    /**
+     * This method fetch the revocations made at or after since which have not expired yet.
+     *
+     * @param since
+     * @param now
+     * @return list of TokenRevocationEntity
+     */
+    public List<TokenRevocationEntity> getTokenRevocationsSince(final ZonedDateTime since, final ZonedDateTime now) {
+        return entityManager
+                .createNamedQuery("tokenRevocationsSince", TokenRevocationEntity.class)
+                .setParameter("since", since)
+                .setParameter("now", now)
+                .getResultList();
+    }
+
+    /**
+     * This method deletes at most batchSize revocations which expired before expiredBefore. Rows locked by a
+     * concurrent transaction are skipped rather than waited for.
+     *
+     * @param expiredBefore
+     * @param batchSize
+     * @return number of deleted rows
+     */
+    public int deleteExpiredTokenRevocations(final ZonedDateTime expiredBefore, final int batchSize) {
+        return entityManager
+                .createNativeQuery("delete from token_revocation where id in (select id from token_revocation where "
+                        + "expires_at < :expiredBefore limit :batchSize for update skip locked)")
+                .setParameter("expiredBefore", expiredBefore)
+                .setParameter("batchSize", batchSize)
+                // without a query space Hibernate would clear every second-level cache region after a native statement
+                .unwrap(NativeQuery.class).addSynchronizedEntityClass(TokenRevocationEntity.class)
+                .executeUpdate();
+    }
+}
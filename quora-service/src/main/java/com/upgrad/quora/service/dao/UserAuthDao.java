@@ -1,15 +1,26 @@
 package com.upgrad.quora.service.dao;
 
+import com.upgrad.quora.service.common.AccessTokenDigestProvider;
 import com.upgrad.quora.service.entity.UserAuthEntity;
+import org.hibernate.annotations.QueryHints;
+import org.hibernate.query.NativeQuery;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import javax.persistence.EntityManager;
-import javax.persistence.NoResultException;
 import javax.persistence.PersistenceContext;
+import javax.persistence.Query;
+import javax.persistence.TypedQuery;
+import java.time.ZonedDateTime;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 @Repository
 public class UserAuthDao {
 
+    private static final String FETCH_GRAPH = "javax.persistence.fetchgraph";
+
     @PersistenceContext
     private EntityManager entityManager;
 
@@ -24,24 +35,66 @@ public class UserAuthDao {
     }
 
     /**
-     * This method fetch UserAuth Object based on given access_token/authToken
+     * This method fetch UserAuth Object based on given access_token/authToken.
+     * The lookup goes through the uniquely indexed SHA-256 digest of the token instead of the token itself.
      *
      * @param authToken
      * @return
      */
     public UserAuthEntity getUserAuthByAccessToken(String authToken){
+        return getUserAuthByAccessTokenDigest(AccessTokenDigestProvider.digest(authToken));
+    }
 
-        UserAuthEntity userAuthEntity = null;
-        try {
-            userAuthEntity = entityManager
-                    .createNamedQuery("userAuthByAccessToken", UserAuthEntity.class)
-                    .setParameter("accessToken", authToken)
-                    .getSingleResult();
-        } catch (NoResultException e) {
-           System.out.println(e.toString());
-        }
+    /**
+     * This method fetch UserAuth Object based on given digest of the access_token, or null if there is none. The user
+     * is fetched along, the session is used to authorize the request and may be cached beyond it.
+     *
+     * @param accessTokenDigest
+     * @return
+     */
+    public UserAuthEntity getUserAuthByAccessTokenDigest(String accessTokenDigest){
+        // getResultList instead of getSingleResult, an unknown token is expected and must stay cheap
+        List<UserAuthEntity> userAuthEntities = entityManager
+                .createNamedQuery("userAuthByAccessTokenDigest", UserAuthEntity.class)
+                .setParameter("accessTokenDigest", accessTokenDigest)
+                .setHint(QueryHints.READ_ONLY, TransactionSynchronizationManager.isCurrentTransactionReadOnly())
+                .setHint(FETCH_GRAPH, entityManager.getEntityGraph("UserAuthEntity.withUser"))
+                .getResultList();
 
-        return userAuthEntity;
+        return userAuthEntities.isEmpty() ? null : userAuthEntities.get(0);
+    }
+
+    /**
+     * Streams the access token digest of every session to the given consumer, rows are fetched from the database in
+     * chunks so the whole table is never held in memory. Must be called inside a transaction.
+     *
+     * @param consumer receives the access token digests
+     */
+    public void forEachAccessTokenDigest(final Consumer<String> consumer) {
+        streamAccessTokenDigests(entityManager.createNamedQuery("accessTokenDigests", String.class), consumer);
+    }
+
+    /**
+     * Streams the access token digest of every session signed in at or after since to the given consumer. Must be
+     * called inside a transaction.
+     *
+     * @param since
+     * @param consumer receives the access token digests
+     */
+    public void forEachAccessTokenDigestSince(final ZonedDateTime since, final Consumer<String> consumer) {
+        streamAccessTokenDigests(entityManager.createNamedQuery("accessTokenDigestsSince", String.class)
+                .setParameter("since", since), consumer);
+    }
+
+    private void streamAccessTokenDigests(final TypedQuery<String> typedQuery, final Consumer<String> consumer) {
+        @SuppressWarnings("unchecked")
+        final org.hibernate.query.Query<String> query = typedQuery.unwrap(org.hibernate.query.Query.class);
+        try (Stream<String> digests = query
+                .setFetchSize(1000)
+                .setReadOnly(true)
+                .stream()) {
+            digests.forEach(consumer);
+        }
     }
 
     /**
@@ -52,4 +105,40 @@ public class UserAuthDao {
     public void updateUserAuth(UserAuthEntity userAuth){
         entityManager.merge(userAuth);
     }
+
+    /**
+     * This method signs out every session of the given user which is still signed in, with a single update
+     * statement whatever the number of sessions.
+     *
+     * @param userId
+     * @param logoutAt
+     * @return number of sessions signed out
+     */
+    public int signOutAllSessions(final Integer userId, final ZonedDateTime logoutAt) {
+        return entityManager
+                .createNamedQuery("signOutAllSessions")
+                .setParameter("userId", userId)
+                .setParameter("logoutAt", logoutAt)
+                .executeUpdate();
+    }
+
+    /**
+     * This method deletes at most batchSize sessions which expired before expiredBefore or were signed out before
+     * signedOutBefore. Rows locked by a concurrent transaction are skipped rather than waited for.
+     *
+     * @param expiredBefore
+     * @param signedOutBefore
+     * @param batchSize
+     * @return number of deleted rows
+     */
+    public int deleteStaleSessions(final ZonedDateTime expiredBefore, final ZonedDateTime signedOutBefore, final int batchSize) {
+        Query query = entityManager
+                .createNativeQuery("delete from user_auth where id in (select id from user_auth where "
+                        + "expires_at < :expiredBefore or logout_at < :signedOutBefore limit :batchSize for update skip locked)")
+                .setParameter("expiredBefore", expiredBefore)
+                .setParameter("signedOutBefore", signedOutBefore)
+                .setParameter("batchSize", batchSize);
+        // without a query space Hibernate would clear every second-level cache region after a native statement
+        return query.unwrap(NativeQuery.class).addSynchronizedEntityClass(UserAuthEntity.class).executeUpdate();
+    }
 }
@@ -1,11 +1,18 @@
 package com.upgrad.quora.service.dao;
 
+import com.upgrad.quora.service.cache.PublicIdIndex;
 import com.upgrad.quora.service.entity.UserEntity;
+import org.hibernate.annotations.QueryHints;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import javax.persistence.EntityManager;
 import javax.persistence.NoResultException;
 import javax.persistence.PersistenceContext;
+import java.util.List;
+import java.util.function.BiConsumer;
+import java.util.stream.Stream;
 
 @Repository
 public class UserDao {
@@ -13,17 +20,35 @@ public class UserDao {
     @PersistenceContext
     private EntityManager entityManager;
 
+    @Autowired
+    private PublicIdIndex publicIdIndex;
+
     /**
-     * This method will save/insert all data in userEntity object to database.
+     * This method will save/insert all data in userEntity object to database. The insert is flushed right away,
+     * ids come from a pooled sequence and it would otherwise only run at commit, so a taken username or email is
+     * reported here as a DataIntegrityViolationException.
      *
      * @param userEntity
      * @return UserEntity
      */
     public UserEntity createUser(UserEntity userEntity) {
+        final long removals = publicIdIndex.removals();
         entityManager.persist(userEntity);
+        entityManager.flush();
+        index(userEntity, removals);
         return userEntity;
     }
 
+    /**
+     * This method writes the state of a detached userEntity, for instance a rehashed password, back to the database.
+     *
+     * @param userEntity
+     * @return the managed UserEntity
+     */
+    public UserEntity updateUser(final UserEntity userEntity) {
+        return entityManager.merge(userEntity);
+    }
+
     /**
      * For given userName parameter it will fetches corresponding userEntity object from database.
      *
@@ -69,6 +94,40 @@ public class UserDao {
         return userEntity;
     }
 
+    /**
+     * Fetches in a single query the users which have either the given userName or the given email, at most two.
+     *
+     * @param userName
+     * @param email
+     * @return list of UserEntity
+     */
+    public List<UserEntity> getUsersByUserNameOrEmail(final String userName, final String email) {
+        return entityManager
+                .createNamedQuery("usersByUserNameOrEmail", UserEntity.class)
+                .setParameter("userName", userName)
+                .setParameter("email", email)
+                .getResultList();
+    }
+
+    /**
+     * Streams userName and email of every user to the given consumer, rows are fetched from the database in chunks
+     * so the whole table is never held in memory. Must be called inside a transaction.
+     *
+     * @param consumer receives userName and email
+     */
+    public void forEachUserNameAndEmail(final BiConsumer<String, String> consumer) {
+        @SuppressWarnings("unchecked")
+        final org.hibernate.query.Query<Object[]> query = entityManager
+                .createNamedQuery("userNamesAndEmails", Object[].class)
+                .unwrap(org.hibernate.query.Query.class);
+        try (Stream<Object[]> rows = query
+                .setFetchSize(1000)
+                .setReadOnly(true)
+                .stream()) {
+            rows.forEach(row -> consumer.accept((String) row[0], (String) row[1]));
+        }
+    }
+
     /**
      * This method fetch UserEntity object for giver uuid/userId
      *
@@ -77,20 +136,38 @@ public class UserDao {
      */
     public UserEntity getUserById(final String userId) {
         UserEntity userEntity = null;
+        final long removals = publicIdIndex.removals();
 
         try {
             userEntity = entityManager
                     .createNamedQuery("userByUuid", UserEntity.class)
                     .setParameter("uuid", userId)
+                    .setHint(QueryHints.READ_ONLY, TransactionSynchronizationManager.isCurrentTransactionReadOnly())
                     .getSingleResult();
+            index(userEntity, removals);
 
         } catch (NoResultException e) {
             System.err.println(e.toString());
+            publicIdIndex.evict(PublicIdIndex.Kind.USER, userId);
         }
 
         return userEntity;
     }
 
+    /**
+     * This method returns the user with given uuid for use as a reference, for instance to list its questions. If
+     * the uuid is in the PublicIdIndex the user is not loaded, only its id may be read without a query.
+     *
+     * @param userId
+     * @return UserEntity or null if there is no such user
+     */
+    public UserEntity getUserReference(final String userId) {
+        final long entry = publicIdIndex.get(PublicIdIndex.Kind.USER, userId);
+        if (entry == PublicIdIndex.ABSENT)
+            return getUserById(userId);
+        return entityManager.getReference(UserEntity.class, PublicIdIndex.id(entry));
+    }
+
     /**
      * The method delete given UserEntity Object.
      *
@@ -100,8 +177,12 @@ public class UserDao {
     public UserEntity deleteUser(UserEntity deleteUser) {
         if (deleteUser != null) {
             entityManager.remove(deleteUser);
+            publicIdIndex.removeUser(deleteUser.getUuid(), deleteUser.getId());
         }
         return deleteUser;
     }
 
+    private void index(final UserEntity userEntity, final long removals) {
+        publicIdIndex.put(PublicIdIndex.Kind.USER, userEntity.getUuid(), userEntity.getId(), userEntity.getId(), 0, removals);
+    }
 }
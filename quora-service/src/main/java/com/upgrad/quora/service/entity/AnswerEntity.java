@@ -1,5 +1,6 @@
 package com.upgrad.quora.service.entity;
 
+import com.upgrad.quora.service.projection.AnswerSummary;
 import org.apache.commons.lang3.builder.EqualsBuilder;
 import org.apache.commons.lang3.builder.HashCodeBuilder;
 import org.hibernate.annotations.OnDelete;
@@ -15,19 +16,39 @@ import java.time.ZonedDateTime;
 @Table(name = "answer")
 @NamedQueries({
         @NamedQuery(name = "answerByUuid", query = "select a from AnswerEntity a where a.uuid = :uuid"),
-        @NamedQuery(
-                name = "answerByQuestionId",
-                query = "SELECT a From AnswerEntity a LEFT JOIN QuestionEntity q ON a.questionEntity = q WHERE q.id= :questionId "
-        )
-//      @NamedQuery(name = "answerByQuestionId", query = "SELECT a FROM AnswerEntity a, QuestionEntity q WHERE a.questionEntity = q AND q.id = :questionId" ),
+        // Edit and delete check the ownership in the same statement, no row is affected if the answer does not exist or the caller may not change it
+        @NamedQuery(name = "editAnswerOfOwner", query = "update AnswerEntity a set a.answer = :answer, a.date = :date where a.uuid = :uuid and a.userEntity = :owner"),
+        @NamedQuery(name = "deleteAnswerOfOwnerOrAdmin", query = "delete from AnswerEntity a where a.uuid = :uuid and (a.userEntity = :owner or :admin = true)"),
+        @NamedQuery(name = "answerSummariesByQuestionForExport", query = "select new com.upgrad.quora.service.projection.AnswerSummary(a.uuid, a.answer, q.content, a.date, a.id) from AnswerEntity a join a.questionEntity q where q.id = :questionId order by a.date, a.id")
 }
 )
+@NamedNativeQueries({
+        // Oldest first, so a thread reads top down. The row comparison is a single range seek on IX_ANSWER_QUESTION_ID_DATE_ID
+        @NamedNativeQuery(name = "answerSummariesByQuestionFirstPage", resultSetMapping = "AnswerSummary",
+                query = "select a.uuid, a.ans, q.content, a.date, a.id from answer a join question q on q.id = a.question_id where a.question_id = :questionId order by a.date, a.id"),
+        @NamedNativeQuery(name = "answerSummariesByQuestionPageAfter", resultSetMapping = "AnswerSummary",
+                query = "select a.uuid, a.ans, q.content, a.date, a.id from answer a join question q on q.id = a.question_id where a.question_id = :questionId and (a.date, a.id) > (:date, :id) order by a.date, a.id"),
+}
+)
+@SqlResultSetMapping(name = "AnswerSummary", classes = @ConstructorResult(targetClass = AnswerSummary.class, columns = {
+        @ColumnResult(name = "uuid"),
+        @ColumnResult(name = "ans"),
+        @ColumnResult(name = "content"),
+        @ColumnResult(name = "date", type = ZonedDateTime.class),
+        @ColumnResult(name = "id", type = Integer.class)
+}))
 
 public class AnswerEntity implements Serializable {
 
+    /**
+     * Length of the ans column, answers which are longer are rejected before they reach the database
+     */
+    public static final int ANSWER_MAX_LENGTH = 255;
+
     @Id
     @Column(name = "id")
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "answerIdGenerator")
+    @SequenceGenerator(name = "answerIdGenerator", sequenceName = "answer_id_seq", allocationSize = 50)
     private Integer id;
 
     @Column(name = "uuid")
@@ -37,30 +58,36 @@ public class AnswerEntity implements Serializable {
 
     @Column(name = "ans")
     @NotNull
+    @Size(max = ANSWER_MAX_LENGTH)
     private String answer;
 
     @Column(name = "date")
     @NotNull
     private ZonedDateTime date;
 
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     @OnDelete(action = OnDeleteAction.CASCADE)
     @JoinColumn(name = "user_id")
     private UserEntity userEntity;
 
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     @OnDelete(action = OnDeleteAction.CASCADE)
     @JoinColumn(name = "question_id")
     private QuestionEntity questionEntity;
 
+    // Compared by the public uuid, which is set before persist, unlike the id which is only allocated by persist
     @Override
     public boolean equals(Object obj) {
-        return new EqualsBuilder().append(this, obj).isEquals();
+        if (this == obj)
+            return true;
+        if (!(obj instanceof AnswerEntity))
+            return false;
+        return new EqualsBuilder().append(uuid, ((AnswerEntity) obj).getUuid()).isEquals();
     }
 
     @Override
     public int hashCode() {
-        return new HashCodeBuilder().append(this).hashCode();
+        return new HashCodeBuilder().append(uuid).hashCode();
     }
 
     @Override
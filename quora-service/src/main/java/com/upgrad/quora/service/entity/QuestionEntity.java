@@ -1,7 +1,12 @@
 package com.upgrad.quora.service.entity;
 
+import com.upgrad.quora.service.projection.QuestionSummary;
+import org.hibernate.annotations.BatchSize;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 import org.hibernate.annotations.OnDelete;
 import org.hibernate.annotations.OnDeleteAction;
+import org.hibernate.annotations.QueryHints;
 
 import javax.persistence.*;
 import javax.validation.constraints.NotNull;
@@ -13,16 +18,57 @@ import java.time.ZonedDateTime;
 @Table(name = "question")
 @NamedQueries(
         {
-                @NamedQuery(name = "questionByUuid", query = "select u from QuestionEntity u where u.uuid = :uuid"),
-                @NamedQuery(name = "getAllQuestions", query = "select u from QuestionEntity u"),
-                @NamedQuery(name = "getAllQuestionByUser", query = "select u from QuestionEntity u where u.userEntity=:user"),
+                // Results are cached until the question table changes, the questions themselves come from the "question" region
+                @NamedQuery(name = "questionByUuid", query = "select u from QuestionEntity u where u.uuid = :uuid", hints = {
+                        @QueryHint(name = QueryHints.CACHEABLE, value = "true"),
+                        @QueryHint(name = QueryHints.CACHE_REGION, value = "questionByUuid")}),
+                @NamedQuery(name = "questionsByUuids", query = "select q from QuestionEntity q where q.uuid in :uuids"),
+                @NamedQuery(name = "existingQuestionIds", query = "select q.id from QuestionEntity q where q.id in :ids"),
+                @NamedQuery(name = "deleteQuestionsOfUser", query = "delete from QuestionEntity q where q.userEntity = :user"),
+                @NamedQuery(name = "questionIdsOfUser", query = "select q.id from QuestionEntity q where q.userEntity = :user"),
+                @NamedQuery(name = "questionSummariesForExport", query = "select new com.upgrad.quora.service.projection.QuestionSummary(q.uuid, q.content, q.date, q.id) from QuestionEntity q order by q.date desc, q.id desc"),
         }
 )
+@NamedNativeQueries(
+        {
+                // Edit and delete check the ownership in the same statement, no row is affected if the question does not exist or the caller may not change it.
+                // They are native so the DAO evicts only the affected question from the second-level cache, a JPQL statement would clear the whole region
+                @NamedNativeQuery(name = "editQuestionOfOwner",
+                        query = "update question set content = :content, date = :date where uuid = :uuid and user_id = :ownerId"),
+                @NamedNativeQuery(name = "deleteQuestionOfOwnerOrAdmin",
+                        query = "delete from question where uuid = :uuid and (:admin or user_id = :ownerId)"),
+                // Newest first. The row comparison is a single range seek on IX_QUESTION_DATE_ID / IX_QUESTION_USER_ID_DATE_ID
+                @NamedNativeQuery(name = "questionSummariesFirstPage", resultSetMapping = "QuestionSummary",
+                        query = "select uuid, content, date, id from question order by date desc, id desc"),
+                @NamedNativeQuery(name = "questionSummariesPageAfter", resultSetMapping = "QuestionSummary",
+                        query = "select uuid, content, date, id from question where (date, id) < (:date, :id) order by date desc, id desc"),
+                @NamedNativeQuery(name = "questionSummariesByUserFirstPage", resultSetMapping = "QuestionSummary",
+                        query = "select uuid, content, date, id from question where user_id = :userId order by date desc, id desc"),
+                @NamedNativeQuery(name = "questionSummariesByUserPageAfter", resultSetMapping = "QuestionSummary",
+                        query = "select uuid, content, date, id from question where user_id = :userId and (date, id) < (:date, :id) order by date desc, id desc"),
+        }
+)
+@SqlResultSetMapping(name = "QuestionSummary", classes = @ConstructorResult(targetClass = QuestionSummary.class, columns = {
+        @ColumnResult(name = "uuid"),
+        @ColumnResult(name = "content"),
+        @ColumnResult(name = "date", type = ZonedDateTime.class),
+        @ColumnResult(name = "id", type = Integer.class)
+}))
+@BatchSize(size = 25)
+// Read by uuid on every answer create and list. Edit and delete evict the affected question only, see ehcache.xml for the size
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "question")
 public class QuestionEntity implements Serializable {
 
+    /**
+     * Length of the content column, content which is longer is rejected before it reaches the database
+     */
+    public static final int CONTENT_MAX_LENGTH = 500;
+
     @Id
     @Column(name = "id")
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "questionIdGenerator")
+    @SequenceGenerator(name = "questionIdGenerator", sequenceName = "question_id_seq", allocationSize = 50)
     private Integer id;
 
     @Column(name = "uuid")
@@ -30,14 +76,14 @@ public class QuestionEntity implements Serializable {
     @Size(max = 200)
     private String uuid;
 
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     @OnDelete(action = OnDeleteAction.CASCADE)
     @JoinColumn(name = "user_id")
     private UserEntity userEntity;
 
     @Column(name = "content")
     @NotNull
-    @Size(max = 500)
+    @Size(max = CONTENT_MAX_LENGTH)
     private String content;
 
     @Column(name = "date")
@@ -0,0 +1,82 @@
+package com.upgrad.quora.service.entity;
+
+import javax.persistence.*;
+import javax.validation.constraints.NotNull;
+import javax.validation.constraints.Size;
+import java.time.ZonedDateTime;
+
+/**
+ * A sign out of stateless tokens, shared by every instance through the database. Either sessionUuid is set and the
+ * session with that uuid is revoked, or userId is set and every session of the user which signed in at or before
+ * revokedAt is revoked. The row is only needed until expiresAt, when the revoked tokens would have expired anyway.
+ */
+@Entity
+@Table(name = "token_revocation")
+@NamedQueries( {
+        @NamedQuery(name = "liveTokenRevocations", query = "select tr from TokenRevocationEntity tr where tr.expiresAt > :now"),
+        @NamedQuery(name = "tokenRevocationsSince", query = "select tr from TokenRevocationEntity tr where tr.revokedAt >= :since and tr.expiresAt > :now")
+    }
+)
+public class TokenRevocationEntity {
+
+    @Id
+    @Column(name = "id")
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "tokenRevocationIdGenerator")
+    @SequenceGenerator(name = "tokenRevocationIdGenerator", sequenceName = "token_revocation_id_seq", allocationSize = 50)
+    private Long id;
+
+    @Column(name = "session_uuid")
+    @Size(max = 200)
+    private String sessionUuid;
+
+    @Column(name = "user_id")
+    private Integer userId;
+
+    @Column(name = "revoked_at")
+    @NotNull
+    private ZonedDateTime revokedAt;
+
+    @Column(name = "expires_at")
+    @NotNull
+    private ZonedDateTime expiresAt;
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public String getSessionUuid() {
+        return sessionUuid;
+    }
+
+    public void setSessionUuid(String sessionUuid) {
+        this.sessionUuid = sessionUuid;
+    }
+
+    public Integer getUserId() {
+        return userId;
+    }
+
+    public void setUserId(Integer userId) {
+        this.userId = userId;
+    }
+
+    public ZonedDateTime getRevokedAt() {
+        return revokedAt;
+    }
+
+    public void setRevokedAt(ZonedDateTime revokedAt) {
+        this.revokedAt = revokedAt;
+    }
+
+    public ZonedDateTime getExpiresAt() {
+        return expiresAt;
+    }
+
+    public void setExpiresAt(ZonedDateTime expiresAt) {
+        this.expiresAt = expiresAt;
+    }
+}
@@ -13,14 +13,20 @@ import java.time.ZonedDateTime;
 @Entity
 @Table(name = "user_auth")
 @NamedQueries( {
-        @NamedQuery(name = "userAuthByAccessToken", query = "select ua from UserAuthEntity ua where ua.accessToken=:accessToken")
+        @NamedQuery(name = "userAuthByAccessTokenDigest", query = "select ua from UserAuthEntity ua where ua.accessTokenDigest=:accessTokenDigest"),
+        @NamedQuery(name = "signOutAllSessions", query = "update UserAuthEntity ua set ua.logoutAt = :logoutAt where ua.userEntity.id = :userId and ua.logoutAt is null"),
+        @NamedQuery(name = "accessTokenDigests", query = "select ua.accessTokenDigest from UserAuthEntity ua"),
+        @NamedQuery(name = "accessTokenDigestsSince", query = "select ua.accessTokenDigest from UserAuthEntity ua where ua.loginAt >= :since")
     }
 )
+// Session lookups: every request resolves the signed in user from its session, and sessions are cached beyond the request
+@NamedEntityGraph(name = "UserAuthEntity.withUser", attributeNodes = @NamedAttributeNode("userEntity"))
 public class UserAuthEntity {
 
     @Id
     @Column(name = "id")
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "userAuthIdGenerator")
+    @SequenceGenerator(name = "userAuthIdGenerator", sequenceName = "user_auth_id_seq", allocationSize = 50)
     private Integer id;
 
     @Column(name = "uuid")
@@ -28,7 +34,7 @@ public class UserAuthEntity {
     @Size(max = 200)
     private String uuid;
 
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     @OnDelete(action = OnDeleteAction.CASCADE)
     @JoinColumn(name = "user_id")
     private UserEntity userEntity;
@@ -38,6 +44,11 @@ public class UserAuthEntity {
     @Size(max = 500)
     private String accessToken;
 
+    @Column(name = "access_token_digest")
+    @NotNull
+    @Size(min = 64, max = 64)
+    private String accessTokenDigest;
+
     @Column(name = "expires_at")
     @NotNull
     private ZonedDateTime expiresAt;
@@ -81,6 +92,14 @@ public class UserAuthEntity {
         this.accessToken = accessToken;
     }
 
+    public String getAccessTokenDigest() {
+        return accessTokenDigest;
+    }
+
+    public void setAccessTokenDigest(String accessTokenDigest) {
+        this.accessTokenDigest = accessTokenDigest;
+    }
+
     public ZonedDateTime getExpiresAt() {
         return expiresAt;
     }
@@ -105,14 +124,19 @@ public class UserAuthEntity {
         this.logoutAt = logoutAt;
     }
 
+    // Compared by the public uuid, which is set before persist, unlike the id which is only allocated by persist
     @Override
     public boolean equals(Object obj) {
-        return new EqualsBuilder().append(this, obj).isEquals();
+        if (this == obj)
+            return true;
+        if (!(obj instanceof UserAuthEntity))
+            return false;
+        return new EqualsBuilder().append(uuid, ((UserAuthEntity) obj).getUuid()).isEquals();
     }
 
     @Override
     public int hashCode() {
-        return new HashCodeBuilder().append(this).hashCode();
+        return new HashCodeBuilder().append(uuid).hashCode();
     }
 
     @Override
@@ -2,6 +2,10 @@ package com.upgrad.quora.service.entity;
 
 import org.apache.commons.lang3.builder.EqualsBuilder;
 import org.apache.commons.lang3.builder.HashCodeBuilder;
+import org.hibernate.annotations.BatchSize;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.QueryHints;
 
 import javax.persistence.*;
 import javax.validation.constraints.NotNull;
@@ -11,16 +15,27 @@ import java.io.Serializable;
 @Entity
 @Table(name = "users")
 @NamedQueries({
-        @NamedQuery(name = "userByUuid", query = "select u from UserEntity u where u.uuid = :uuid"),
+        // Results are cached until the users table changes, the users themselves come from the "user" region
+        @NamedQuery(name = "userByUuid", query = "select u from UserEntity u where u.uuid = :uuid", hints = {
+                @QueryHint(name = QueryHints.CACHEABLE, value = "true"),
+                @QueryHint(name = QueryHints.CACHE_REGION, value = "userByUuid")}),
         @NamedQuery(name = "userByEmail", query = "select u from UserEntity u where u.email =:email"),
         @NamedQuery(name = "userByUserName", query = "select u from UserEntity u where u.userName=:userName"),
+        @NamedQuery(name = "usersByUserNameOrEmail", query = "select u from UserEntity u where u.userName=:userName or u.email=:email"),
+        @NamedQuery(name = "userNamesAndEmails", query = "select u.userName, u.email from UserEntity u"),
     }
 )
+// Lazy users not covered by an entity graph are initialized up to 25 at a time instead of one select each
+@BatchSize(size = 25)
+// Read on almost every request. Changes made through Hibernate update or evict the cached entry, see ehcache.xml for the size
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "user")
 public class UserEntity implements Serializable {
 
     @Id
     @Column(name = "id")
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "userIdGenerator")
+    @SequenceGenerator(name = "userIdGenerator", sequenceName = "users_id_seq", allocationSize = 50)
     private Integer id;
 
     @Column(name = "uuid")
@@ -184,14 +199,19 @@ public class UserEntity implements Serializable {
         this.contactNumber = contactNumber;
     }
 
+    // Compared by the public uuid, which is set before persist, unlike the id which is only allocated by persist
     @Override
     public boolean equals(Object obj) {
-        return new EqualsBuilder().append(this, obj).isEquals();
+        if (this == obj)
+            return true;
+        if (!(obj instanceof UserEntity))
+            return false;
+        return new EqualsBuilder().append(uuid, ((UserEntity) obj).getUuid()).isEquals();
     }
 
     @Override
     public int hashCode() {
-        return new HashCodeBuilder().append(this).hashCode();
+        return new HashCodeBuilder().append(uuid).hashCode();
     }
 
     @Override
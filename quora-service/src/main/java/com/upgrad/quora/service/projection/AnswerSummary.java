@@ -0,0 +1,50 @@
+package com.upgrad.quora.service.projection;
+
+import java.time.ZonedDateTime;
+
+/**
+ * The columns of an answer shown by the answer lists, read by constructor expression instead of loading AnswerEntity
+ * with its question and both authors. Nothing is added to the persistence context.
+ * <p>
+ * date and id are the sort key of the lists.
+ */
+public class AnswerSummary {
+
+    private final String uuid;
+
+    private final String answer;
+
+    private final String questionContent;
+
+    private final ZonedDateTime date;
+
+    private final Integer id;
+
+    public AnswerSummary(final String uuid, final String answer, final String questionContent, final ZonedDateTime date, final Integer id) {
+        this.uuid = uuid;
+        this.answer = answer;
+        this.questionContent = questionContent;
+        this.date = date;
+        this.id = id;
+    }
+
+    public String getUuid() {
+        return uuid;
+    }
+
+    public String getAnswer() {
+        return answer;
+    }
+
+    public String getQuestionContent() {
+        return questionContent;
+    }
+
+    public ZonedDateTime getDate() {
+        return date;
+    }
+
+    public Integer getId() {
+        return id;
+    }
+}
@@ -0,0 +1,44 @@
+package com.upgrad.quora.service.projection;
+
+import java.time.ZonedDateTime;
+
+/**
+ * The columns of a question shown by the question lists, read by constructor expression instead of loading
+ * QuestionEntity. Nothing is added to the persistence context and the author, with its password and salt, is not
+ * loaded at all.
+ * <p>
+ * date and id are the sort key of the lists.
+ */
+public class QuestionSummary {
+
+    private final String uuid;
+
+    private final String content;
+
+    private final ZonedDateTime date;
+
+    private final Integer id;
+
+    public QuestionSummary(final String uuid, final String content, final ZonedDateTime date, final Integer id) {
+        this.uuid = uuid;
+        this.content = content;
+        this.date = date;
+        this.id = id;
+    }
+
+    public String getUuid() {
+        return uuid;
+    }
+
+    public String getContent() {
+        return content;
+    }
+
+    public ZonedDateTime getDate() {
+        return date;
+    }
+
+    public Integer getId() {
+        return id;
+    }
+}